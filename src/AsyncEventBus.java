@@ -0,0 +1,280 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Асинхронна шина подій автомата. Реєструється в VendingMachine як звичайний
+ * спостерігач, але не викликає підписників у потоці покупки: кожна подія
+ * кладеться в обмежений кільцевий буфер підписника, а окремий потік підписника
+ * забирає події пакетами. Повільний спостерігач більше не гальмує транзакції.
+ * Оскільки автомат повторно використовує об'єкти подій, у буфер кладеться їхня копія.
+ *
+ * Автомат сповіщає спостерігачів під своїм блокуванням переходів. Тому при політиках
+ * BLOCK і COALESCE, коли буфер повний, покупка чекає на підписника з цим блокуванням у
+ * руках: підписник, який у цей момент звертається до того самого автомата (вносить
+ * гроші, купує, читає узгоджений знімок), чекає на покупку, і обидва потоки блокуються
+ * назавжди. Такі підписники мають використовувати DROP або передавати роботу в інший
+ * потік, не чекаючи на неї.
+ *
+ * Behavioral Patterns:
+ * - Observer: Шина одночасно є спостерігачем автомата і суб'єктом для своїх підписників.
+ */
+public class AsyncEventBus implements VendingMachineObserver, AutoCloseable {
+
+    /**
+     * Поведінка при переповненні буфера підписника.
+     */
+    public enum BackpressurePolicy {
+        /** Нова подія відкидається. */
+        DROP,
+        /**
+         * Потік, що публікує подію, чекає на вільне місце (див. застереження про
+         * підписників, що звертаються до автомата, в описі класу).
+         */
+        BLOCK,
+        /**
+         * Зміна балансу зливається з останньою подією в буфері, якщо та теж є зміною
+         * балансу того самого автомата: суми додаються, баланс береться новий. Інші
+         * події (продажі, решта, скасування) ніколи не зливаються і не відкидаються,
+         * а порядок подій зберігається; якщо злити нема з чим, публікація чекає, як у BLOCK.
+         */
+        COALESCE
+    }
+
+    private final int capacity;
+    private final int batchSize;
+    private final BackpressurePolicy policy;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * @param capacity Розмір кільцевого буфера кожного підписника.
+     * @param batchSize Максимальна кількість подій, що доставляються за один прохід.
+     * @param policy Політика при переповненні буфера.
+     */
+    public AsyncEventBus(int capacity, int batchSize, BackpressurePolicy policy) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Розмір буфера та пакета має бути більшим за 0.");
+        }
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.policy = policy;
+    }
+
+    /**
+     * Додає підписника і запускає для нього окремий потік доставки.
+     * @param observer Спостерігач, який отримуватиме події асинхронно.
+     */
+    public void subscribe(VendingMachineObserver observer) {
+        if (closed) {
+            throw new IllegalStateException("Шину подій закрито.");
+        }
+        Subscription subscription = new Subscription(observer);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+    }
+
+    /**
+     * Публікує подію всім підписникам. Викликається автоматом у потоці покупки.
+     * @param event Подія автомата.
+     */
+    @Override
+    public void update(VendingMachineEvent event) {
+        if (closed) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.publish(event);
+        }
+    }
+
+    /**
+     * Повертає метрики відставання для кожного підписника.
+     * @return Знімок метрик у порядку підписки.
+     */
+    public List<ObserverLag> getLagMetrics() {
+        List<ObserverLag> result = new ArrayList<>(subscriptions.size());
+        for (Subscription subscription : subscriptions) {
+            result.add(subscription.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * Зупиняє потоки доставки, попередньо доставивши події, що лишилися в буферах.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.shutdown();
+        }
+        for (Subscription subscription : subscriptions) {
+            try {
+                subscription.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Знімок метрик одного підписника.
+     */
+    public static class ObserverLag {
+        private final VendingMachineObserver observer;
+        private final long published;
+        private final long delivered;
+        private final long dropped;
+        private final long coalesced;
+
+        ObserverLag(VendingMachineObserver observer, long published, long delivered, long dropped, long coalesced) {
+            this.observer = observer;
+            this.published = published;
+            this.delivered = delivered;
+            this.dropped = dropped;
+            this.coalesced = coalesced;
+        }
+
+        public VendingMachineObserver getObserver() { return observer; }
+        public long getPublished() { return published; }
+        public long getDelivered() { return delivered; }
+        public long getDropped() { return dropped; }
+        public long getCoalesced() { return coalesced; }
+
+        /** @return Кількість подій, прийнятих у буфер, але ще не доставлених. */
+        public long getLag() {
+            return published - delivered - dropped - coalesced;
+        }
+    }
+
+    /**
+     * Кільцевий буфер і потік доставки одного підписника.
+     */
+    private class Subscription implements Runnable {
+        private final VendingMachineObserver observer;
+        private final VendingMachineEvent[] ring = new VendingMachineEvent[capacity];
+        private final VendingMachineEvent[] batch = new VendingMachineEvent[batchSize];
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private final Thread thread;
+        private int head; // Індекс найстарішої події
+        private int size;
+        private boolean stopping;
+
+        private long published;
+        private volatile long delivered;
+        private long dropped;
+        private long coalesced;
+
+        Subscription(VendingMachineObserver observer) {
+            this.observer = observer;
+            this.thread = new Thread(this, "event-bus-" + observer.getClass().getSimpleName());
+            this.thread.setDaemon(true);
+        }
+
+        void publish(VendingMachineEvent event) {
+            lock.lock();
+            try {
+                published++;
+                while (size == capacity) {
+                    if (stopping || policy == BackpressurePolicy.DROP) {
+                        dropped++;
+                        return;
+                    }
+                    if (policy == BackpressurePolicy.COALESCE && mergeIntoTail(event)) {
+                        coalesced++;
+                        return;
+                    }
+                    notFull.awaitUninterruptibly();
+                }
+                ring[(head + size) % capacity] = event.copy();
+                size++;
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Зливає зміну балансу з останньою подією буфера. Зливається лише хвіст, тому
+         * подія не обганяє жодної іншої.
+         */
+        private boolean mergeIntoTail(VendingMachineEvent event) {
+            if (!isBalanceSnapshot(event)) {
+                return false;
+            }
+            int tail = (head + size - 1) % capacity;
+            VendingMachineEvent last = ring[tail];
+            if (!isBalanceSnapshot(last) || !last.getMachineId().equals(event.getMachineId())) {
+                return false;
+            }
+            ring[tail] = VendingMachineEvent.balanceChanged(event.getMachineId(),
+                    last.getAmount() + event.getAmount(), event.getBalance());
+            return true;
+        }
+
+        private boolean isBalanceSnapshot(VendingMachineEvent event) {
+            return event.getType() == VendingMachineEvent.Type.BALANCE_CHANGED && !event.isSessionPurchase();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                int count = 0;
+                lock.lock();
+                try {
+                    while (size == 0 && !stopping) {
+                        notEmpty.awaitUninterruptibly();
+                    }
+                    if (size == 0) {
+                        return;
+                    }
+                    while (count < batchSize && size > 0) {
+                        batch[count++] = ring[head];
+                        ring[head] = null;
+                        head = (head + 1) % capacity;
+                        size--;
+                    }
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                for (int i = 0; i < count; i++) {
+                    try {
+                        observer.update(batch[i]);
+                    } catch (RuntimeException e) {
+                        System.err.println("[ПОМИЛКА спостерігача]: " + e.getMessage());
+                    }
+                    batch[i] = null;
+                }
+                delivered += count;
+            }
+        }
+
+        void shutdown() {
+            lock.lock();
+            try {
+                stopping = true;
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        ObserverLag snapshot() {
+            lock.lock();
+            try {
+                return new ObserverLag(observer, published, delivered, dropped, coalesced);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Адаптер (Adapter), що перетворює блокуючу PaymentStrategy на AsyncPaymentStrategy.
+ * Кожна оплата виконується у власному віртуальному потоці, тому очікування відповіді
+ * еквайра не займає платформних потоків і тисячі авторизацій можуть іти одночасно.
+ * Для кожної спроби діє тайм-аут: future завершується TimeoutException, але сама
+ * авторизація не зупиняється, бо переривання не відкликає вже надісланий запит
+ * (CardPayment, наприклад, на нього не зважає). Справжній результат авторизації
+ * доступний через PaymentFuture.outcome(), тож покупку можна завершити або
+ * скасувати, коли він стане відомим. Скасування future перериває потік оплати.
+ */
+public class AsyncPaymentAdapter implements AsyncPaymentStrategy {
+    private static final ExecutorService VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final PaymentStrategy delegate;
+    private final long timeoutMillis;
+    private final ExecutorService executor;
+
+    /**
+     * @param delegate Блокуюча стратегія оплати.
+     * @param timeoutMillis Тайм-аут однієї спроби оплати в мілісекундах.
+     */
+    public AsyncPaymentAdapter(PaymentStrategy delegate, long timeoutMillis) {
+        this(delegate, timeoutMillis, VIRTUAL_THREADS);
+    }
+
+    /**
+     * @param delegate Блокуюча стратегія оплати.
+     * @param timeoutMillis Тайм-аут однієї спроби оплати в мілісекундах.
+     * @param executor Виконавець, у якому запускаються оплати.
+     */
+    public AsyncPaymentAdapter(PaymentStrategy delegate, long timeoutMillis, ExecutorService executor) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Тайм-аут має бути більшим за 0.");
+        }
+        this.delegate = delegate;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = executor;
+    }
+
+    @Override
+    public PaymentFuture payAsync(long amount) {
+        PaymentFuture result = new PaymentFuture();
+        CompletableFuture<Boolean> outcome = result.outcome;
+        AtomicBoolean started = new AtomicBoolean();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return; // Скасовано до початку: запит до еквайра не надсилався
+                }
+                try {
+                    boolean paid = delegate.pay(amount);
+                    outcome.complete(paid);
+                    result.complete(paid);
+                } catch (Throwable e) {
+                    outcome.completeExceptionally(e);
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            outcome.completeExceptionally(e);
+            result.completeExceptionally(e);
+            return result;
+        }
+        result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        // Скасування перериває потік оплати; після тайм-ауту чекаємо на справжній результат
+        result.whenComplete((ok, error) -> {
+            if (error instanceof CancellationException) {
+                if (started.compareAndSet(false, true)) {
+                    outcome.complete(false);
+                }
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Future оплати, що окремо несе справжній результат авторизації.
+     */
+    public static class PaymentFuture extends CompletableFuture<Boolean> {
+        private final CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+
+        /**
+         * @return Future, що завершується, коли делегат справді повернув результат
+         *         (або кинув виняток), навіть якщо ця future вже завершилась тайм-аутом
+         *         чи скасуванням.
+         */
+        public CompletableFuture<Boolean> outcome() {
+            return outcome;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронний варіант патерну Strategy для оплати. На відміну від PaymentStrategy,
+ * метод не блокує викликаючий потік: результат авторизації повертається через
+ * CompletableFuture, тому одночасно може виконуватися багато авторизацій.
+ */
+public interface AsyncPaymentStrategy {
+    /**
+     * Запускає оплату.
+     * @param amount Сума до сплати в копійках.
+     * @return Future, що завершується true при успішній оплаті, false при відмові,
+     *         або винятком (наприклад, TimeoutException), якщо оплата не відбулася.
+     *         Скасування future перериває авторизацію.
+     */
+    CompletableFuture<Boolean> payAsync(long amount);
+}
@@ -1,18 +1,65 @@
+import java.io.IOException;
+
 /**
  * Реалізація оплати карткою. Імітація зчитування картки.
+ * Якщо задано CardSettlementPipeline, оплата лише авторизується, а транзакція
+ * передається в конвеєр для пакетного розрахунку.
  */
 public class CardPayment implements PaymentStrategy {
     private String cardNumber;
+    private final String machineId;
+    private final CardSettlementPipeline settlement;
+    private final DisplaySink display;
 
     public CardPayment(String cardNumber) {
+        this(cardNumber, NoOpDisplaySink.INSTANCE);
+    }
+
+    /**
+     * @param cardNumber Номер картки.
+     * @param display Вихід для повідомлень покупцю.
+     */
+    public CardPayment(String cardNumber, DisplaySink display) {
+        this(cardNumber, null, null, display);
+    }
+
+    /**
+     * @param cardNumber Номер картки.
+     * @param machineId Ідентифікатор автомата, до пакета якого належить транзакція.
+     * @param settlement Конвеєр пакетного розрахунку.
+     */
+    public CardPayment(String cardNumber, String machineId, CardSettlementPipeline settlement) {
+        this(cardNumber, machineId, settlement, NoOpDisplaySink.INSTANCE);
+    }
+
+    /**
+     * @param cardNumber Номер картки.
+     * @param machineId Ідентифікатор автомата, до пакета якого належить транзакція.
+     * @param settlement Конвеєр пакетного розрахунку (null - без розрахунку).
+     * @param display Вихід для повідомлень покупцю.
+     */
+    public CardPayment(String cardNumber, String machineId, CardSettlementPipeline settlement, DisplaySink display) {
         this.cardNumber = cardNumber;
+        this.machineId = machineId;
+        this.settlement = settlement;
+        this.display = display;
     }
 
     @Override
-    public boolean pay(double amount) {
-        System.out.printf("Здійснюється транзакція на суму %.2f грн з картки %s...%n", amount, cardNumber);
+    public boolean pay(long amount) {
+        if (display.isEnabled()) {
+            display.show("Здійснюється транзакція на суму " + Money.format(amount) + " грн з картки " + cardNumber + "...");
+        }
+        if (settlement != null) {
+            try {
+                settlement.submit(CardTransaction.authorize(machineId, cardNumber, amount));
+            } catch (IOException e) {
+                display.error("Помилка: не вдалося зберегти авторизацію. " + e.getMessage());
+                return false;
+            }
+        }
         // Імітація успішної транзакції
-        System.out.println("Оплата пройшла успішно.");
+        display.show("Оплата пройшла успішно.");
         return true;
     }
 }
@@ -0,0 +1,415 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Конвеєр пакетного розрахунку карткових оплат. Під час продажу картка лише
+ * авторизується (CardPayment), а транзакція накопичується в буфері свого автомата.
+ * Буфер передається в SettlementSink пакетом, коли набирається maxBatchSize транзакцій
+ * або найстаріша транзакція чекає довше за maxDelayMillis. Передача виконується
+ * окремим фоновим потоком, тому покупка не чекає на розрахунок.
+ *
+ * Кожна авторизація спочатку дописується в журнал очікуючих транзакцій, який, як і
+ * TransactionJournal, примусово скидається на диск кожні groupSize записів. Надійність
+ * відкладена: submit (а з ним і авторизація в CardPayment) повертається, не чекаючи
+ * скидання, тож при збої живлення до groupSize - 1 останніх підтверджених авторизацій
+ * можуть не потрапити в журнал. Якщо це неприйнятно, задайте groupSize = 1.
+ * Після перезапуску конвеєр зчитує журнал і знову ставить у чергу лише ті транзакції,
+ * які SettlementSink ще не розрахував, тому подвійного розрахунку не буде.
+ * Коли всі транзакції розраховано, журнал очищується; якщо розраховані записи
+ * складають більшу частину журналу, він переписується лише з нерозрахованими
+ * (через тимчасовий файл), тож журнал не росте необмежено. Лише після цього
+ * SettlementSink дозволяється забути їхні ідентифікатори (SettlementSink.forget).
+ */
+public class CardSettlementPipeline implements AutoCloseable {
+    // Журнал переписується, коли записів у ньому в стільки разів більше, ніж нерозрахованих
+    private static final int COMPACT_FACTOR = 4;
+
+    private final SettlementSink sink;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final int groupSize;
+    private final Path pendingLog;
+    private FileChannel pendingChannel;
+    private final Map<String, List<CardTransaction>> buffers = new HashMap<>();
+    // Усі ще не розраховані транзакції (у буферах і в пакетах, що розраховуються), у порядку надходження
+    private final Map<String, CardTransaction> unsettled = new LinkedHashMap<>();
+    // Розраховані транзакції, що ще лишаються в журналі очікуючих
+    private final List<String> settledInLog = new ArrayList<>();
+    private final ScheduledExecutorService flusher;
+
+    private final long startedAtNanos = System.nanoTime();
+    private final LongAdder settledTransactions = new LongAdder();
+    private final LongAdder settledBatches = new LongAdder();
+    private final LongAdder settledAmount = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder totalBatchLatencyMillis = new LongAdder();
+    private final AtomicLong maxBatchLatencyMillis = new AtomicLong();
+    private int pending;
+    private int logRecords; // Записи в журналі очікуючих
+    private int unforced;   // Записи, ще не скинуті на диск
+    private boolean closed;
+
+    /**
+     * Створює конвеєр, що скидає журнал очікуючих на диск на межі кожного пакета.
+     * @param sink Приймач пакетів.
+     * @param maxBatchSize Максимальна кількість транзакцій у пакеті.
+     * @param maxDelayMillis Максимальний час очікування транзакції в буфері.
+     * @param pendingLog Файл журналу очікуючих транзакцій.
+     * @throws IOException якщо журнал не вдалося прочитати або відкрити.
+     */
+    public CardSettlementPipeline(SettlementSink sink, int maxBatchSize, long maxDelayMillis, Path pendingLog) throws IOException {
+        this(sink, maxBatchSize, maxDelayMillis, pendingLog, maxBatchSize);
+    }
+
+    /**
+     * @param sink Приймач пакетів.
+     * @param maxBatchSize Максимальна кількість транзакцій у пакеті.
+     * @param maxDelayMillis Максимальний час очікування транзакції в буфері.
+     * @param pendingLog Файл журналу очікуючих транзакцій.
+     * @param groupSize Кількість записів журналу між примусовими скиданнями на диск.
+     * @throws IOException якщо журнал не вдалося прочитати або відкрити.
+     */
+    public CardSettlementPipeline(SettlementSink sink, int maxBatchSize, long maxDelayMillis, Path pendingLog,
+                                  int groupSize) throws IOException {
+        if (maxBatchSize <= 0 || maxDelayMillis <= 0 || groupSize <= 0) {
+            throw new IllegalArgumentException("Розмір пакета, затримка та розмір групи мають бути більшими за 0.");
+        }
+        this.sink = sink;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.groupSize = groupSize;
+        this.pendingLog = pendingLog;
+        recover();
+        // Розраховані до перезапуску записи одразу відкидаються
+        rewritePendingLog();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "card-settlement");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, maxDelayMillis / 2);
+        flusher.scheduleWithFixedDelay(this::flushExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Додає авторизовану транзакцію до буфера її автомата. Запис у журнал очікуючих
+     * скидається на диск лише на межі групи (groupSize), а не до повернення з методу.
+     * @param transaction Авторизована транзакція.
+     * @throws IOException якщо конвеєр закрито або транзакцію не вдалося записати в журнал очікуючих.
+     */
+    public void submit(CardTransaction transaction) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(toLine(transaction).getBytes(StandardCharsets.UTF_8));
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Конвеєр розрахунків закрито.");
+            }
+            while (data.hasRemaining()) {
+                pendingChannel.write(data);
+            }
+            logRecords++;
+            if (++unforced >= groupSize) {
+                pendingChannel.force(false);
+                unforced = 0;
+            }
+            unsettled.put(transaction.getId(), transaction);
+            List<CardTransaction> buffer = buffers.computeIfAbsent(transaction.getMachineId(), k -> new ArrayList<>());
+            buffer.add(transaction);
+            pending++;
+            if (buffer.size() >= maxBatchSize) {
+                // Під тим самим блокуванням, що й closed: close() не зупинить потік раніше
+                List<CardTransaction> batch = takeBuffer(transaction.getMachineId());
+                flusher.execute(() -> settle(transaction.getMachineId(), batch));
+            }
+        }
+    }
+
+    /**
+     * Передає в SettlementSink усі накопичені транзакції і чекає завершення.
+     * Після close() нічого не робить.
+     */
+    public void flushAll() {
+        if (flusher.isShutdown()) {
+            return;
+        }
+        try {
+            flusher.submit(() -> {
+                Map<String, List<CardTransaction>> all;
+                synchronized (this) {
+                    all = new HashMap<>(buffers);
+                    buffers.clear();
+                    pending = 0;
+                }
+                all.forEach(this::settle);
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new IllegalStateException("Не вдалося виконати розрахунок", e.getCause());
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // Конвеєр закривається паралельно; залишок розрахує close()
+        }
+    }
+
+    /**
+     * Розраховує залишок, зупиняє фоновий потік і очищає журнал очікуючих транзакцій,
+     * якщо всі транзакції розраховано (інакше залишає в ньому лише нерозраховані).
+     * Подальші submit() завершуються IOException.
+     * @throws IOException якщо журнал не вдалося закрити або очистити.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flushAll();
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (unsettled.isEmpty()) {
+                pendingChannel.truncate(0);
+                forgetCompacted();
+            } else {
+                rewritePendingLog();
+            }
+            pendingChannel.force(false);
+            pendingChannel.close();
+        }
+    }
+
+    /**
+     * @return Знімок метрик конвеєра.
+     */
+    public synchronized Metrics getMetrics() {
+        long batches = settledBatches.sum();
+        double seconds = (System.nanoTime() - startedAtNanos) / 1_000_000_000.0;
+        return new Metrics(settledTransactions.sum(), batches, settledAmount.sum(), pending, failedFlushes.sum(),
+                batches == 0 ? 0 : (double) totalBatchLatencyMillis.sum() / batches,
+                maxBatchLatencyMillis.get(),
+                seconds > 0 ? settledTransactions.sum() / seconds : 0);
+    }
+
+    // --- Внутрішня логіка ---
+
+    private void flushExpired() {
+        long now = System.currentTimeMillis();
+        Map<String, List<CardTransaction>> expired = new HashMap<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, List<CardTransaction>>> it = buffers.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, List<CardTransaction>> entry = it.next();
+                List<CardTransaction> buffer = entry.getValue();
+                if (!buffer.isEmpty() && now - buffer.get(0).getAuthorizedAtMillis() >= maxDelayMillis) {
+                    expired.put(entry.getKey(), buffer);
+                    pending -= buffer.size();
+                    it.remove();
+                }
+            }
+        }
+        expired.forEach(this::settle);
+    }
+
+    private List<CardTransaction> takeBuffer(String machineId) {
+        List<CardTransaction> buffer = buffers.remove(machineId);
+        pending -= buffer.size();
+        return buffer;
+    }
+
+    private void settle(String machineId, List<CardTransaction> batch) {
+        List<CardTransaction> fresh = new ArrayList<>(batch.size());
+        for (CardTransaction tx : batch) {
+            if (!sink.isSettled(tx.getId())) {
+                fresh.add(tx);
+            }
+        }
+        if (fresh.isEmpty()) {
+            markSettled(batch);
+            return;
+        }
+        try {
+            sink.settle(machineId, fresh);
+        } catch (IOException e) {
+            failedFlushes.increment();
+            System.err.println("[ПОМИЛКА розрахунку]: " + e.getMessage());
+            synchronized (this) {
+                // Повертаємо пакет у початок буфера, щоб повторити пізніше
+                List<CardTransaction> buffer = buffers.computeIfAbsent(machineId, k -> new ArrayList<>());
+                buffer.addAll(0, fresh);
+                pending += fresh.size();
+                for (CardTransaction tx : batch) {
+                    if (!fresh.contains(tx)) {
+                        unsettled.remove(tx.getId());
+                    }
+                }
+            }
+            return;
+        }
+        markSettled(batch);
+        long latency = System.currentTimeMillis() - fresh.get(0).getAuthorizedAtMillis();
+        long amount = 0;
+        for (CardTransaction tx : fresh) {
+            amount += tx.getAmount();
+        }
+        settledTransactions.add(fresh.size());
+        settledBatches.increment();
+        settledAmount.add(amount);
+        totalBatchLatencyMillis.add(latency);
+        maxBatchLatencyMillis.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * Прибирає розраховані транзакції з журналу очікуючих: очищує його, коли нерозрахованих
+     * не лишилося, або переписує, коли розраховані записи складають більшу частину журналу.
+     */
+    private synchronized void markSettled(List<CardTransaction> batch) {
+        for (CardTransaction tx : batch) {
+            unsettled.remove(tx.getId());
+            settledInLog.add(tx.getId());
+        }
+        if (!pendingChannel.isOpen()) {
+            return;
+        }
+        try {
+            if (unsettled.isEmpty()) {
+                pendingChannel.truncate(0);
+                logRecords = 0;
+                unforced = 0;
+                forgetCompacted();
+            } else if (logRecords > COMPACT_FACTOR * (unsettled.size() + maxBatchSize)) {
+                rewritePendingLog();
+            }
+        } catch (IOException e) {
+            System.err.println("[ПОМИЛКА розрахунку]: не вдалося стиснути журнал. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Записує нерозраховані транзакції в тимчасовий файл, скидає його на диск і атомарно
+     * заміняє ним журнал очікуючих, після чого відкриває журнал для дописування.
+     */
+    private synchronized void rewritePendingLog() throws IOException {
+        Path tmp = pendingLog.resolveSibling(pendingLog.getFileName() + ".tmp");
+        StringBuilder sb = new StringBuilder(unsettled.size() * 80);
+        for (CardTransaction tx : unsettled.values()) {
+            sb.append(toLine(tx));
+        }
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer data = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (data.hasRemaining()) {
+                out.write(data);
+            }
+            out.force(false);
+        }
+        if (pendingChannel != null) {
+            pendingChannel.close();
+        }
+        Files.move(tmp, pendingLog, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        pendingChannel = FileChannel.open(pendingLog, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logRecords = unsettled.size();
+        unforced = 0;
+        forgetCompacted();
+    }
+
+    /**
+     * Журнал більше не містить розрахованих транзакцій, тож приймач може їх забути.
+     */
+    private void forgetCompacted() {
+        if (!settledInLog.isEmpty()) {
+            sink.forget(new ArrayList<>(settledInLog));
+            settledInLog.clear();
+        }
+    }
+
+    private static String toLine(CardTransaction tx) {
+        return tx.getId() + '|' + tx.getMachineId() + '|' + tx.getMaskedCard()
+                + '|' + tx.getAmount() + '|' + tx.getAuthorizedAtMillis() + '\n';
+    }
+
+    private void recover() throws IOException {
+        if (!Files.exists(pendingLog)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(pendingLog, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] f = line.split("\\|");
+                if (f.length < 5) {
+                    continue;
+                }
+                if (sink.isSettled(f[0])) {
+                    settledInLog.add(f[0]);
+                    continue;
+                }
+                CardTransaction tx = new CardTransaction(f[0], f[1], f[2], Long.parseLong(f[3]), Long.parseLong(f[4]));
+                if (unsettled.putIfAbsent(tx.getId(), tx) != null) {
+                    continue;
+                }
+                buffers.computeIfAbsent(tx.getMachineId(), k -> new ArrayList<>()).add(tx);
+                pending++;
+            }
+        }
+    }
+
+    /**
+     * Знімок метрик конвеєра розрахунків.
+     */
+    public static class Metrics {
+        private final long settledTransactions;
+        private final long settledBatches;
+        private final long settledAmount;
+        private final int pending;
+        private final long failedFlushes;
+        private final double averageBatchLatencyMillis;
+        private final long maxBatchLatencyMillis;
+        private final double transactionsPerSecond;
+
+        Metrics(long settledTransactions, long settledBatches, long settledAmount, int pending, long failedFlushes,
+                double averageBatchLatencyMillis, long maxBatchLatencyMillis, double transactionsPerSecond) {
+            this.settledTransactions = settledTransactions;
+            this.settledBatches = settledBatches;
+            this.settledAmount = settledAmount;
+            this.pending = pending;
+            this.failedFlushes = failedFlushes;
+            this.averageBatchLatencyMillis = averageBatchLatencyMillis;
+            this.maxBatchLatencyMillis = maxBatchLatencyMillis;
+            this.transactionsPerSecond = transactionsPerSecond;
+        }
+
+        public long getSettledTransactions() { return settledTransactions; }
+        public long getSettledBatches() { return settledBatches; }
+        /** @return Сума розрахованих транзакцій у копійках. */
+        public long getSettledAmount() { return settledAmount; }
+        public int getPending() { return pending; }
+        public long getFailedFlushes() { return failedFlushes; }
+        /** @return Середній час від авторизації найстарішої транзакції пакета до розрахунку. */
+        public double getAverageBatchLatencyMillis() { return averageBatchLatencyMillis; }
+        public long getMaxBatchLatencyMillis() { return maxBatchLatencyMillis; }
+        public double getTransactionsPerSecond() { return transactionsPerSecond; }
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.UUID;
+
+/**
+ * Авторизована карткова транзакція, що очікує розрахунку (settlement).
+ * Об'єкт незмінний; ідентифікатор унікальний і використовується для захисту
+ * від повторного розрахунку після перезапуску.
+ */
+public class CardTransaction {
+    private final String id;
+    private final String machineId;
+    private final String maskedCard;
+    private final long amount;
+    private final long authorizedAtMillis;
+
+    public CardTransaction(String id, String machineId, String maskedCard, long amount, long authorizedAtMillis) {
+        this.id = id;
+        this.machineId = machineId;
+        this.maskedCard = maskedCard;
+        this.amount = amount;
+        this.authorizedAtMillis = authorizedAtMillis;
+    }
+
+    /**
+     * Створює нову транзакцію з унікальним ідентифікатором.
+     * @param machineId Ідентифікатор автомата.
+     * @param cardNumber Номер картки (зберігаються лише останні 4 цифри).
+     * @param amount Сума в копійках.
+     * @return Нова транзакція.
+     */
+    public static CardTransaction authorize(String machineId, String cardNumber, long amount) {
+        return new CardTransaction(UUID.randomUUID().toString(), machineId, mask(cardNumber), amount, System.currentTimeMillis());
+    }
+
+    private static String mask(String cardNumber) {
+        if (cardNumber == null || cardNumber.length() < 4) {
+            return "****";
+        }
+        return "****" + cardNumber.substring(cardNumber.length() - 4);
+    }
+
+    public String getId() { return id; }
+    public String getMachineId() { return machineId; }
+    public String getMaskedCard() { return maskedCard; }
+    /** @return Сума в копійках. */
+    public long getAmount() { return amount; }
+    public long getAuthorizedAtMillis() { return authorizedAtMillis; }
+}
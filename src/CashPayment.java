@@ -2,9 +2,24 @@
  * Реалізація оплати готівкою. У нашому випадку це просто імітація.
  */
 public class CashPayment implements PaymentStrategy {
+    private final DisplaySink display;
+
+    public CashPayment() {
+        this(NoOpDisplaySink.INSTANCE);
+    }
+
+    /**
+     * @param display Вихід для повідомлень покупцю.
+     */
+    public CashPayment(DisplaySink display) {
+        this.display = display;
+    }
+
     @Override
-    public boolean pay(double amount) {
-        System.out.printf("Оплата готівкою на суму %.2f грн прийнята.%n", amount);
+    public boolean pay(long amount) {
+        if (display.isEnabled()) {
+            display.show("Оплата готівкою на суму " + Money.format(amount) + " грн прийнята.");
+        }
         // У реальному житті тут була б інтеграція з купюроприймачем
         return true;
     }
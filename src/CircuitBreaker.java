@@ -0,0 +1,83 @@
+/**
+ * Запобіжник (Circuit Breaker) для зовнішнього платіжного шлюзу.
+ * Після failureThreshold збоїв поспіль запобіжник розмикається, і протягом openMillis
+ * звернення до шлюзу не виконуються: оплата одразу переходить до наступної стратегії
+ * замість очікування тайм-аутів. Після паузи пропускається одна пробна спроба
+ * (HALF_OPEN): успіх замикає запобіжник, збій знову розмикає його.
+ *
+ * Екземпляр потокобезпечний і може спільно використовуватися кількома автоматами,
+ * що працюють з одним еквайром.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+
+    /**
+     * @param failureThreshold Кількість збоїв поспіль, після якої запобіжник розмикається.
+     * @param openMillis Час у мілісекундах, протягом якого звернення блокуються.
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold <= 0 || openMillis <= 0) {
+            throw new IllegalArgumentException("Поріг збоїв і час розмикання мають бути більшими за 0.");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1_000_000L;
+    }
+
+    /**
+     * @return true, якщо звернення до шлюзу дозволене.
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAtNanos < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                // HALF_OPEN: лише одна пробна спроба одночасно
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * Фіксує успішне звернення (зокрема відмову банку, яка не є збоєм шлюзу).
+     */
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    /**
+     * Фіксує збій звернення: виняток шлюзу або перевищення тайм-ауту спроби
+     * (PaymentProcessor.Builder.timeout).
+     */
+    public synchronized void recordFailure() {
+        probeInFlight = false;
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+            consecutiveFailures = 0;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Стовпчикове сховище запасів для дуже великої кількості слотів.
+ * Кількості та ціни зберігаються в паралельних примітивних масивах за порядковим
+ * номером слота, а не в окремих об'єктах Slot. Автомати працюють зі слотами через
+ * звичний API (addSlot/getSlots), бо сховище видає легкі представлення ColumnarSlot.
+ * Одне сховище можна використовувати для всього парку автоматів, тоді агрегації
+ * (загальний залишок, пошук слотів з малим залишком) - це лінійні проходи по масиву.
+ */
+public class ColumnarInventory {
+    private final AtomicIntegerArray quantities;
+    private final long[] prices; // Ціни в копійках
+    private final Product[] products;
+    private int size;
+
+    /**
+     * @param capacity Максимальна кількість слотів у сховищі.
+     */
+    public ColumnarInventory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Місткість сховища має бути більшою за 0.");
+        }
+        this.quantities = new AtomicIntegerArray(capacity);
+        this.prices = new long[capacity];
+        this.products = new Product[capacity];
+    }
+
+    /**
+     * Додає слот до сховища.
+     * @param product Продукт слота.
+     * @param quantity Початкова кількість.
+     * @return Слот, який можна передати у VendingMachine.addSlot().
+     */
+    public synchronized Slot newSlot(Product product, int quantity) {
+        if (size == products.length) {
+            throw new IllegalStateException("Сховище заповнене: " + products.length + " слотів.");
+        }
+        int ordinal = size;
+        products[ordinal] = product;
+        prices[ordinal] = product.getPrice();
+        quantities.set(ordinal, quantity); // Volatile-запис публікує product і price для інших потоків
+        size = ordinal + 1;
+        return new ColumnarSlot(ordinal);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getQuantity(int ordinal) {
+        return quantities.get(ordinal);
+    }
+
+    public long getPrice(int ordinal) {
+        return prices[ordinal];
+    }
+
+    public Product getProduct(int ordinal) {
+        return products[ordinal];
+    }
+
+    /**
+     * @return Сумарна кількість товарів у всіх слотах сховища.
+     */
+    public long totalStock() {
+        int n = size();
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            total += quantities.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @return Сумарна вартість усіх товарів у сховищі в копійках.
+     */
+    public long totalStockValue() {
+        int n = size();
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            total += quantities.get(i) * prices[i];
+        }
+        return total;
+    }
+
+    /**
+     * Знаходить слоти, у яких залишилось менше за вказаний поріг.
+     * @param threshold Поріг кількості.
+     * @return Порядкові номери слотів у сховищі.
+     */
+    public int[] findLowStock(int threshold) {
+        int n = size();
+        int[] result = new int[16];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (quantities.get(i) < threshold) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = i;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Представлення слота, кількість якого зберігається у масиві сховища.
+     */
+    public class ColumnarSlot extends Slot {
+        private final int ordinal;
+
+        private ColumnarSlot(int ordinal) {
+            super(products[ordinal]);
+            this.ordinal = ordinal;
+        }
+
+        /** @return Порядковий номер слота у сховищі. */
+        public int getOrdinal() {
+            return ordinal;
+        }
+
+        @Override
+        public int getQuantity() {
+            return quantities.get(ordinal);
+        }
+
+        @Override
+        void setQuantity(int value) {
+            quantities.set(ordinal, value);
+        }
+
+        @Override
+        void increaseQuantity() {
+            quantities.incrementAndGet(ordinal);
+        }
+
+        @Override
+        boolean tryDecreaseQuantity() {
+            while (true) {
+                int current = quantities.get(ordinal);
+                if (current <= 0) {
+                    return false;
+                }
+                if (quantities.compareAndSet(ordinal, current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
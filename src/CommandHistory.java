@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+/**
+ * Обмежена історія виконаних команд для скасування (undo).
+ * Команди зберігаються в кільцевому буфері фіксованого розміру: запис не розміщує
+ * нових об'єктів, а при переповненні найстаріша команда витісняється.
+ * Скасування йде у зворотному порядку, тому після збою обладнання можна одразу
+ * відкотити останній продаж і внесення грошей. Один екземпляр команди може бути
+ * в історії лише один раз: команда пам'ятає лише своє останнє виконання, тож для
+ * повторного виконання потрібен новий екземпляр (або спершу скасувати попереднє).
+ *
+ * Behavioral Patterns:
+ * - Command: Зберігає команди для подальшого скасування.
+ */
+public class CommandHistory {
+    private final ReversibleCommand[] ring;
+    private int head; // Позиція для наступного запису
+    private int size;
+
+    /**
+     * @param capacity Максимальна кількість команд в історії.
+     */
+    public CommandHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Розмір історії має бути більшим за 0.");
+        }
+        this.ring = new ReversibleCommand[capacity];
+    }
+
+    /**
+     * Додає виконану команду до історії.
+     * @param command Виконана команда.
+     * @throws IllegalStateException якщо цей екземпляр команди вже є в історії.
+     */
+    public synchronized void record(ReversibleCommand command) {
+        if (contains(command)) {
+            throw new IllegalStateException("Команда вже є в історії; для повторного виконання потрібен новий екземпляр.");
+        }
+        ring[head] = command;
+        head = (head + 1) % ring.length;
+        if (size < ring.length) {
+            size++;
+        }
+    }
+
+    /**
+     * @return true, якщо цей екземпляр команди є в історії.
+     */
+    public synchronized boolean contains(ReversibleCommand command) {
+        for (ReversibleCommand recorded : ring) {
+            if (recorded == command) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Скасовує останню команду й видаляє її з історії.
+     * @return true, якщо команда змінила стан автомата назад; false, якщо історія
+     *         порожня або скасовувати не було чого (команда однаково видаляється).
+     * @throws VendingMachineException якщо скасування неможливе (команда лишається в історії).
+     */
+    public synchronized boolean undoLast() throws VendingMachineException {
+        if (size == 0) {
+            return false;
+        }
+        int last = (head - 1 + ring.length) % ring.length;
+        boolean undone = ring[last].undo();
+        ring[last] = null;
+        head = last;
+        size--;
+        return undone;
+    }
+
+    /**
+     * Скасовує до count останніх команд.
+     * @param count Кількість команд.
+     * @return Кількість команд, які справді змінили стан автомата.
+     * @throws VendingMachineException якщо одну з команд скасувати неможливо.
+     */
+    public synchronized int undo(int count) throws VendingMachineException {
+        int undone = 0;
+        for (int i = 0; i < count && size > 0; i++) {
+            if (undoLast()) {
+                undone++;
+            }
+        }
+        return undone;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Очищає історію (наприклад, після завершення покупки).
+     */
+    public synchronized void clear() {
+        Arrays.fill(ring, null);
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,215 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Черга команд одного автомата. Команди (InsertMoneyCommand, SelectProductCommand тощо)
+ * можуть надходити з багатьох потоків, а виконуються по черзі в одному потоці-виконавці
+ * (single writer), тому операції різних покупців не перемішуються. Кожна команда,
+ * як і прямий виклик методів автомата, виконує перехід під його блокуванням переходів
+ * (автомат можна використовувати й поза чергою), але в черзі це блокування майже
+ * ніколи не має конкурентів і не передається між потоками.
+ *
+ * Виконавець забирає з черги всі команди, що накопичились (до maxBatch), і виконує
+ * їх пакетом без повторного очікування на черзі. Кожен відправник отримує
+ * CompletableFuture, який завершується результатом або винятком своєї команди.
+ *
+ * close() ставить у чергу маркер зупинки (poison pill) і не перериває виконавця,
+ * тому команда, що виконується, завершується звичайним чином. Команди, поставлені
+ * до маркера, виконуються; команди, що потрапили в чергу після нього, отримують
+ * future з IllegalStateException. Якщо close() викликає команда в потоці-виконавці,
+ * маркер не ставиться (при заповненій черзі put чекав би на самого себе): виконавець
+ * дочитує вже поставлені команди і зупиняється, коли черга спорожніє.
+ *
+ * Behavioral Patterns:
+ * - Command (Invoker): Ставить команди в чергу та виконує їх.
+ */
+public class CommandQueue implements AutoCloseable {
+    // Маркер зупинки виконавця
+    private static final Entry<Void> SHUTDOWN = new Entry<>(() -> null);
+
+    private final BlockingQueue<Entry<?>> queue;
+    private final int maxBatch;
+    private final Thread writer;
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private volatile boolean closed;
+    private volatile boolean stopRequested; // close() з потоку-виконавця
+
+    /**
+     * @param machine Автомат, команди якого виконує черга.
+     * @param capacity Місткість черги; при заповненні відправники чекають.
+     * @param maxBatch Максимальна кількість команд в одному пакеті.
+     */
+    public CommandQueue(VendingMachine machine, int capacity, int maxBatch) {
+        if (capacity <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("Місткість черги та розмір пакета мають бути більшими за 0.");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.writer = new Thread(this::runLoop, "commands-" + machine.getMachineId());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Ставить команду в чергу.
+     * @param command Команда.
+     * @return Future, що завершується після виконання команди або з її винятком.
+     */
+    public CompletableFuture<Void> submit(Command command) {
+        return call(() -> {
+            command.execute();
+            return null;
+        });
+    }
+
+    /**
+     * Ставить в чергу операцію з результатом (наприклад, machine::requestChange).
+     * @param operation Операція над автоматом.
+     * @return Future з результатом операції.
+     */
+    public <T> CompletableFuture<T> call(Callable<T> operation) {
+        Entry<T> entry = new Entry<>(operation);
+        if (closed) {
+            entry.reject();
+            return entry.result;
+        }
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entry.result.completeExceptionally(e);
+            return entry.result;
+        }
+        // Черга закрилась між перевіркою і додаванням: виконавець міг уже завершитись,
+        // тому команда, яку ще не забрано, відхиляється тут
+        if (closed && queue.remove(entry)) {
+            entry.reject();
+        }
+        return entry.result;
+    }
+
+    /**
+     * @return Кількість виконаних команд.
+     */
+    public long getExecutedCount() {
+        return executed.sum();
+    }
+
+    /**
+     * @return Середня кількість команд в одному пакеті.
+     */
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) executed.sum() / count;
+    }
+
+    /**
+     * @return true, якщо черга закрита і нових команд не приймає.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Припиняє приймати команди, виконує вже поставлені та чекає зупинки виконавця.
+     * Повторний виклик лише чекає зупинки. Виклик із команди (у потоці-виконавці) не
+     * чекає: виконавець зупиниться після вже поставлених команд.
+     */
+    @Override
+    public void close() {
+        boolean first;
+        synchronized (this) {
+            first = !closed;
+            closed = true;
+        }
+        // Команда, що закриває власну чергу, не може ні чекати місця в черзі, ні чекати сама на себе
+        if (Thread.currentThread() == writer) {
+            stopRequested = true;
+            return;
+        }
+        try {
+            if (first) {
+                queue.put(SHUTDOWN);
+            }
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop() {
+        List<Entry<?>> batch = new ArrayList<>(maxBatch);
+        boolean running = true;
+        while (running) {
+            if (stopRequested) {
+                Entry<?> next = queue.poll();
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            } else {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    // Виконавця зупиняє лише маркер; переривання від команди ігнорується
+                    continue;
+                }
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            int stop = batch.indexOf(SHUTDOWN);
+            if (stop >= 0) {
+                List<Entry<?>> late = batch.subList(stop, batch.size());
+                late.forEach(Entry::reject);
+                late.clear();
+                running = false;
+            }
+            executeBatch(batch);
+        }
+        // Команди, що потрапили в чергу після маркера, не виконуються
+        List<Entry<?>> late = new ArrayList<>();
+        queue.drainTo(late);
+        late.forEach(Entry::reject);
+    }
+
+    private void executeBatch(List<Entry<?>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // Лічильники оновлюються до завершення future, щоб відправник бачив свою команду
+        batches.increment();
+        for (Entry<?> entry : batch) {
+            executed.increment();
+            entry.run();
+            // Переривання, залишене командою, не повинне вплинути на наступні
+            Thread.interrupted();
+        }
+        batch.clear();
+    }
+
+    private static final class Entry<T> {
+        private final Callable<T> operation;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Entry(Callable<T> operation) {
+            this.operation = operation;
+        }
+
+        void run() {
+            try {
+                result.complete(operation.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        void reject() {
+            result.completeExceptionally(new IllegalStateException("Черга команд закрита."));
+        }
+    }
+}
@@ -1,10 +1,21 @@
 /**
  * Конкретна реалізація спостерігача (Observer), яка виводить повідомлення
- * про події в консоль. Імітує дисплей на автоматі.
+ * про події на дисплей (DisplaySink). Імітує дисплей на автоматі.
  */
 public class ConsoleDisplayObserver implements VendingMachineObserver {
+    private final DisplaySink display;
+
+    /**
+     * @param display Вихід, у який передаються повідомлення про події.
+     */
+    public ConsoleDisplayObserver(DisplaySink display) {
+        this.display = display;
+    }
+
     @Override
-    public void update(String message) {
-        System.out.println("[DISPLAY]: " + message);
+    public void update(VendingMachineEvent event) {
+        if (display.isEnabled()) {
+            display.show("[DISPLAY]: " + event.getMessage());
+        }
     }
 }
@@ -0,0 +1,162 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Буферизований асинхронний вихід у консоль. Потік покупки лише кладе рядок у чергу,
+ * а окремий фоновий потік виводить накопичені рядки пакетом і скидає потік виводу
+ * один раз на пакет. Порядок повідомлень зберігається. Якщо черга заповнена,
+ * відправник чекає, тому повідомлення не губляться. Перевірка закриття і постановка
+ * в чергу виконуються під тим самим блокуванням, що й close(), тому повідомлення,
+ * надіслане під час закриття, або потрапляє в чергу до фінального виводу, або
+ * виводиться напряму.
+ */
+public class ConsoleDisplaySink implements DisplaySink, AutoCloseable {
+    private final PrintStream out;
+    private final PrintStream err;
+    private final BlockingQueue<Line> queue;
+    private final Thread writer;
+    private final Object progress = new Object();
+    // Блокування відправників і close(); порядок захоплення: sendLock, потім progress
+    private final Object sendLock = new Object();
+    private long submitted; // Під блокуванням progress
+    private long written;   // Під блокуванням progress
+    private volatile boolean closed; // Змінюється під блокуванням sendLock
+
+    public ConsoleDisplaySink() {
+        this(System.out, System.err, 4096);
+    }
+
+    /**
+     * @param out Потік для інформаційних повідомлень.
+     * @param err Потік для повідомлень про помилки.
+     * @param capacity Місткість черги повідомлень.
+     */
+    public ConsoleDisplaySink(PrintStream out, PrintStream err, int capacity) {
+        this.out = out;
+        this.err = err;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::runLoop, "display-console");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void show(String message) {
+        enqueue(new Line(message, false));
+    }
+
+    @Override
+    public void error(String message) {
+        enqueue(new Line(message, true));
+    }
+
+    @Override
+    public void flush() {
+        synchronized (progress) {
+            long target = submitted;
+            while (written < target && writer.isAlive()) {
+                try {
+                    progress.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Виводить залишок черги і зупиняє фоновий потік.
+     */
+    @Override
+    public void close() {
+        flush();
+        synchronized (sendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Line line) {
+        synchronized (sendLock) {
+            if (closed) {
+                (line.error ? err : out).println(line.text);
+                return;
+            }
+            synchronized (progress) {
+                submitted++;
+            }
+            try {
+                // Фоновий потік не захоплює sendLock, тому чекати місця в черзі тут безпечно
+                queue.put(line);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                (line.error ? err : out).println(line.text);
+                markWritten(1);
+            }
+        }
+    }
+
+    private void runLoop() {
+        List<Line> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch);
+            boolean usedErr = false;
+            for (Line line : batch) {
+                if (line.error) {
+                    out.flush();
+                    err.println(line.text);
+                    usedErr = true;
+                } else {
+                    out.println(line.text);
+                }
+            }
+            out.flush();
+            if (usedErr) {
+                err.flush();
+            }
+            markWritten(batch.size());
+            batch.clear();
+        }
+        // Виводимо те, що встигли поставити в чергу під час закриття
+        Line line;
+        while ((line = queue.poll()) != null) {
+            (line.error ? err : out).println(line.text);
+        }
+        out.flush();
+        err.flush();
+    }
+
+    private void markWritten(int count) {
+        synchronized (progress) {
+            written += count;
+            progress.notifyAll();
+        }
+    }
+
+    private static final class Line {
+        private final String text;
+        private final boolean error;
+
+        Line(String text, boolean error) {
+            this.text = text;
+            this.error = error;
+        }
+    }
+}
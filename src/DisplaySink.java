@@ -0,0 +1,33 @@
+/**
+ * Вихід для повідомлень користувачу (дисплей автомата, консоль).
+ * Стани, способи оплати та контролер не пишуть у System.out напряму, а передають
+ * повідомлення сюди, тому той самий код працює і в консольному режимі, і на сервері
+ * без жодного консольного вводу-виводу.
+ */
+public interface DisplaySink {
+    /**
+     * Показує інформаційне повідомлення.
+     * @param message Текст повідомлення.
+     */
+    void show(String message);
+
+    /**
+     * Показує повідомлення про помилку.
+     * @param message Текст повідомлення.
+     */
+    void error(String message);
+
+    /**
+     * Дозволяє пропустити формування рядка, якщо повідомлення все одно нікуди не потрапить.
+     * @return false, якщо повідомлення відкидаються.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Чекає, доки всі передані повідомлення буде виведено.
+     */
+    default void flush() {
+    }
+}
@@ -13,9 +13,9 @@ public class Drink extends Product {
         /**
          * Конструктор з обов'язковими параметрами.
          * @param name Назва напою.
-         * @param price Ціна напою.
+         * @param price Ціна напою в копійках.
          */
-        public Builder(String name, double price) {
+        public Builder(String name, long price) {
             super(name, price);
         }
 
@@ -50,7 +50,7 @@ public class Drink extends Product {
     }
 
     @Override
-    public String getDescription() {
-        return String.format("Напій: %s, Об'єм: %.1fл, Ціна: %.2f грн", getName(), getVolume(), getPrice());
+    protected String describe() {
+        return String.format("Напій: %s, Об'єм: %.1fл, Ціна: %s грн", getName(), getVolume(), Money.format(getPrice()));
     }
 }
@@ -0,0 +1,90 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Приймач розрахунків за замовчуванням: дописує кожен пакет у текстовий файл
+ * (один рядок на транзакцію: batch|machineId|transactionId|amount|authorizedAt)
+ * і скидає файл на диск. При запуску зчитує вже розраховані ідентифікатори,
+ * тому після перезапуску транзакції не розраховуються вдруге.
+ *
+ * Ідентифікатор тримається в пам'яті, доки CardSettlementPipeline не повідомить через
+ * forget, що його вилучено з журналу очікуючих: лише тоді його вже ніколи не запитають.
+ * Тому, як би не відставало стискання журналу, транзакція з журналу після перезапуску
+ * не розраховується вдруге. Під час запуску зчитуються всі ідентифікатори файлу;
+ * ті, що лишилися в журналі конвеєра, він забуває після початкового стискання.
+ */
+public class FileSettlementSink implements SettlementSink, AutoCloseable {
+    private final FileChannel channel;
+    private final Set<String> settled = new HashSet<>();
+    private long batchCounter;
+
+    /**
+     * @param file Файл розрахунків (створюється, якщо не існує).
+     * @throws IOException якщо файл не вдалося відкрити або прочитати.
+     */
+    public FileSettlementSink(Path file) throws IOException {
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\\|");
+                    if (fields.length >= 3) {
+                        settled.add(fields[2]);
+                        batchCounter = Math.max(batchCounter, Long.parseLong(fields[0]));
+                    }
+                }
+            }
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void settle(String machineId, List<CardTransaction> batch) throws IOException {
+        long batchId = ++batchCounter;
+        StringBuilder sb = new StringBuilder(batch.size() * 80);
+        for (CardTransaction tx : batch) {
+            sb.append(batchId).append('|').append(machineId).append('|').append(tx.getId())
+                    .append('|').append(tx.getAmount()).append('|').append(tx.getAuthorizedAtMillis()).append('\n');
+        }
+        ByteBuffer data = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        channel.force(false);
+        for (CardTransaction tx : batch) {
+            settled.add(tx.getId());
+        }
+    }
+
+    @Override
+    public synchronized boolean isSettled(String transactionId) {
+        return settled.contains(transactionId);
+    }
+
+    @Override
+    public synchronized void forget(Collection<String> transactionIds) {
+        settled.removeAll(transactionIds);
+    }
+
+    /**
+     * @return Кількість ідентифікаторів, що зараз зберігаються в пам'яті.
+     */
+    public synchronized int getRetainedIds() {
+        return settled.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,430 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Періодичні двійкові знімки стану парку автоматів (або одного автомата) для швидкого
+ * перезапуску. Повний знімок містить слоти, продукти, залишки, баланс і стан кожного
+ * автомата; між повними знімками пишуться інкрементальні дельти лише зі змінених
+ * автоматів і слотів.
+ *
+ * Знімки можна робити з фонового потоку. Запис кожного автомата зчитується під
+ * блокуванням його переходів (VendingMachine.readConsistent), а залишок кожного
+ * слота - під блокуванням слота, як у конкурентній покупці, тому баланс і залишки
+ * у знімку узгоджені. Переходи автомата чекають лише на час читання його запису,
+ * а не на запис файлу. Файл пишеться лише з захопленого стану (разом із продуктами
+ * слотів), а номер знімка і позначки для наступних дельт оновлюються тільки після
+ * атомарного перейменування файлу: невдалий запис не зсуває базу дельт.
+ *
+ * Формат файлу: magic (int), вид файлу (byte), кількість автоматів (int), далі записи
+ * автоматів: ідентифікатор (UTF), вид запису (byte), код стану (byte), баланс (long) і
+ * або всі слоти (повний запис), або пари (індекс слота, кількість) для змінених слотів.
+ */
+public class FleetCheckpointer implements AutoCloseable {
+    private static final int MAGIC = 0x564D534E; // "VMSN"
+    private static final byte FULL = 1;
+    private static final byte DELTA = 2;
+    private static final byte DRINK = 1;
+    private static final byte FOOD = 2;
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private final VendingMachineFleet fleet;
+    private final Path directory;
+    private final Map<String, Mark> marks = new HashMap<>();
+    private int sequence;
+    private int deltaNumber;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param fleet Парк автоматів, стан якого зберігається.
+     * @param directory Каталог для файлів знімків.
+     * @throws IOException якщо не вдалося створити каталог.
+     */
+    public FleetCheckpointer(VendingMachineFleet fleet, Path directory) throws IOException {
+        this.fleet = fleet;
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.sequence = latestSequence(directory);
+    }
+
+    /**
+     * Запускає фоновий потік: кожні intervalMillis пишеться дельта, а кожен
+     * fullEvery-й раз - повний знімок.
+     * @param intervalMillis Період між контрольними точками в мілісекундах.
+     * @param fullEvery Як часто (у контрольних точках) робити повний знімок.
+     * @throws IllegalArgumentException якщо період або fullEvery не додатні.
+     */
+    public synchronized void start(long intervalMillis, int fullEvery) {
+        if (intervalMillis <= 0 || fullEvery <= 0) {
+            throw new IllegalArgumentException("Період і частота повних знімків мають бути більшими за 0.");
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("Фонові знімки вже запущено.");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fleet-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] ticks = {0};
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (ticks[0]++ % fullEvery == 0) {
+                    writeSnapshot();
+                } else {
+                    writeDelta();
+                }
+            } catch (IOException | RuntimeException e) {
+                // Виняток із задачі скасував би всі наступні знімки, тому лише записуємо його
+                System.err.println("[ПОМИЛКА знімка]: " + e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Пише повний знімок усього парку і видаляє попередній знімок разом з його дельтами.
+     * @return Шлях до файлу знімка.
+     * @throws IOException якщо запис не вдався.
+     */
+    public synchronized Path writeSnapshot() throws IOException {
+        int previous = sequence;
+        int next = sequence + 1;
+        Map<String, Mark> written = new LinkedHashMap<>();
+        for (VendingMachine machine : fleet.getMachines()) {
+            written.put(machine.getMachineId(), capture(machine));
+        }
+        Path target = directory.resolve(String.format("%s%06d%s", PREFIX, next, SUFFIX));
+        writeAtomically(target, out -> {
+            out.writeInt(MAGIC);
+            out.writeByte(FULL);
+            out.writeInt(written.size());
+            for (Map.Entry<String, Mark> entry : written.entrySet()) {
+                writeFullMachine(out, entry.getKey(), entry.getValue());
+            }
+        });
+        sequence = next;
+        deltaNumber = 0;
+        marks.clear();
+        marks.putAll(written);
+        if (previous > 0) {
+            deleteSequence(previous);
+        }
+        return target;
+    }
+
+    /**
+     * Пише дельту відносно останньої контрольної точки: лише автомати, у яких змінився
+     * баланс, стан або кількість товару, і лише змінені слоти.
+     * Якщо повного знімка ще немає, пише повний знімок.
+     * @return Шлях до файлу дельти (або знімка).
+     * @throws IOException якщо запис не вдався.
+     */
+    public synchronized Path writeDelta() throws IOException {
+        if (sequence == 0 || marks.isEmpty() && !fleet.getMachines().isEmpty()) {
+            return writeSnapshot();
+        }
+        Map<String, Mark> changed = new LinkedHashMap<>();
+        for (VendingMachine machine : fleet.getMachines()) {
+            Mark mark = capture(machine);
+            Mark last = marks.get(machine.getMachineId());
+            if (last == null || !last.sameAs(mark)) {
+                changed.put(machine.getMachineId(), mark);
+            }
+        }
+        int next = deltaNumber + 1;
+        Path target = directory.resolve(String.format("%s%06d.delta-%04d%s", PREFIX, sequence, next, SUFFIX));
+        writeAtomically(target, out -> {
+            out.writeInt(MAGIC);
+            out.writeByte(DELTA);
+            out.writeInt(changed.size());
+            for (Map.Entry<String, Mark> entry : changed.entrySet()) {
+                Mark mark = entry.getValue();
+                Mark last = marks.get(entry.getKey());
+                if (last == null || !last.sameProducts(mark)) {
+                    writeFullMachine(out, entry.getKey(), mark);
+                } else {
+                    writeDeltaMachine(out, entry.getKey(), last, mark);
+                }
+            }
+        });
+        deltaNumber = next;
+        marks.putAll(changed);
+        return target;
+    }
+
+    /**
+     * Відновлює парк з останнього повного знімка та його дельт.
+     * @param directory Каталог зі знімками.
+     * @param fleet Парк, у який відновлюються автомати (існуючі автомати з тими ж ID перезаписуються).
+     * @return Кількість прочитаних файлів (знімок + дельти), 0 якщо знімків немає.
+     * @throws IOException якщо файли пошкоджені або не читаються.
+     */
+    public static int restore(Path directory, VendingMachineFleet fleet) throws IOException {
+        int sequence = latestSequence(directory);
+        if (sequence == 0) {
+            return 0;
+        }
+        int files = 0;
+        for (Path file : filesOfSequence(directory, sequence)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Невірний формат файлу знімка: " + file);
+                }
+                in.readByte();
+                int machines = in.readInt();
+                for (int i = 0; i < machines; i++) {
+                    readMachine(in, fleet);
+                }
+            }
+            files++;
+        }
+        return files;
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = scheduler;
+            scheduler = null;
+        }
+        // Чекаємо без блокування: поточна задача сама захоплює this у writeSnapshot/writeDelta
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // --- Запис ---
+
+    private static void writeFullMachine(DataOutputStream out, String machineId, Mark mark) throws IOException {
+        out.writeUTF(machineId);
+        out.writeByte(FULL);
+        out.writeByte(mark.state);
+        out.writeLong(mark.balance);
+        out.writeInt(mark.quantities.length);
+        for (int i = 0; i < mark.quantities.length; i++) {
+            writeProduct(out, mark.products[i]);
+            out.writeInt(mark.quantities[i]);
+        }
+    }
+
+    private static void writeDeltaMachine(DataOutputStream out, String machineId, Mark last, Mark mark) throws IOException {
+        out.writeUTF(machineId);
+        out.writeByte(DELTA);
+        out.writeByte(mark.state);
+        out.writeLong(mark.balance);
+        int changedSlots = 0;
+        for (int i = 0; i < mark.quantities.length; i++) {
+            if (mark.quantities[i] != last.quantities[i]) {
+                changedSlots++;
+            }
+        }
+        out.writeInt(changedSlots);
+        for (int i = 0; i < mark.quantities.length; i++) {
+            if (mark.quantities[i] != last.quantities[i]) {
+                out.writeInt(i);
+                out.writeInt(mark.quantities[i]);
+            }
+        }
+    }
+
+    private static void writeProduct(DataOutputStream out, Product product) throws IOException {
+        if (product instanceof Drink) {
+            out.writeByte(DRINK);
+        } else if (product instanceof Food) {
+            out.writeByte(FOOD);
+        } else {
+            throw new IOException("Невідомий тип продукту: " + product.getClass().getName());
+        }
+        out.writeUTF(product.getName());
+        out.writeUTF(product.getSku());
+        out.writeLong(product.getPrice());
+        out.writeInt(product.getCalories());
+        out.writeUTF(product.getExpirationDate());
+        if (product instanceof Drink) {
+            out.writeDouble(((Drink) product).getVolume());
+        } else {
+            out.writeInt(((Food) product).getWeight());
+        }
+    }
+
+    // --- Читання ---
+
+    private static void readMachine(DataInputStream in, VendingMachineFleet fleet) throws IOException {
+        VendingMachine machine = fleet.getOrCreate(in.readUTF());
+        byte kind = in.readByte();
+        byte state = in.readByte();
+        long balance = in.readLong();
+        if (kind == FULL) {
+            machine.reset();
+            int slots = in.readInt();
+            for (int i = 0; i < slots; i++) {
+                Product product = readProduct(in);
+                machine.addSlot(new Slot(product, in.readInt()));
+            }
+        } else if (kind == DELTA) {
+            int changed = in.readInt();
+            for (int i = 0; i < changed; i++) {
+                int index = in.readInt();
+                machine.restoreQuantity(index + 1, in.readInt());
+            }
+        } else {
+            throw new IOException("Невідомий вид запису автомата: " + kind);
+        }
+        // Стан Sold перехідний, тому відновлюється за балансом (як і Idle/HasMoney)
+        machine.restoreBalance(balance);
+    }
+
+    private static Product readProduct(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        String name = in.readUTF();
+        String sku = in.readUTF();
+        long price = in.readLong();
+        int calories = in.readInt();
+        String expirationDate = in.readUTF();
+        if (type == DRINK) {
+            return ProductFactory.createDrink(name, sku, price, in.readDouble(), calories, expirationDate);
+        }
+        if (type == FOOD) {
+            return ProductFactory.createFood(name, sku, price, in.readInt(), calories, expirationDate);
+        }
+        throw new IOException("Невідомий тип продукту у знімку: " + type);
+    }
+
+    // --- Допоміжні методи ---
+
+    private static Mark capture(VendingMachine machine) {
+        return machine.readConsistent(() -> {
+            List<Slot> slots = machine.getSlots();
+            int[] quantities = new int[slots.size()];
+            Product[] products = new Product[quantities.length];
+            for (int i = 0; i < quantities.length; i++) {
+                Slot slot = slots.get(i);
+                synchronized (slot) {
+                    quantities[i] = slot.getQuantity();
+                    products[i] = slot.getProduct();
+                }
+            }
+            return new Mark(machine.getStateCode(), machine.getCurrentBalance(), quantities, products);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static void writeAtomically(Path target, Writer writer) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            writer.write(out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteSequence(int seq) throws IOException {
+        for (Path file : filesOfSequence(directory, seq)) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static int latestSequence(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        int latest = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX) && !name.contains(".delta-")) {
+                    latest = Math.max(latest, Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * @return Файл повного знімка і його дельти у порядку запису.
+     */
+    private static List<Path> filesOfSequence(Path directory, int seq) throws IOException {
+        String base = String.format("%s%06d", PREFIX, seq);
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(base) && name.endsWith(SUFFIX);
+            }).forEach(result::add);
+        }
+        // Ім'я повного знімка ("snapshot-000001.bin") сортується після дельт, переносимо його на початок
+        result.sort((a, b) -> {
+            boolean aDelta = a.getFileName().toString().contains(".delta-");
+            boolean bDelta = b.getFileName().toString().contains(".delta-");
+            if (aDelta != bDelta) {
+                return aDelta ? 1 : -1;
+            }
+            return a.compareTo(b);
+        });
+        return result;
+    }
+
+    /**
+     * Стан автомата на момент останньої контрольної точки.
+     */
+    private static final class Mark {
+        final int state;
+        final long balance;
+        final int[] quantities;
+        final Product[] products;
+
+        Mark(int state, long balance, int[] quantities, Product[] products) {
+            this.state = state;
+            this.balance = balance;
+            this.quantities = quantities;
+            this.products = products;
+        }
+
+        boolean sameAs(Mark other) {
+            return state == other.state && balance == other.balance
+                    && Arrays.equals(quantities, other.quantities) && sameProducts(other);
+        }
+
+        /**
+         * @return true, якщо слоти ті самі (той самий екземпляр продукту в кожному) і
+         *         дельта може містити лише залишки.
+         */
+        boolean sameProducts(Mark other) {
+            if (products.length != other.products.length) {
+                return false;
+            }
+            for (int i = 0; i < products.length; i++) {
+                if (products[i] != other.products[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
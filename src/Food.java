@@ -13,9 +13,9 @@ public class Food extends Product {
         /**
          * Конструктор з обов'язковими параметрами.
          * @param name Назва продукту.
-         * @param price Ціна продукту.
+         * @param price Ціна продукту в копійках.
          */
-        public Builder(String name, double price) {
+        public Builder(String name, long price) {
             super(name, price);
         }
 
@@ -50,7 +50,7 @@ public class Food extends Product {
     }
 
     @Override
-    public String getDescription() {
-        return String.format("Їжа: %s, Вага: %dг, Ціна: %.2f грн", getName(), getWeight(), getPrice());
+    protected String describe() {
+        return String.format("Їжа: %s, Вага: %dг, Ціна: %s грн", getName(), getWeight(), Money.format(getPrice()));
     }
 }
@@ -2,34 +2,40 @@
  * Стан, коли гроші внесені. Автомат очікує вибору продукту.
  */
 public class HasMoneyState implements VendingMachineState {
+    static final HasMoneyState INSTANCE = new HasMoneyState();
 
     @Override
-    public void insertMoney(VendingMachine machine, double amount) {
+    public void insertMoney(VendingMachine machine, long amount) {
         machine.doInsertMoney(amount); // Викликаємо внутрішній метод
-        System.out.printf("Внесено ще: %.2f грн. Загальний баланс: %.2f грн%n", amount, machine.getCurrentBalance());
+        DisplaySink display = machine.getDisplay();
+        if (display.isEnabled()) {
+            display.show("Внесено ще: " + Money.format(amount) + " грн. Загальний баланс: " + Money.format(machine.getCurrentBalance()) + " грн");
+        }
     }
 
     @Override
-    public void selectProduct(VendingMachine machine, int slotNumber) throws VendingMachineException {
+    public PurchaseOutcome selectProduct(VendingMachine machine, int slotNumber) {
         // Делегуємо перевірку логіці самого автомата
-        Product product = machine.doSelectProduct(slotNumber);
-        
-        // Якщо винятку не було, переходимо до стану видачі
-        machine.setProductToDispense(product);
-        machine.setCurrentState(machine.getSoldState());
-        machine.dispenseProduct(); // Одразу викликаємо видачу
+        PurchaseOutcome outcome = machine.doSelectProduct(slotNumber);
+        if (outcome.isSuccess()) {
+            // Таблиця переводить автомат у стан видачі
+            machine.setProductToDispense(machine.getSlots().get(slotNumber - 1).getProduct());
+        }
+        return outcome;
     }
 
     @Override
     public void dispenseProduct(VendingMachine machine) {
-        System.out.println("Спочатку потрібно обрати товар.");
+        machine.getDisplay().show("Спочатку потрібно обрати товар.");
     }
 
     @Override
-    public double returnChange(VendingMachine machine) {
-        double change = machine.doReturnChange();
-        System.out.printf("Повернено решту: %.2f грн%n", change);
-        machine.setCurrentState(machine.getIdleState());
+    public long returnChange(VendingMachine machine) {
+        long change = machine.doReturnChange();
+        DisplaySink display = machine.getDisplay();
+        if (display.isEnabled()) {
+            display.show("Повернено решту: " + Money.format(change) + " грн");
+        }
         return change;
     }
 }
@@ -3,33 +3,32 @@
  * У цьому стані можна лише внести гроші.
  */
 public class IdleState implements VendingMachineState {
+    static final IdleState INSTANCE = new IdleState();
 
     @Override
-    public void insertMoney(VendingMachine machine, double amount) {
+    public void insertMoney(VendingMachine machine, long amount) {
         machine.doInsertMoney(amount); // Викликаємо внутрішній метод
-        System.out.printf("Внесено: %.2f грн. Баланс: %.2f грн%n", amount, machine.getCurrentBalance());
-        // Зміна стану на HasMoneyState
-        machine.setCurrentState(machine.getHasMoneyState());
+        DisplaySink display = machine.getDisplay();
+        if (display.isEnabled()) {
+            display.show("Внесено: " + Money.format(amount) + " грн. Баланс: " + Money.format(machine.getCurrentBalance()) + " грн");
+        }
     }
 
     @Override
-    public void selectProduct(VendingMachine machine, int slotNumber) throws VendingMachineException {
-        // Ми не можемо викинути VendingMachineException, бо він абстрактний.
-        // Замість цього, ми можемо викинути один з його конкретних нащадків,
-        // але простіше просто вивести повідомлення.
-        // Щоб задовольнити сигнатуру методу, ми нічого не викидаємо,
-        // але користувач отримує повідомлення.
-        System.out.println("Спочатку внесіть гроші.");
+    public PurchaseOutcome selectProduct(VendingMachine machine, int slotNumber) {
+        // Це не помилка, а підказка користувачу, тому selectSlot не викидає виняток
+        machine.getDisplay().show("Спочатку внесіть гроші.");
+        return PurchaseOutcome.NO_MONEY;
     }
 
     @Override
     public void dispenseProduct(VendingMachine machine) {
-        System.out.println("Неможливо видати товар, спочатку оберіть його.");
+        machine.getDisplay().show("Неможливо видати товар, спочатку оберіть його.");
     }
 
     @Override
-    public double returnChange(VendingMachine machine) {
-        System.out.println("Баланс порожній, решта не повертається.");
+    public long returnChange(VendingMachine machine) {
+        machine.getDisplay().show("Баланс порожній, решта не повертається.");
         return 0;
     }
 }
@@ -1,12 +1,13 @@
 /**
  * Конкретна команда (Command) для внесення грошей.
  * Інкапсулює запит до VendingMachine на внесення певної суми.
+ * Скасування списує цю суму з балансу, якщо її ще не витрачено.
  */
-public class InsertMoneyCommand implements Command {
+public class InsertMoneyCommand implements ReversibleCommand {
     private final VendingMachine machine;
-    private final double amount;
+    private final long amount; // Сума в копійках
 
-    public InsertMoneyCommand(VendingMachine machine, double amount) {
+    public InsertMoneyCommand(VendingMachine machine, long amount) {
         this.machine = machine;
         this.amount = amount;
     }
@@ -15,4 +16,13 @@ public class InsertMoneyCommand implements Command {
     public void execute() {
         machine.insertMoney(amount);
     }
+
+    @Override
+    public boolean undo() throws VendingMachineException {
+        if (amount <= 0) {
+            return false;
+        }
+        machine.doRefundInsert(amount);
+        return true;
+    }
 }
@@ -0,0 +1,144 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гістограма затримок з логарифмічними кошиками (у стилі HdrHistogram): кожен
+ * степінь двійки поділено на 4 кошики, тобто відносна похибка не перевищує 25%.
+ * Діапазон - від 64 нс до ~68 с; довші значення потрапляють в останній кошик.
+ *
+ * Запис не блокує потоків і не розміщує об'єктів: кошик обчислюється бітовими
+ * операціями, а лічильники - атомарні.
+ */
+public class LatencyHistogram {
+    private static final int MIN_SHIFT = 6;           // 64 нс
+    private static final int MAX_SHIFT = 36;          // ~68.7 с
+    private static final int SUB_BUCKET_BITS = 2;     // 4 кошики на степінь двійки
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Кошик 0 - до 64 нс, останній - переповнення (понад 2^36 нс)
+    static final int BUCKETS = (MAX_SHIFT - MIN_SHIFT) * SUB_BUCKETS + 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Записує одне значення.
+     * @param nanos Затримка в наносекундах.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        sum.add(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            // Повторюємо, доки не оновимо максимум
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return Знімок гістограми. Лічильники читаються без блокування, тому знімок,
+     *         зроблений під час запису, може відставати на кілька значень.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        // Кількість рахуємо з кошиків, щоб вона збігалася з сумою кошиків у звіті
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < (1L << MIN_SHIFT)) {
+            return 0;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(nanos);
+        if (msb >= MAX_SHIFT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (msb - MIN_SHIFT) * SUB_BUCKETS + sub + 1;
+    }
+
+    /**
+     * @return Верхня межа кошика в наносекундах (не включно); для останнього - Long.MAX_VALUE.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket == 0) {
+            return 1L << MIN_SHIFT;
+        }
+        if (bucket >= BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int msb = (bucket - 1) / SUB_BUCKETS + MIN_SHIFT;
+        int sub = (bucket - 1) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub + 1) << (msb - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Незмінний знімок гістограми.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+        /** @return Сума всіх значень у наносекундах. */
+        public long getSumNanos() { return sum; }
+        public long getMaxNanos() { return max; }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param quantile Квантиль від 0 до 1 (наприклад, 0.99).
+         * @return Верхня межа кошика, що містить квантиль, в наносекундах (не більше максимуму).
+         */
+        public long getQuantileNanos(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @return Кількість значень, менших за межу upperNanos (межа має збігатися з межею кошика).
+         */
+        long countBelow(long upperNanos) {
+            long seen = 0;
+            for (int i = 0; i < counts.length && upperBoundOf(i) <= upperNanos; i++) {
+                seen += counts[i];
+            }
+            return seen;
+        }
+    }
+}
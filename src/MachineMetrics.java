@@ -0,0 +1,211 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики одного автомата: гістограми затримок для кожної операції, для вибору
+ * з кожного слота та для кожного способу оплати, а також лічильники результатів
+ * покупок і винятків. Підключається через VendingMachine.setMetrics (або
+ * MetricsRegistry.register); без метрик автомат не вимірює нічого.
+ *
+ * Запис не блокує потоків: гістограми й лічильники атомарні (LongAdder), а
+ * гістограми слотів і способів оплати створюються один раз при першому зверненні.
+ */
+public class MachineMetrics {
+
+    /**
+     * Операція автомата, що вимірюється.
+     */
+    public enum Operation {
+        INSERT_MONEY, SELECT_SLOT, REQUEST_CHANGE, PURCHASE;
+
+        /** @return Назва для міток Prometheus. */
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Результат оплати. UNKNOWN - невідомо, чи списано кошти (потрібна звірка).
+     */
+    public enum PaymentResult { APPROVED, DECLINED, FAILED, UNKNOWN }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final PurchaseOutcome[] OUTCOMES = PurchaseOutcome.values();
+    private static final PaymentResult[] PAYMENT_RESULTS = PaymentResult.values();
+
+    private final String machineId;
+    private final LatencyHistogram[] operations = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] outcomes = new LongAdder[OUTCOMES.length];
+    private volatile LatencyHistogram[] slots = new LatencyHistogram[0];
+    private final ConcurrentHashMap<Class<?>, PaymentStats> payments = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, LongAdder> exceptions = new ConcurrentHashMap<>();
+
+    public MachineMetrics(String machineId) {
+        this.machineId = machineId;
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    public String getMachineId() {
+        return machineId;
+    }
+
+    /**
+     * Записує тривалість операції.
+     */
+    public void record(Operation operation, long nanos) {
+        operations[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Записує вибір товару (або конкурентну покупку): тривалість операції, тривалість
+     * для слота і результат.
+     * @param slotNumber Номер існуючого слота автомата; 0 - не записувати тривалість для слота.
+     *                   Масив слотів росте до цього номера, тому неперевірений номер передавати не можна.
+     */
+    public void recordSelection(Operation operation, int slotNumber, PurchaseOutcome outcome, long nanos) {
+        operations[operation.ordinal()].record(nanos);
+        outcomes[outcome.ordinal()].increment();
+        if (outcome != PurchaseOutcome.INVALID_SLOT && slotNumber > 0) {
+            slotHistogram(slotNumber).record(nanos);
+        }
+    }
+
+    /**
+     * Записує оплату.
+     * @param strategyType Клас стратегії оплати (PaymentProcessor - для ланцюжка стратегій).
+     * @param nanos Тривалість оплати.
+     * @param result Результат оплати.
+     */
+    public void recordPayment(Class<?> strategyType, long nanos, PaymentResult result) {
+        PaymentStats stats = payments.get(strategyType);
+        if (stats == null) {
+            stats = payments.computeIfAbsent(strategyType, PaymentStats::new);
+        }
+        stats.latency.record(nanos);
+        stats.results[result.ordinal()].increment();
+    }
+
+    /**
+     * Збільшує лічильник винятків певного типу.
+     */
+    public void recordException(Class<? extends Exception> type) {
+        LongAdder counter = exceptions.get(type);
+        if (counter == null) {
+            counter = exceptions.computeIfAbsent(type, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    private LatencyHistogram slotHistogram(int slotNumber) {
+        LatencyHistogram[] current = slots;
+        if (slotNumber <= current.length) {
+            return current[slotNumber - 1];
+        }
+        synchronized (this) {
+            current = slots;
+            if (slotNumber > current.length) {
+                LatencyHistogram[] grown = Arrays.copyOf(current, slotNumber);
+                for (int i = current.length; i < grown.length; i++) {
+                    grown[i] = new LatencyHistogram();
+                }
+                slots = grown;
+                current = grown;
+            }
+            return current[slotNumber - 1];
+        }
+    }
+
+    /**
+     * @return Незмінний знімок усіх метрик автомата.
+     */
+    public Snapshot snapshot() {
+        Map<Operation, LatencyHistogram.Snapshot> ops = new EnumMap<>(Operation.class);
+        for (Operation operation : OPERATIONS) {
+            ops.put(operation, operations[operation.ordinal()].snapshot());
+        }
+        Map<Integer, LatencyHistogram.Snapshot> bySlot = new LinkedHashMap<>();
+        LatencyHistogram[] current = slots;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].getCount() > 0) {
+                bySlot.put(i + 1, current[i].snapshot());
+            }
+        }
+        Map<PurchaseOutcome, Long> byOutcome = new EnumMap<>(PurchaseOutcome.class);
+        for (PurchaseOutcome outcome : OUTCOMES) {
+            byOutcome.put(outcome, outcomes[outcome.ordinal()].sum());
+        }
+        Map<String, LatencyHistogram.Snapshot> paymentLatency = new LinkedHashMap<>();
+        Map<String, Map<PaymentResult, Long>> paymentResults = new LinkedHashMap<>();
+        for (PaymentStats stats : payments.values()) {
+            paymentLatency.put(stats.name, stats.latency.snapshot());
+            Map<PaymentResult, Long> results = new EnumMap<>(PaymentResult.class);
+            for (PaymentResult result : PAYMENT_RESULTS) {
+                results.put(result, stats.results[result.ordinal()].sum());
+            }
+            paymentResults.put(stats.name, results);
+        }
+        Map<String, Long> byException = new LinkedHashMap<>();
+        exceptions.forEach((type, counter) -> byException.put(type.getSimpleName(), counter.sum()));
+        return new Snapshot(machineId, ops, bySlot, byOutcome, paymentLatency, paymentResults, byException);
+    }
+
+    private static final class PaymentStats {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder[] results = new LongAdder[PAYMENT_RESULTS.length];
+
+        PaymentStats(Class<?> type) {
+            this.name = type == PaymentProcessor.class ? "chain" : type.getSimpleName();
+            for (int i = 0; i < results.length; i++) {
+                results[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Незмінний знімок метрик автомата.
+     */
+    public static class Snapshot {
+        private final String machineId;
+        private final Map<Operation, LatencyHistogram.Snapshot> operations;
+        private final Map<Integer, LatencyHistogram.Snapshot> slots;
+        private final Map<PurchaseOutcome, Long> outcomes;
+        private final Map<String, LatencyHistogram.Snapshot> paymentLatency;
+        private final Map<String, Map<PaymentResult, Long>> paymentResults;
+        private final Map<String, Long> exceptions;
+
+        Snapshot(String machineId, Map<Operation, LatencyHistogram.Snapshot> operations,
+                 Map<Integer, LatencyHistogram.Snapshot> slots, Map<PurchaseOutcome, Long> outcomes,
+                 Map<String, LatencyHistogram.Snapshot> paymentLatency,
+                 Map<String, Map<PaymentResult, Long>> paymentResults, Map<String, Long> exceptions) {
+            this.machineId = machineId;
+            this.operations = Collections.unmodifiableMap(operations);
+            this.slots = Collections.unmodifiableMap(slots);
+            this.outcomes = Collections.unmodifiableMap(outcomes);
+            this.paymentLatency = Collections.unmodifiableMap(paymentLatency);
+            this.paymentResults = Collections.unmodifiableMap(paymentResults);
+            this.exceptions = Collections.unmodifiableMap(exceptions);
+        }
+
+        public String getMachineId() { return machineId; }
+        public LatencyHistogram.Snapshot getOperation(Operation operation) { return operations.get(operation); }
+        /** @return Гістограми вибору товару за номером слота (лише слоти з вимірами). */
+        public Map<Integer, LatencyHistogram.Snapshot> getSlots() { return slots; }
+        public long getOutcomeCount(PurchaseOutcome outcome) { return outcomes.get(outcome); }
+        /** @return Гістограми оплати за назвою способу оплати. */
+        public Map<String, LatencyHistogram.Snapshot> getPaymentLatency() { return paymentLatency; }
+        public Map<String, Map<PaymentResult, Long>> getPaymentResults() { return paymentResults; }
+        /** @return Кількість винятків за простою назвою класу. */
+        public Map<String, Long> getExceptions() { return exceptions; }
+    }
+}
@@ -11,6 +11,8 @@ public class Main {
         controller.initializeVendingMachine();
         
         VendingMachine machine = controller.getMachine();
+        // Повідомлення автомата виводяться асинхронно; flush() перед власним виводом зберігає порядок
+        DisplaySink display = machine.getDisplay();
         Scanner scanner = new Scanner(System.in);
 
         System.out.println("===== Ласкаво просимо до торгового автомата! =====");
@@ -19,7 +21,8 @@ public class Main {
         boolean running = true;
         while (running) {
             machine.displayProducts();
-            System.out.println("\nПоточний баланс: " + String.format("%.2f грн", machine.getCurrentBalance()));
+            display.flush();
+            System.out.println("\nПоточний баланс: " + Money.format(machine.getCurrentBalance()) + " грн");
             System.out.println("\nОберіть дію:");
             System.out.println("  1. Внести гроші");
             System.out.println("  2. Обрати товар");
@@ -34,7 +37,7 @@ public class Main {
                 case "1":
                     System.out.print("Введіть суму для внесення: ");
                     try {
-                        double amount = Double.parseDouble(scanner.nextLine());
+                        long amount = Money.parse(scanner.nextLine());
                         if (amount <= 0) {
                             System.out.println("Сума має бути більшою за 0.");
                             break;
@@ -49,7 +52,7 @@ public class Main {
                         PaymentStrategy strategy = null;
 
                         if (paymentChoice.equals("1")) {
-                            strategy = new CashPayment();
+                            strategy = new CashPayment(display);
                         } else if (paymentChoice.equals("2")) {
                             while (true) {
                                 System.out.print("Введіть номер картки (формат XXXX-XXXX-XXXX-XXXX) або '0' для скасування: ");
@@ -62,7 +65,7 @@ public class Main {
 
                                 // Перевірка регулярним виразом: 4 групи по 4 цифри, розділені дефісом
                                 if (cardNum.matches("\\d{4}-\\d{4}-\\d{4}-\\d{4}")) {
-                                    strategy = new CardPayment(cardNum);
+                                    strategy = new CardPayment(cardNum, display);
                                     break; // Номер вірний, виходимо з циклу
                                 } else {
                                     System.err.println("Невірний формат картки! Спробуйте ще раз.");
@@ -80,9 +83,9 @@ public class Main {
 
                         if (paymentSuccess) {
                             controller.executeCommand(new InsertMoneyCommand(machine, amount));
-                            System.out.println("Кошти успішно зараховано на баланс.");
+                            display.show("Кошти успішно зараховано на баланс.");
                         } else {
-                            System.out.println("Помилка оплати.");
+                            display.show("Помилка оплати.");
                         }
 
                     } catch (NumberFormatException e) {
@@ -106,15 +109,15 @@ public class Main {
                     
                 case "4":
                     // Демонстрація Strategy Pattern
-                    System.out.println("\n--- Демо-покупка товару №1 (Coke) готівкою ---");
-                    controller.purchaseProductWithPayment(1, new CashPayment());
+                    display.show("\n--- Демо-покупка товару №1 (Coke) готівкою ---");
+                    controller.purchaseProductWithPayment(1, new CashPayment(display));
                     
-                    System.out.println("\n--- Демо-покупка товару №4 (Lays) карткою ---");
-                    controller.purchaseProductWithPayment(4, new CardPayment("1234-5678-xxxx-xxxx"));
+                    display.show("\n--- Демо-покупка товару №4 (Lays) карткою ---");
+                    controller.purchaseProductWithPayment(4, new CardPayment("1234-5678-xxxx-xxxx", display));
                     
-                    System.out.println("\n--- Спроба купити товар, що закінчився ---");
-                    controller.purchaseProductWithPayment(3, new CashPayment()); // Snickers, quantity = 1
-                    controller.purchaseProductWithPayment(3, new CashPayment()); // Друга спроба
+                    display.show("\n--- Спроба купити товар, що закінчився ---");
+                    controller.purchaseProductWithPayment(3, new CashPayment(display)); // Snickers, quantity = 1
+                    controller.purchaseProductWithPayment(3, new CashPayment(display)); // Друга спроба
                     break;
 
                 case "5":
@@ -126,6 +129,7 @@ public class Main {
                     System.err.println("Невідома команда. Спробуйте ще раз.");
                     break;
             }
+            display.flush();
             System.out.println("=================================================");
         }
         
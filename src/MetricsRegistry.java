@@ -0,0 +1,186 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реєстр метрик парку автоматів. Створює MachineMetrics для кожного зареєстрованого
+ * автомата, повертає знімки та формує текстовий звіт у форматі Prometheus, який
+ * можна записати у файл (для node_exporter textfile collector) або віддавати
+ * через вбудований HTTP-сервер.
+ */
+public class MetricsRegistry {
+    // Межі кошиків у звіті: степені двійки від 128 нс до ~68 с
+    private static final int EXPORT_MIN_SHIFT = 7;
+    private static final int EXPORT_MAX_SHIFT = 36;
+
+    private final Map<String, MachineMetrics> machines = new ConcurrentHashMap<>();
+
+    /**
+     * Вмикає метрики для автомата.
+     * @param machine Автомат.
+     * @return Метрики автомата (наявні, якщо автомат уже зареєстровано).
+     */
+    public MachineMetrics register(VendingMachine machine) {
+        MachineMetrics metrics = machines.computeIfAbsent(machine.getMachineId(), MachineMetrics::new);
+        machine.setMetrics(metrics);
+        return metrics;
+    }
+
+    /**
+     * Вимикає метрики для автомата і видаляє їх з реєстру.
+     */
+    public void unregister(VendingMachine machine) {
+        machines.remove(machine.getMachineId());
+        machine.setMetrics(null);
+    }
+
+    public MachineMetrics get(String machineId) {
+        return machines.get(machineId);
+    }
+
+    /**
+     * @return Знімки метрик усіх зареєстрованих автоматів.
+     */
+    public List<MachineMetrics.Snapshot> snapshot() {
+        List<MachineMetrics.Snapshot> result = new ArrayList<>(machines.size());
+        for (MachineMetrics metrics : machines.values()) {
+            result.add(metrics.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * Формує звіт у текстовому форматі Prometheus (версія 0.0.4).
+     * @return Текст звіту.
+     */
+    public String toPrometheus() {
+        List<MachineMetrics.Snapshot> snapshots = snapshot();
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "vending_operation_seconds", "histogram", "Тривалість операцій автомата");
+        for (MachineMetrics.Snapshot s : snapshots) {
+            for (MachineMetrics.Operation operation : MachineMetrics.Operation.values()) {
+                histogram(out, "vending_operation_seconds", labels(s, "operation", operation.label()), s.getOperation(operation));
+            }
+        }
+        header(out, "vending_slot_selection_seconds", "histogram", "Тривалість вибору товару за слотами");
+        for (MachineMetrics.Snapshot s : snapshots) {
+            for (Map.Entry<Integer, LatencyHistogram.Snapshot> e : s.getSlots().entrySet()) {
+                histogram(out, "vending_slot_selection_seconds", labels(s, "slot", String.valueOf(e.getKey())), e.getValue());
+            }
+        }
+        header(out, "vending_payment_seconds", "histogram", "Тривалість оплати за способами оплати");
+        for (MachineMetrics.Snapshot s : snapshots) {
+            for (Map.Entry<String, LatencyHistogram.Snapshot> e : s.getPaymentLatency().entrySet()) {
+                histogram(out, "vending_payment_seconds", labels(s, "payment", e.getKey()), e.getValue());
+            }
+        }
+        header(out, "vending_payments_total", "counter", "Кількість оплат за результатом");
+        for (MachineMetrics.Snapshot s : snapshots) {
+            for (Map.Entry<String, Map<MachineMetrics.PaymentResult, Long>> e : s.getPaymentResults().entrySet()) {
+                for (Map.Entry<MachineMetrics.PaymentResult, Long> r : e.getValue().entrySet()) {
+                    String labels = labels(s, "payment", e.getKey());
+                    out.append("vending_payments_total").append(labels, 0, labels.length() - 1)
+                            .append(",result=\"").append(r.getKey().name().toLowerCase()).append("\"} ")
+                            .append(r.getValue()).append('\n');
+                }
+            }
+        }
+        header(out, "vending_purchase_outcomes_total", "counter", "Кількість результатів вибору товару");
+        for (MachineMetrics.Snapshot s : snapshots) {
+            for (PurchaseOutcome outcome : PurchaseOutcome.values()) {
+                out.append("vending_purchase_outcomes_total").append(labels(s, "outcome", outcome.name().toLowerCase()))
+                        .append(' ').append(s.getOutcomeCount(outcome)).append('\n');
+            }
+        }
+        header(out, "vending_exceptions_total", "counter", "Кількість винятків за типом");
+        for (MachineMetrics.Snapshot s : snapshots) {
+            for (Map.Entry<String, Long> e : s.getExceptions().entrySet()) {
+                out.append("vending_exceptions_total").append(labels(s, "type", e.getKey()))
+                        .append(' ').append(e.getValue()).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Атомарно записує звіт у файл (через тимчасовий файл і перейменування).
+     * @param file Файл звіту.
+     * @throws IOException якщо файл не вдалося записати.
+     */
+    public void writePrometheus(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, toPrometheus().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Запускає HTTP-сервер, що віддає звіт за адресою /metrics, лише на локальному
+     * інтерфейсі (loopback).
+     * @param port Порт (0 - будь-який вільний).
+     * @return Запущений сервер; зупиняється викликом stop().
+     * @throws IOException якщо порт недоступний.
+     */
+    public HttpServer startHttpEndpoint(int port) throws IOException {
+        return startHttpEndpoint(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Запускає HTTP-сервер, що віддає звіт за адресою /metrics.
+     * @param address Адреса інтерфейсу (наприклад, адреса мережі моніторингу).
+     * @param port Порт (0 - будь-який вільний).
+     * @return Запущений сервер; зупиняється викликом stop().
+     * @throws IOException якщо порт недоступний.
+     */
+    public HttpServer startHttpEndpoint(InetAddress address, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    // --- Форматування ---
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String labels(MachineMetrics.Snapshot s, String key, String value) {
+        return "{machine=\"" + escape(s.getMachineId()) + "\"," + key + "=\"" + escape(value) + "\"}";
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot h) {
+        String prefix = labels.substring(0, labels.length() - 1);
+        for (int shift = EXPORT_MIN_SHIFT; shift <= EXPORT_MAX_SHIFT; shift++) {
+            long bound = 1L << shift;
+            out.append(name).append("_bucket").append(prefix).append(",le=\"").append(bound / 1e9).append("\"} ")
+                    .append(h.countBelow(bound)).append('\n');
+        }
+        out.append(name).append("_bucket").append(prefix).append(",le=\"+Inf\"} ").append(h.getCount()).append('\n');
+        out.append(name).append("_sum").append(labels).append(' ').append(h.getSumNanos() / 1e9).append('\n');
+        out.append(name).append("_count").append(labels).append(' ').append(h.getCount()).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
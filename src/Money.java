@@ -0,0 +1,108 @@
+/**
+ * Утиліти для роботи з грошима у цілих копійках.
+ * Усі суми в автоматі зберігаються як примітивний long (копійки), що дає точну
+ * арифметику без похибок double і без розміщення об'єктів (BigDecimal) на гарячому шляху.
+ */
+public final class Money {
+    /** Кількість копійок в одній гривні. */
+    public static final long KOPIYKAS_PER_HRYVNIA = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Створює суму з гривень та копійок.
+     * @param hryvnias Кількість гривень.
+     * @param kopiykas Кількість копійок (0-99).
+     * @return Сума в копійках.
+     */
+    public static long of(long hryvnias, int kopiykas) {
+        if (kopiykas < 0 || kopiykas >= KOPIYKAS_PER_HRYVNIA) {
+            throw new IllegalArgumentException("Невірна кількість копійок: " + kopiykas);
+        }
+        return Math.addExact(Math.multiplyExact(hryvnias, KOPIYKAS_PER_HRYVNIA), kopiykas);
+    }
+
+    /**
+     * Створює суму з цілої кількості гривень.
+     * @param hryvnias Кількість гривень.
+     * @return Сума в копійках.
+     */
+    public static long hryvnias(long hryvnias) {
+        return Math.multiplyExact(hryvnias, KOPIYKAS_PER_HRYVNIA);
+    }
+
+    /**
+     * Розбирає суму, введену користувачем ("25", "24.5", "24,50"), без використання double.
+     * @param text Текст суми.
+     * @return Сума в копійках.
+     * @throws NumberFormatException якщо формат невірний або сума має більше двох знаків після коми.
+     */
+    public static long parse(String text) {
+        if (text == null) {
+            throw new NumberFormatException("Порожня сума.");
+        }
+        String value = text.trim().replace(',', '.');
+        boolean negative = value.startsWith("-");
+        if (negative || value.startsWith("+")) {
+            value = value.substring(1);
+        }
+        int dot = value.indexOf('.');
+        String whole = dot < 0 ? value : value.substring(0, dot);
+        String fraction = dot < 0 ? "" : value.substring(dot + 1);
+        if (whole.isEmpty() && fraction.isEmpty() || fraction.length() > 2
+                || !isDigits(whole) || !isDigits(fraction)) {
+            throw new NumberFormatException("Невірний формат суми: " + text);
+        }
+        try {
+            long hryvnias = whole.isEmpty() ? 0 : Long.parseLong(whole);
+            int kopiykas = fraction.isEmpty() ? 0 : Integer.parseInt(fraction.length() == 1 ? fraction + "0" : fraction);
+            long amount = of(hryvnias, kopiykas);
+            return negative ? -amount : amount;
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Сума завелика: " + text);
+        }
+    }
+
+    /**
+     * Форматує суму у вигляді "25.00" без String.format.
+     * @param amount Сума в копійках.
+     * @return Текстове представлення суми в гривнях.
+     */
+    public static String format(long amount) {
+        StringBuilder sb = new StringBuilder(24);
+        appendTo(sb, amount);
+        return sb.toString();
+    }
+
+    /**
+     * Дописує суму у вигляді "25.00" до переданого буфера.
+     * @param sb Буфер.
+     * @param amount Сума в копійках.
+     * @return Той самий буфер.
+     */
+    public static StringBuilder appendTo(StringBuilder sb, long amount) {
+        // Ділимо до зміни знака: -Long.MIN_VALUE не вміщується в long, а частка й остача вміщуються
+        long hryvnias = amount / KOPIYKAS_PER_HRYVNIA;
+        long kopiykas = amount % KOPIYKAS_PER_HRYVNIA;
+        if (amount < 0) {
+            sb.append('-');
+            hryvnias = -hryvnias;
+            kopiykas = -kopiykas;
+        }
+        sb.append(hryvnias).append('.');
+        if (kopiykas < 10) {
+            sb.append('0');
+        }
+        return sb.append(kopiykas);
+    }
+
+    private static boolean isDigits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
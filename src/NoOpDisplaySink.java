@@ -0,0 +1,23 @@
+/**
+ * Вихід, що відкидає всі повідомлення (безголовий/серверний режим).
+ * Використовується автоматами за замовчуванням.
+ */
+public final class NoOpDisplaySink implements DisplaySink {
+    public static final NoOpDisplaySink INSTANCE = new NoOpDisplaySink();
+
+    private NoOpDisplaySink() {
+    }
+
+    @Override
+    public void show(String message) {
+    }
+
+    @Override
+    public void error(String message) {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+}
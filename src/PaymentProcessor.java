@@ -1,24 +1,303 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Клас, що відповідає за обробку платежів.
  * Використовує патерн Strategy для вибору конкретного способу оплати.
+ *
+ * Процесор не має змінного стану, тому один екземпляр можна безпечно використовувати
+ * з багатьох потоків і автоматів. Він підтримує впорядкований ланцюжок стратегій
+ * (наприклад, картка, потім готівка): відмова (pay повертає false) одразу передає
+ * оплату наступній стратегії, а збій (виняток) повторюється з експоненційною
+ * затримкою та випадковим розкидом (jitter). Стратегію з розімкненим запобіжником
+ * (CircuitBreaker) пропускаємо без звернення до шлюзу. Якщо ж після збою невідомо,
+ * чи списано кошти (Result.UNKNOWN), ланцюжок зупиняється: інакше резервний спосіб
+ * оплати міг би списати ту саму суму вдруге.
+ *
+ * Повторюються лише збої, після яких кошти гарантовано не списано
+ * (RetryablePaymentException), або будь-які збої стратегії з ключем ідемпотентності
+ * (PaymentStrategy.isIdempotent), тож повтор не спише кошти двічі. Якщо задано
+ * тайм-аут спроби, виклик виконується у віртуальному потоці; спроба, що не вклалася
+ * в тайм-аут, переривається і рахується запобіжником як збій.
+ *
+ * Повідомлення про збої процесор передає в DisplaySink того автомата, для якого
+ * проводиться оплата (за замовчуванням вони відкидаються, як і в автоматі).
+ *
+ * Behavioral Patterns:
+ * - Chain of Responsibility: Стратегії ланцюжка по черзі намагаються провести оплату.
  */
 public class PaymentProcessor {
-    private PaymentStrategy paymentStrategy;
+    private static final ExecutorService ATTEMPTS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final List<Stage> chain;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long attemptTimeoutMillis;
+
+    /**
+     * Створює процесор без ланцюжка і без повторів; стратегія передається в кожен виклик.
+     */
+    public PaymentProcessor() {
+        this(new Builder());
+    }
+
+    private PaymentProcessor(Builder builder) {
+        this.chain = Collections.unmodifiableList(new ArrayList<>(builder.chain));
+        this.maxAttempts = builder.maxAttempts;
+        this.baseBackoffMillis = builder.baseBackoffMillis;
+        this.maxBackoffMillis = builder.maxBackoffMillis;
+        this.attemptTimeoutMillis = builder.attemptTimeoutMillis;
+    }
+
+    /**
+     * Результат оплати.
+     */
+    public enum Result {
+        /** Оплату прийнято. */
+        PAID,
+        /** Кошти гарантовано не списано (відмова, розімкнений запобіжник або безпечний збій). */
+        DECLINED,
+        /**
+         * Невідомо, чи списано кошти (тайм-аут або збій посеред звернення до шлюзу).
+         * Ланцюжок зупиняється, щоб не списати кошти вдруге іншим способом; оплату
+         * треба звірити з еквайром.
+         */
+        UNKNOWN;
+
+        public boolean isPaid() {
+            return this == PAID;
+        }
+    }
+
+    /**
+     * Виконує платіж, проходячи ланцюжок стратегій процесора.
+     * @param amount Сума для оплати в копійках.
+     * @return Результат оплати.
+     */
+    public Result processPayment(long amount) {
+        return processPayment(amount, NoOpDisplaySink.INSTANCE);
+    }
+
+    /**
+     * Виконує платіж, проходячи ланцюжок стратегій процесора. Наступна стратегія
+     * пробується лише після DECLINED; UNKNOWN зупиняє ланцюжок.
+     * @param amount Сума для оплати в копійках.
+     * @param display Вихід для повідомлень про збої оплати.
+     * @return Результат оплати.
+     */
+    public Result processPayment(long amount, DisplaySink display) {
+        if (chain.isEmpty()) {
+            display.error("Спосіб оплати не обрано.");
+            return Result.DECLINED;
+        }
+        for (Stage stage : chain) {
+            Result result = attempt(stage.strategy, stage.breaker, amount, display);
+            if (result != Result.DECLINED) {
+                return result;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return Result.DECLINED;
+            }
+        }
+        return Result.DECLINED;
+    }
 
-    public void setPaymentStrategy(PaymentStrategy paymentStrategy) {
-        this.paymentStrategy = paymentStrategy;
+    /**
+     * Виконує платіж обраною стратегією з повторами при збоях.
+     * @param amount Сума для оплати в копійках.
+     * @param paymentStrategy Стратегія оплати.
+     * @return Результат оплати.
+     */
+    public Result processPayment(long amount, PaymentStrategy paymentStrategy) {
+        return processPayment(amount, paymentStrategy, NoOpDisplaySink.INSTANCE);
     }
 
     /**
-     * Виконує платіж, використовуючи обрану стратегію.
-     * @param amount Сума для оплати.
-     * @return true, якщо оплата успішна, інакше false.
+     * Виконує платіж обраною стратегією з повторами при збоях.
+     * @param amount Сума для оплати в копійках.
+     * @param paymentStrategy Стратегія оплати.
+     * @param display Вихід для повідомлень про збої оплати.
+     * @return Результат оплати.
      */
-    public boolean processPayment(double amount) {
+    public Result processPayment(long amount, PaymentStrategy paymentStrategy, DisplaySink display) {
         if (paymentStrategy == null) {
-            System.err.println("Спосіб оплати не обрано.");
+            display.error("Спосіб оплати не обрано.");
+            return Result.DECLINED;
+        }
+        return attempt(paymentStrategy, null, amount, display);
+    }
+
+    private Result attempt(PaymentStrategy strategy, CircuitBreaker breaker, long amount, DisplaySink display) {
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (breaker != null && !breaker.allowRequest()) {
+                return Result.DECLINED;
+            }
+            boolean charged; // Чи могли бути списані кошти цією спробою
+            try {
+                boolean paid = call(strategy, amount);
+                if (breaker != null) {
+                    breaker.recordSuccess();
+                }
+                return paid ? Result.PAID : Result.DECLINED;
+            } catch (TimeoutException e) {
+                if (breaker != null) {
+                    breaker.recordFailure();
+                }
+                display.error("[ПОМИЛКА оплати]: тайм-аут спроби (" + attemptTimeoutMillis + " мс)");
+                charged = true;
+            } catch (InterruptedException e) {
+                if (breaker != null) {
+                    breaker.recordFailure();
+                }
+                Thread.currentThread().interrupt();
+                return unknown(amount, display);
+            } catch (RuntimeException e) {
+                if (breaker != null) {
+                    breaker.recordFailure();
+                }
+                display.error("[ПОМИЛКА оплати]: " + e.getMessage());
+                charged = !(e instanceof RetryablePaymentException);
+            }
+            // Повтор без ключа ідемпотентності міг би списати кошти вдруге
+            if (charged && !strategy.isIdempotent()) {
+                return unknown(amount, display);
+            }
+            if (attempt + 1 < maxAttempts && !sleepBackoff(attempt)) {
+                return charged ? unknown(amount, display) : Result.DECLINED;
+            }
+            if (attempt + 1 == maxAttempts && charged) {
+                return unknown(amount, display);
+            }
+        }
+        return Result.DECLINED;
+    }
+
+    private static Result unknown(long amount, DisplaySink display) {
+        display.error("[ПОМИЛКА оплати]: результат оплати " + Money.format(amount) + " грн невідомий, потрібна звірка.");
+        return Result.UNKNOWN;
+    }
+
+    /**
+     * Викликає стратегію; якщо задано тайм-аут спроби, чекає на відповідь не довше
+     * за нього і перериває виклик, що не вклався.
+     */
+    private boolean call(PaymentStrategy strategy, long amount) throws TimeoutException, InterruptedException {
+        if (attemptTimeoutMillis <= 0) {
+            return strategy.pay(amount);
+        }
+        Future<Boolean> task = ATTEMPTS.submit(() -> strategy.pay(amount));
+        try {
+            return task.get(attemptTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            // Після тайм-ауту або переривання потік оплати більше не потрібен
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Повна випадкова затримка: від 0 до min(max, base * 2^attempt).
+     * @return false, якщо потік перервано під час очікування.
+     */
+    private boolean sleepBackoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+        if (ceiling <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return false;
         }
-        return paymentStrategy.pay(amount);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static final class Stage {
+        private final PaymentStrategy strategy;
+        private final CircuitBreaker breaker;
+
+        Stage(PaymentStrategy strategy, CircuitBreaker breaker) {
+            this.strategy = strategy;
+            this.breaker = breaker;
+        }
+    }
+
+    /**
+     * Builder для налаштування ланцюжка стратегій і політики повторів.
+     */
+    public static class Builder {
+        private final List<Stage> chain = new ArrayList<>();
+        private int maxAttempts = 1;
+        private long baseBackoffMillis;
+        private long maxBackoffMillis;
+        private long attemptTimeoutMillis;
+
+        /**
+         * Додає стратегію в кінець ланцюжка.
+         */
+        public Builder then(PaymentStrategy strategy) {
+            return then(strategy, null);
+        }
+
+        /**
+         * Додає стратегію, захищену запобіжником, в кінець ланцюжка.
+         */
+        public Builder then(PaymentStrategy strategy, CircuitBreaker breaker) {
+            chain.add(new Stage(strategy, breaker));
+            return this;
+        }
+
+        /**
+         * @param maxAttempts Кількість спроб кожної стратегії при збоях.
+         * @param baseBackoffMillis Базова затримка перед повтором.
+         * @param maxBackoffMillis Максимальна затримка перед повтором.
+         */
+        public Builder retry(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis) {
+            if (maxAttempts <= 0 || baseBackoffMillis < 0 || maxBackoffMillis < baseBackoffMillis) {
+                throw new IllegalArgumentException("Невірні параметри повторів.");
+            }
+            this.maxAttempts = maxAttempts;
+            this.baseBackoffMillis = baseBackoffMillis;
+            this.maxBackoffMillis = maxBackoffMillis;
+            return this;
+        }
+
+        /**
+         * @param attemptTimeoutMillis Максимальний час однієї спроби; спроба, що не вклалася,
+         *                             переривається і рахується як збій.
+         */
+        public Builder timeout(long attemptTimeoutMillis) {
+            if (attemptTimeoutMillis <= 0) {
+                throw new IllegalArgumentException("Тайм-аут має бути більшим за 0.");
+            }
+            this.attemptTimeoutMillis = attemptTimeoutMillis;
+            return this;
+        }
+
+        public PaymentProcessor build() {
+            return new PaymentProcessor(this);
+        }
     }
 }
@@ -6,8 +6,18 @@
 public interface PaymentStrategy {
     /**
      * Метод для здійснення оплати.
-     * @param amount Сума до сплати.
+     * @param amount Сума до сплати в копійках.
      * @return true, якщо оплата пройшла успішно, інакше false.
      */
-    boolean pay(double amount);
+    boolean pay(long amount);
+
+    /**
+     * Чи передає стратегія шлюзу ключ ідемпотентності. Повтор такого виклику не
+     * спише кошти вдруге, тому PaymentProcessor повторює його після будь-якого збою
+     * або тайм-ауту, а не лише після RetryablePaymentException.
+     * @return true, якщо повторний виклик pay безпечний.
+     */
+    default boolean isIdempotent() {
+        return false;
+    }
 }
@@ -0,0 +1,558 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Потокове завантаження планограм (розкладки товарів по слотах) для багатьох автоматів.
+ * Підтримує текстовий формат CSV і компактний двійковий формат. Файл читається через
+ * буфер NIO фіксованого розміру, рядки групуються в пакети і передаються до кількох
+ * паралельних "доріжок" (lanes). Усі рядки одного автомата потрапляють в одну доріжку,
+ * тому порядок слотів зберігається, а різні автомати заповнюються паралельно.
+ * Черги доріжок обмежені, тож використання пам'яті не залежить від розміру файлу.
+ *
+ * Файл читається двічі: перший прохід лише розбирає і перевіряє всі записи, другий
+ * заповнює слоти. Тому помилка в будь-якому рядку не лишає парк заповненим наполовину,
+ * а пам'ять, як і раніше, не залежить від розміру файлу. Від'ємні ціна, кількість,
+ * калорії чи розмір відхиляються з номером рядка (для двійкового формату - запису).
+ * Рядок CSV довший за MAX_LINE_LENGTH символів вважається помилкою.
+ *
+ * Формат CSV (без лапок; коми в назвах не підтримуються):
+ * machineId,type,name,price,size,quantity[,calories[,expirationDate[,sku]]]
+ * де type - DRINK або FOOD, price - сума у гривнях ("24.50"), size - об'єм у літрах
+ * для напою або вага в цілих грамах для їжі. Порожні рядки та рядки з '#' пропускаються;
+ * перший рядок пропускається, лише якщо він точно збігається із заголовком (CSV_HEADER
+ * або його початком до будь-якого необов'язкового поля).
+ *
+ * Двійковий формат: magic (int), далі записи: machineId (рядок), тип (byte), назва,
+ * SKU (рядки), ціна в копійках (long), розмір (double), кількість (int), калорії (int),
+ * термін придатності (рядок). Рядок - довжина в байтах (short) і байти UTF-8.
+ *
+ * GRASP Patterns:
+ * - Creator: Створює слоти автоматів; продукти створюються через ProductFactory.
+ */
+public class PlanogramLoader {
+    public static final int BINARY_MAGIC = 0x564D5047; // "VMPG"
+    /** Заголовок CSV з усіма полями. */
+    public static final String CSV_HEADER = "machineId,type,name,price,size,quantity,calories,expirationDate,sku";
+    /** Максимальна довжина одного рядка CSV у символах. */
+    public static final int MAX_LINE_LENGTH = 4096;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte DRINK = 1;
+    private static final byte FOOD = 2;
+    private static final List<Row> END_OF_INPUT = Collections.emptyList();
+
+    private final VendingMachineFleet fleet;
+    private final int lanes;
+    private final int batchSize;
+    private final int queueDepth;
+
+    /**
+     * @param fleet Парк, у який додаються слоти (автомати створюються за потреби).
+     * @param lanes Кількість паралельних доріжок заповнення.
+     * @param batchSize Кількість рядків в одному пакеті.
+     * @param queueDepth Максимальна кількість пакетів у черзі кожної доріжки.
+     */
+    public PlanogramLoader(VendingMachineFleet fleet, int lanes, int batchSize, int queueDepth) {
+        if (lanes <= 0 || batchSize <= 0 || queueDepth <= 0) {
+            throw new IllegalArgumentException("Параметри завантажувача мають бути більшими за 0.");
+        }
+        this.fleet = fleet;
+        this.lanes = lanes;
+        this.batchSize = batchSize;
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Завантажує планограму у форматі CSV. Слоти додаються в кінець наявних слотів автоматів.
+     * @param file Шлях до файлу.
+     * @return Підсумок завантаження.
+     * @throws IOException якщо файл не читається або містить помилку.
+     */
+    public LoadResult loadCsv(Path file) throws IOException {
+        readCsv(file, row -> { });
+        Dispatcher dispatcher = new Dispatcher();
+        try {
+            readCsv(file, dispatcher);
+        } finally {
+            dispatcher.finish();
+        }
+        return dispatcher.result();
+    }
+
+    /**
+     * Завантажує планограму у двійковому форматі.
+     * @param file Шлях до файлу.
+     * @return Підсумок завантаження.
+     * @throws IOException якщо файл не читається або пошкоджений.
+     */
+    public LoadResult loadBinary(Path file) throws IOException {
+        readBinary(file, row -> { });
+        Dispatcher dispatcher = new Dispatcher();
+        try {
+            readBinary(file, dispatcher);
+        } finally {
+            dispatcher.finish();
+        }
+        return dispatcher.result();
+    }
+
+    /**
+     * Перетворює CSV-планограму у двійковий формат, також потоково.
+     * @param csv Вхідний файл CSV.
+     * @param binary Вихідний двійковий файл.
+     * @return Кількість записаних рядків.
+     * @throws IOException якщо читання або запис не вдалися.
+     */
+    public static long convertCsvToBinary(Path csv, Path binary) throws IOException {
+        try (FileChannel out = FileChannel.open(binary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            BinaryWriter writer = new BinaryWriter(out);
+            writer.buffer.putInt(BINARY_MAGIC);
+            long[] count = {0};
+            readCsv(csv, row -> {
+                writer.write(row);
+                count[0]++;
+            });
+            writer.flush();
+            return count[0];
+        }
+    }
+
+    // --- Читання CSV ---
+
+    @FunctionalInterface
+    private interface RowSink {
+        void accept(Row row) throws IOException;
+    }
+
+    private static void readCsv(Path file, RowSink sink) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        StringBuilder line = new StringBuilder(128);
+        long lineNumber = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean eof = false;
+            while (true) {
+                if (!eof) {
+                    eof = in.read(bytes) < 0;
+                }
+                bytes.flip();
+                CoderResult decoded = decoder.decode(bytes, chars, eof);
+                if (decoded.isError()) {
+                    decoded.throwException();
+                }
+                bytes.compact();
+                chars.flip();
+                while (chars.hasRemaining()) {
+                    char c = chars.get();
+                    if (c == '\n') {
+                        lineNumber++;
+                        parseCsvLine(line, lineNumber, sink);
+                        line.setLength(0);
+                    } else if (c != '\r') {
+                        if (line.length() >= MAX_LINE_LENGTH) {
+                            throw new IOException("Рядок " + (lineNumber + 1) + ": довший за " + MAX_LINE_LENGTH + " символів");
+                        }
+                        line.append(c);
+                    }
+                }
+                chars.clear();
+                if (eof && decoded.isUnderflow()) {
+                    break;
+                }
+            }
+            if (line.length() > 0) {
+                parseCsvLine(line, lineNumber + 1, sink);
+            }
+        }
+    }
+
+    private static void parseCsvLine(CharSequence text, long lineNumber, RowSink sink) throws IOException {
+        String line = text.toString().trim();
+        if (line.isEmpty() || line.startsWith("#") || (lineNumber == 1 && isHeader(line))) {
+            return;
+        }
+        String[] f = line.split(",", -1);
+        if (f.length < 6) {
+            throw new IOException("Рядок " + lineNumber + ": очікувалось щонайменше 6 полів, отримано " + f.length);
+        }
+        try {
+            byte type = parseType(f[1].trim());
+            String name = f[2].trim();
+            String sku = f.length > 8 && !f[8].trim().isEmpty() ? f[8].trim() : name;
+            String expirationDate = f.length > 7 && !f[7].trim().isEmpty() ? f[7].trim() : "N/A";
+            Row row = new Row(
+                    f[0].trim(),
+                    type,
+                    name,
+                    sku,
+                    Money.parse(f[3]),
+                    Double.parseDouble(f[4].trim()),
+                    Integer.parseInt(f[5].trim()),
+                    f.length > 6 && !f[6].trim().isEmpty() ? Integer.parseInt(f[6].trim()) : 0,
+                    expirationDate);
+            row.validate();
+            sink.accept(row);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Рядок " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static byte parseType(String type) {
+        if ("DRINK".equalsIgnoreCase(type)) {
+            return DRINK;
+        }
+        if ("FOOD".equalsIgnoreCase(type)) {
+            return FOOD;
+        }
+        throw new IllegalArgumentException("Невідомий тип продукту: " + type);
+    }
+
+    // --- Двійковий формат ---
+
+    private static void readBinary(Path file, RowSink sink) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            BinaryReader reader = new BinaryReader(in);
+            if (!reader.ensure(4) || reader.buffer.getInt() != BINARY_MAGIC) {
+                throw new IOException("Невірний формат двійкової планограми: " + file);
+            }
+            long record = 0;
+            while (reader.ensure(1)) {
+                record++;
+                Row row = reader.readRow();
+                try {
+                    row.validate();
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Двійкова планограма, запис " + record + ": " + e.getMessage(), e);
+                }
+                sink.accept(row);
+            }
+        }
+    }
+
+    /**
+     * Читач двійкових записів поверх буфера NIO фіксованого розміру.
+     */
+    private static final class BinaryReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        BinaryReader(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        /** @return true, якщо в буфері є щонайменше n байтів; false, якщо файл закінчився. */
+        boolean ensure(int n) throws IOException {
+            if (buffer.remaining() >= n) {
+                return true;
+            }
+            buffer.compact();
+            while (buffer.position() < n) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    if (buffer.hasRemaining()) {
+                        throw new IOException("Двійкова планограма обірвана посеред запису.");
+                    }
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+
+        Row readRow() throws IOException {
+            String machineId = readString();
+            require(1);
+            byte type = buffer.get();
+            String name = readString();
+            String sku = readString();
+            require(8 + 8 + 4 + 4);
+            long price = buffer.getLong();
+            double size = buffer.getDouble();
+            int quantity = buffer.getInt();
+            int calories = buffer.getInt();
+            String expirationDate = readString();
+            return new Row(machineId, type, name, sku, price, size, quantity, calories, expirationDate);
+        }
+
+        private String readString() throws IOException {
+            require(2);
+            int length = buffer.getShort() & 0xFFFF;
+            require(length);
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        private void require(int n) throws IOException {
+            if (!ensure(n)) {
+                throw new IOException("Двійкова планограма обірвана посеред запису.");
+            }
+        }
+    }
+
+    /**
+     * Записувач двійкових записів через буфер NIO фіксованого розміру.
+     */
+    private static final class BinaryWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        BinaryWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(Row row) throws IOException {
+            writeString(row.machineId);
+            reserve(1);
+            buffer.put(row.type);
+            writeString(row.name);
+            writeString(row.sku);
+            reserve(8 + 8 + 4 + 4);
+            buffer.putLong(row.price);
+            buffer.putDouble(row.size);
+            buffer.putInt(row.quantity);
+            buffer.putInt(row.calories);
+            writeString(row.expirationDate);
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] data = value.getBytes(StandardCharsets.UTF_8);
+            if (data.length > 0xFFFF) {
+                throw new IOException("Рядок задовгий для двійкової планограми: " + data.length + " байтів");
+            }
+            reserve(2 + data.length);
+            buffer.putShort((short) data.length);
+            buffer.put(data);
+        }
+
+        private void reserve(int n) throws IOException {
+            if (buffer.remaining() < n) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // --- Паралельне заповнення слотів ---
+
+    /**
+     * Розподіляє рядки по доріжках пакетами і чекає завершення всіх доріжок.
+     */
+    private final class Dispatcher implements RowSink {
+        private final List<BlockingQueue<List<Row>>> queues = new ArrayList<>(lanes);
+        private final List<List<Row>> pending = new ArrayList<>(lanes);
+        private final List<Thread> workers = new ArrayList<>(lanes);
+        private final Set<String> machines = ConcurrentHashMap.newKeySet();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private long rows;
+
+        Dispatcher() {
+            for (int lane = 0; lane < lanes; lane++) {
+                BlockingQueue<List<Row>> queue = new ArrayBlockingQueue<>(queueDepth);
+                queues.add(queue);
+                pending.add(new ArrayList<>(batchSize));
+                Thread worker = new Thread(() -> drain(queue), "planogram-lane-" + lane);
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+
+        @Override
+        public void accept(Row row) throws IOException {
+            checkFailure();
+            int lane = (row.machineId.hashCode() & Integer.MAX_VALUE) % lanes;
+            List<Row> batch = pending.get(lane);
+            batch.add(row);
+            rows++;
+            if (batch.size() >= batchSize) {
+                put(lane, batch);
+                pending.set(lane, new ArrayList<>(batchSize));
+            }
+        }
+
+        void finish() throws IOException {
+            for (int lane = 0; lane < lanes; lane++) {
+                if (!pending.get(lane).isEmpty()) {
+                    put(lane, pending.get(lane));
+                }
+                put(lane, END_OF_INPUT);
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Завантаження перервано.", e);
+                }
+            }
+            checkFailure();
+        }
+
+        LoadResult result() {
+            return new LoadResult(rows, machines.size());
+        }
+
+        private void put(int lane, List<Row> batch) throws IOException {
+            try {
+                queues.get(lane).put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Завантаження перервано.", e);
+            }
+        }
+
+        private void drain(BlockingQueue<List<Row>> queue) {
+            while (true) {
+                List<Row> batch;
+                try {
+                    batch = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (batch == END_OF_INPUT) {
+                    return;
+                }
+                if (failure.get() != null) {
+                    continue; // Дочитуємо чергу, щоб не заблокувати читача
+                }
+                try {
+                    for (Row row : batch) {
+                        VendingMachine machine = fleet.getOrCreate(row.machineId);
+                        machine.addSlot(new Slot(row.toProduct(), row.quantity));
+                        machines.add(row.machineId);
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+
+        private void checkFailure() throws IOException {
+            Throwable error = failure.get();
+            if (error != null) {
+                throw new IOException("Помилка заповнення слотів: " + error.getMessage(), error);
+            }
+        }
+    }
+
+    /**
+     * @return true, якщо рядок - це заголовок CSV_HEADER з усіма полями або без кількох
+     *         останніх необов'язкових.
+     */
+    private static boolean isHeader(String line) {
+        return line.split(",", -1).length >= 6 && (CSV_HEADER + ",").startsWith(line + ",");
+    }
+
+
+    /**
+     * Один рядок планограми: слот автомата з продуктом і кількістю.
+     */
+    private static final class Row {
+        final String machineId;
+        final byte type;
+        final String name;
+        final String sku;
+        final long price;
+        final double size;
+        final int quantity;
+        final int calories;
+        final String expirationDate;
+
+        Row(String machineId, byte type, String name, String sku, long price, double size,
+            int quantity, int calories, String expirationDate) {
+            this.machineId = machineId;
+            this.type = type;
+            this.name = name;
+            this.sku = sku;
+            this.price = price;
+            this.size = size;
+            this.quantity = quantity;
+            this.calories = calories;
+            this.expirationDate = expirationDate;
+        }
+
+        /**
+         * Перевіряє запис до створення слота. Вага їжі - ціла кількість грамів;
+         * дробове значення відхиляється, а не обрізається.
+         */
+        void validate() {
+            if (type != DRINK && type != FOOD) {
+                throw new IllegalArgumentException("Невідомий тип продукту: " + type);
+            }
+            if (price < 0) {
+                throw new IllegalArgumentException("Від'ємна ціна: " + price + " коп.");
+            }
+            if (quantity < 0) {
+                throw new IllegalArgumentException("Від'ємна кількість: " + quantity);
+            }
+            if (calories < 0) {
+                throw new IllegalArgumentException("Від'ємна калорійність: " + calories);
+            }
+            if (!(size >= 0) || Double.isInfinite(size)) {
+                throw new IllegalArgumentException("Невірний розмір продукту: " + size);
+            }
+            if (type == FOOD && (size != Math.rint(size) || size > Integer.MAX_VALUE)) {
+                throw new IllegalArgumentException("Вага їжі має бути цілою кількістю грамів: " + size);
+            }
+            Product.parseExpirationDay(expirationDate);
+        }
+
+        Product toProduct() {
+            if (type == DRINK) {
+                return ProductFactory.createDrink(name, sku, price, size, calories, expirationDate);
+            }
+            if (type == FOOD) {
+                return ProductFactory.createFood(name, sku, price, (int) size, calories, expirationDate);
+            }
+            throw new IllegalArgumentException("Невідомий тип продукту: " + type);
+        }
+    }
+
+    /**
+     * Підсумок завантаження.
+     */
+    public static class LoadResult {
+        private final long rows;
+        private final int machines;
+
+        LoadResult(long rows, int machines) {
+            this.rows = rows;
+            this.machines = machines;
+        }
+
+        /** @return Кількість завантажених слотів. */
+        public long getRows() { return rows; }
+
+        /** @return Кількість автоматів, у які додано слоти. */
+        public int getMachines() { return machines; }
+    }
+}
@@ -1,13 +1,22 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
 /**
  * Абстрактний базовий клас для всіх продуктів у торговому автоматі.
  * Використовує шаблон Builder для створення об'єктів, що дозволяє гнучко створювати продукти
  * з обов'язковими та необов'язковими параметрами.
  */
 public abstract class Product {
+    /** Значення getExpirationDay() для продуктів без терміну придатності. */
+    public static final int NO_EXPIRATION = Integer.MAX_VALUE;
+    private static final String NO_EXPIRATION_TEXT = "N/A";
+
     private final String name;
-    private final double price;
+    private final long price; // Ціна в копійках
     private final int calories; // Необов'язковий параметр
-    private final String expirationDate; // Необов'язковий параметр
+    private final int expirationDay; // Необов'язковий параметр: день від 1970-01-01 (epoch day)
+    private final String sku; // Необов'язковий параметр, за замовчуванням дорівнює назві
+    private volatile String description; // Кешований опис, формується при першому запиті
 
     /**
      * Абстрактний внутрішній клас Builder для ланцюжкового створення об'єктів Product.
@@ -16,18 +25,19 @@ public abstract class Product {
     public static abstract class Builder<T extends Builder<T>> {
         // Обов'язкові параметри
         private final String name;
-        private final double price;
+        private final long price;
 
         // Необов'язкові параметри зі значеннями за замовчуванням
         private int calories = 0;
-        private String expirationDate = "N/A";
+        private String expirationDate = NO_EXPIRATION_TEXT;
+        private String sku;
 
         /**
          * Конструктор з обов'язковими параметрами.
          * @param name Назва продукту.
-         * @param price Ціна продукту.
+         * @param price Ціна продукту в копійках.
          */
-        public Builder(String name, double price) {
+        public Builder(String name, long price) {
             this.name = name;
             this.price = price;
         }
@@ -44,7 +54,7 @@ public abstract class Product {
 
         /**
          * Встановлює термін придатності.
-         * @param date Дата у форматі String.
+         * @param date Дата у форматі ISO (РРРР-ММ-ДД) або "N/A", якщо терміну немає.
          * @return Поточний екземпляр Builder.
          */
         public T expirationDate(String date) {
@@ -52,6 +62,16 @@ public abstract class Product {
             return self();
         }
 
+        /**
+         * Встановлює артикул (SKU) продукту.
+         * @param val Артикул.
+         * @return Поточний екземпляр Builder.
+         */
+        public T sku(String val) {
+            sku = val;
+            return self();
+        }
+
         /**
          * Абстрактний метод для створення кінцевого об'єкта Product.
          * @return Створений продукт.
@@ -69,14 +89,15 @@ public abstract class Product {
         this.name = builder.name;
         this.price = builder.price;
         this.calories = builder.calories;
-        this.expirationDate = builder.expirationDate;
+        this.expirationDay = parseExpirationDay(builder.expirationDate);
+        this.sku = builder.sku != null ? builder.sku : builder.name;
     }
 
     public String getName() {
         return name;
     }
 
-    public double getPrice() {
+    public long getPrice() {
         return price;
     }
     
@@ -84,13 +105,69 @@ public abstract class Product {
         return calories;
     }
 
+    /**
+     * @return Термін придатності у форматі РРРР-ММ-ДД або "N/A".
+     */
     public String getExpirationDate() {
-        return expirationDate;
+        return expirationDay == NO_EXPIRATION ? NO_EXPIRATION_TEXT : LocalDate.ofEpochDay(expirationDay).toString();
+    }
+
+    /**
+     * @return Останній день придатності як кількість днів від 1970-01-01 або NO_EXPIRATION.
+     */
+    public int getExpirationDay() {
+        return expirationDay;
+    }
+
+    /**
+     * @param epochDay День (LocalDate.toEpochDay()).
+     * @return true, якщо цього дня термін придатності вже минув.
+     */
+    public boolean isExpiredOn(long epochDay) {
+        return epochDay > expirationDay;
+    }
+
+    /**
+     * @return День від 1970-01-01 для дати РРРР-ММ-ДД або NO_EXPIRATION для "N/A".
+     * @throws IllegalArgumentException якщо дата має невірний формат.
+     */
+    static int parseExpirationDay(String date) {
+        if (date == null) {
+            return NO_EXPIRATION;
+        }
+        String trimmed = date.trim();
+        if (trimmed.isEmpty() || trimmed.equalsIgnoreCase(NO_EXPIRATION_TEXT)) {
+            return NO_EXPIRATION;
+        }
+        try {
+            return Math.toIntExact(LocalDate.parse(trimmed).toEpochDay());
+        } catch (DateTimeParseException | ArithmeticException e) {
+            throw new IllegalArgumentException("Невірний термін придатності: '" + date + "' (очікується РРРР-ММ-ДД або N/A)", e);
+        }
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    /**
+     * Повертає повний опис продукту. Продукт незмінний, тому опис формується один раз
+     * і далі повертається з кешу (одночасний перший виклик з кількох потоків може
+     * сформувати його двічі, але результат однаковий).
+     * @return Рядок з описом.
+     */
+    public final String getDescription() {
+        String result = description;
+        if (result == null) {
+            result = describe();
+            description = result;
+        }
+        return result;
     }
 
     /**
-     * Абстрактний метод для отримання повного опису продукту.
+     * Формує опис продукту. Викликається лише з getDescription().
      * @return Рядок з описом.
      */
-    public abstract String getDescription();
+    protected abstract String describe();
 }
@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Індекс продуктів одного автомата. Дозволяє знаходити слоти за SKU, назвою
+ * та типом продукту (Drink, Food) за O(1) замість лінійного перебору getSlots().
+ * Індекс оновлюється інкрементально: при додаванні слота (addSlot) та при кожному
+ * продажу, тому загальний залишок товару за ключем також доступний за O(1).
+ *
+ * GRASP Patterns:
+ * - Pure Fabrication: Допоміжний клас, що не відповідає сутності предметної області,
+ *   але знімає з VendingMachine відповідальність за швидкий пошук.
+ */
+public class ProductCatalog {
+    private final Map<String, Entry> bySku = new ConcurrentHashMap<>();
+    private final Map<String, Entry> byName = new ConcurrentHashMap<>();
+    private final Map<Class<? extends Product>, Entry> byType = new ConcurrentHashMap<>();
+
+    /**
+     * Додає слот до індексу.
+     * @param slotNumber Номер слота (починаючи з 1).
+     * @param slot Слот.
+     */
+    void index(int slotNumber, Slot slot) {
+        Product product = slot.getProduct();
+        int quantity = slot.getQuantity();
+        bySku.computeIfAbsent(product.getSku(), key -> new Entry()).add(slotNumber, slot, quantity);
+        byName.computeIfAbsent(product.getName(), key -> new Entry()).add(slotNumber, slot, quantity);
+        byType.computeIfAbsent(product.getClass(), key -> new Entry()).add(slotNumber, slot, quantity);
+    }
+
+    /**
+     * Оновлює залишки після продажу однієї одиниці товару.
+     * @param product Проданий продукт.
+     */
+    void onSold(Product product) {
+        onStockChanged(product, -1);
+    }
+
+    /**
+     * Оновлює залишки після зміни кількості товару у слоті.
+     * @param product Продукт слота.
+     * @param delta Зміна кількості (від'ємна при продажу).
+     */
+    void onStockChanged(Product product, int delta) {
+        Entry entry = bySku.get(product.getSku());
+        if (entry != null) {
+            entry.units.addAndGet(delta);
+        }
+        entry = byName.get(product.getName());
+        if (entry != null) {
+            entry.units.addAndGet(delta);
+        }
+        entry = byType.get(product.getClass());
+        if (entry != null) {
+            entry.units.addAndGet(delta);
+        }
+    }
+
+    void clear() {
+        bySku.clear();
+        byName.clear();
+        byType.clear();
+    }
+
+    /**
+     * @param sku Артикул.
+     * @return Номери слотів з цим SKU (можуть бути порожніми).
+     */
+    public int[] findSlotsBySku(String sku) {
+        return slotNumbers(bySku.get(sku));
+    }
+
+    /**
+     * @param name Назва продукту.
+     * @return Номери слотів з цією назвою.
+     */
+    public int[] findSlotsByName(String name) {
+        return slotNumbers(byName.get(name));
+    }
+
+    /**
+     * @param type Клас продукту, наприклад Drink.class.
+     * @return Номери слотів з продуктами цього типу.
+     */
+    public int[] findSlotsByType(Class<? extends Product> type) {
+        return slotNumbers(byType.get(type));
+    }
+
+    /**
+     * Знаходить перший слот, у якому товар з вказаним SKU є в наявності.
+     * @param sku Артикул.
+     * @return Номер слота або -1, якщо товару немає.
+     */
+    public int findInStockSlot(String sku) {
+        Entry entry = bySku.get(sku);
+        if (entry == null || entry.units.get() <= 0) {
+            return -1;
+        }
+        Slot[] slots = entry.slots;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].getQuantity() > 0) {
+                return entry.slotNumbers[i];
+            }
+        }
+        return -1;
+    }
+
+    /** @return Загальний залишок товару з вказаним SKU у всіх слотах. */
+    public int getStockBySku(String sku) {
+        return units(bySku.get(sku));
+    }
+
+    /** @return Загальний залишок товару з вказаною назвою у всіх слотах. */
+    public int getStockByName(String name) {
+        return units(byName.get(name));
+    }
+
+    /** @return Загальний залишок товарів вказаного типу. */
+    public int getStockByType(Class<? extends Product> type) {
+        return units(byType.get(type));
+    }
+
+    /** @return Незмінна множина всіх SKU автомата. */
+    public Set<String> getSkus() {
+        return Collections.unmodifiableSet(bySku.keySet());
+    }
+
+    private static int[] slotNumbers(Entry entry) {
+        return entry == null ? new int[0] : entry.slotNumbers.clone();
+    }
+
+    private static int units(Entry entry) {
+        return entry == null ? 0 : entry.units.get();
+    }
+
+    /**
+     * Запис індексу: слоти з однаковим ключем та їхній сумарний залишок.
+     * Масиви замінюються копією при додаванні, тому читачі бачать узгоджений стан без блокувань.
+     */
+    private static class Entry {
+        private volatile int[] slotNumbers = new int[0];
+        private volatile Slot[] slots = new Slot[0];
+        private final AtomicInteger units = new AtomicInteger();
+
+        synchronized void add(int slotNumber, Slot slot, int quantity) {
+            int length = slotNumbers.length;
+            int[] newNumbers = Arrays.copyOf(slotNumbers, length + 1);
+            Slot[] newSlots = Arrays.copyOf(slots, length + 1);
+            newNumbers[length] = slotNumber;
+            newSlots[length] = slot;
+            slots = newSlots;
+            slotNumbers = newNumbers;
+            units.addAndGet(quantity);
+        }
+    }
+}
@@ -1,52 +1,225 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
 /**
  * Фабричний метод (Factory Method) для створення різних типів продуктів.
  * Використовує шаблон Builder для конструювання об'єктів продуктів.
- * 
+ *
  * GRASP Patterns:
  * - Creator: Цей клас відповідає за створення об'єктів Product, оскільки він
  *   має необхідну інформацію про їхні типи та процес створення.
+ *
+ * Structural Patterns:
+ * - Flyweight: Продукти незмінні, тому фабрика повертає один канонічний екземпляр
+ *   для однакових параметрів. Пул тримає слабкі посилання, тож продукт, який
+ *   більше ніде не використовується, звільняється збирачем сміття.
  */
 public class ProductFactory {
 
+    private static final ConcurrentMap<ProductKey, PooledReference> POOL = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Product> STALE = new ReferenceQueue<>();
+
     /**
      * Створює напій з використанням Builder.
      * @param name Назва напою.
-     * @param price Ціна.
+     * @param price Ціна в копійках.
      * @param volume Об'єм в літрах.
      * @return Створений об'єкт Drink.
      */
-    public static Drink createDrink(String name, double price, double volume) {
-        return new Drink.Builder(name, price)
+    public static Drink createDrink(String name, long price, double volume) {
+        ProductKey key = new ProductKey(Drink.class, name, name, price, Double.doubleToLongBits(volume), 0, Product.NO_EXPIRATION);
+        return (Drink) intern(key, () -> new Drink.Builder(name, price)
                 .volume(volume)
-                .build();
+                .build());
     }
 
     /**
      * Створює їжу з використанням Builder.
      * @param name Назва.
-     * @param price Ціна.
+     * @param price Ціна в копійках.
      * @param weight Вага в грамах.
      * @return Створений об'єкт Food.
      */
-    public static Food createFood(String name, double price, int weight) {
-        return new Food.Builder(name, price)
+    public static Food createFood(String name, long price, int weight) {
+        ProductKey key = new ProductKey(Food.class, name, name, price, weight, 0, Product.NO_EXPIRATION);
+        return (Food) intern(key, () -> new Food.Builder(name, price)
                 .weight(weight)
-                .build();
+                .build());
     }
-    
+
     /**
      * Створює їжу з додатковими параметрами.
      * @param name Назва.
-     * @param price Ціна.
+     * @param price Ціна в копійках.
      * @param weight Вага.
      * @param calories Калорійність.
      * @return Створений об'єкт Food.
      */
-    public static Food createFoodWithExtras(String name, double price, int weight, int calories, String expDate) {
-        return new Food.Builder(name, price)
+    public static Food createFoodWithExtras(String name, long price, int weight, int calories, String expDate) {
+        ProductKey key = new ProductKey(Food.class, name, name, price, weight, calories, Product.parseExpirationDay(expDate));
+        return (Food) intern(key, () -> new Food.Builder(name, price)
+                .weight(weight)
+                .calories(calories)
+                .expirationDate(expDate)
+                .build());
+    }
+
+    /**
+     * Створює напій з усіма параметрами (використовується при завантаженні планограм і знімків).
+     * @param name Назва.
+     * @param sku Артикул (null означає назву, як у Product.Builder).
+     * @param price Ціна в копійках.
+     * @param volume Об'єм в літрах.
+     * @param calories Калорійність.
+     * @param expDate Термін придатності.
+     * @return Канонічний об'єкт Drink.
+     */
+    public static Drink createDrink(String name, String sku, long price, double volume, int calories, String expDate) {
+        String canonicalSku = skuOrName(sku, name);
+        ProductKey key = new ProductKey(Drink.class, name, canonicalSku, price, Double.doubleToLongBits(volume), calories, Product.parseExpirationDay(expDate));
+        return (Drink) intern(key, () -> new Drink.Builder(name, price)
+                .volume(volume)
+                .calories(calories)
+                .expirationDate(expDate)
+                .sku(canonicalSku)
+                .build());
+    }
+
+    /**
+     * Створює їжу з усіма параметрами (використовується при завантаженні планограм і знімків).
+     * @param name Назва.
+     * @param sku Артикул (null означає назву, як у Product.Builder).
+     * @param price Ціна в копійках.
+     * @param weight Вага в грамах.
+     * @param calories Калорійність.
+     * @param expDate Термін придатності.
+     * @return Канонічний об'єкт Food.
+     */
+    public static Food createFood(String name, String sku, long price, int weight, int calories, String expDate) {
+        String canonicalSku = skuOrName(sku, name);
+        ProductKey key = new ProductKey(Food.class, name, canonicalSku, price, weight, calories, Product.parseExpirationDay(expDate));
+        return (Food) intern(key, () -> new Food.Builder(name, price)
                 .weight(weight)
                 .calories(calories)
                 .expirationDate(expDate)
-                .build();
+                .sku(canonicalSku)
+                .build());
+    }
+
+    /**
+     * @return Кількість записів у пулі канонічних продуктів (включно з ще не очищеними).
+     */
+    public static int pooledCount() {
+        expungeStale();
+        return POOL.size();
+    }
+
+    /**
+     * Артикул за замовчуванням дорівнює назві, тому ключ пулу будується з уже
+     * нормалізованого артикула: продукт без артикула і продукт з артикулом, що
+     * дорівнює назві, мають один канонічний екземпляр.
+     */
+    private static String skuOrName(String sku, String name) {
+        return sku != null ? sku : name;
+    }
+
+        private static Product intern(ProductKey key, Supplier<Product> builder) {
+        expungeStale();
+        while (true) {
+            PooledReference ref = POOL.get(key);
+            Product existing = ref == null ? null : ref.get();
+            if (existing != null) {
+                return existing;
+            }
+            Product created = builder.get();
+            PooledReference newRef = new PooledReference(key, created, STALE);
+            boolean stored = ref == null
+                    ? POOL.putIfAbsent(key, newRef) == null
+                    : POOL.replace(key, ref, newRef);
+            if (stored) {
+                return created;
+            }
+            // Інший потік встиг додати продукт - повторюємо пошук
+        }
+    }
+
+    private static void expungeStale() {
+        PooledReference ref;
+        while ((ref = (PooledReference) STALE.poll()) != null) {
+            POOL.remove(ref.key, ref);
+        }
+    }
+
+    /**
+     * Слабке посилання на продукт, що пам'ятає свій ключ для видалення з пулу.
+     */
+    private static final class PooledReference extends WeakReference<Product> {
+        private final ProductKey key;
+
+        PooledReference(ProductKey key, Product product, ReferenceQueue<Product> queue) {
+            super(product, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Ключ пулу: тип продукту та всі параметри, що визначають його стан. Термін
+     * придатності зберігається як день (Product.parseExpirationDay), тому різні
+     * записи однієї дати (" 2025-12-31", "n/a" і null) дають один продукт.
+     */
+    private static final class ProductKey {
+        private final Class<? extends Product> type;
+        private final String name;
+        private final String sku;
+        private final long price;
+        private final long size; // Об'єм (біти double) або вага
+        private final int calories;
+        private final int expirationDay;
+        private final int hash;
+
+        ProductKey(Class<? extends Product> type, String name, String sku, long price, long size, int calories, int expirationDay) {
+            this.type = type;
+            this.name = name;
+            this.sku = sku;
+            this.price = price;
+            this.size = size;
+            this.calories = calories;
+            this.expirationDay = expirationDay;
+            int h = type.hashCode();
+            h = 31 * h + Objects.hashCode(name);
+            h = 31 * h + Objects.hashCode(sku);
+            h = 31 * h + Long.hashCode(price);
+            h = 31 * h + Long.hashCode(size);
+            h = 31 * h + calories;
+            h = 31 * h + expirationDay;
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ProductKey)) {
+                return false;
+            }
+            ProductKey other = (ProductKey) o;
+            return price == other.price
+                    && size == other.size
+                    && calories == other.calories
+                    && expirationDay == other.expirationDay
+                    && type == other.type
+                    && Objects.equals(name, other.name)
+                    && Objects.equals(sku, other.sku);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 }
@@ -0,0 +1,38 @@
+/**
+ * Результат спроби покупки для API без винятків (VendingMachine.trySelectSlot,
+ * VendingMachine.tryPurchase). Значення enum створюються один раз, тому відмова
+ * не розміщує об'єктів, не збирає стек викликів і не форматує повідомлення.
+ * Методи, що викидають винятки (selectSlot, purchase), є обгортками над цим API.
+ */
+public enum PurchaseOutcome {
+    /** Товар продано. */
+    SUCCESS,
+    /** Невірний номер слота. */
+    INVALID_SLOT,
+    /** Товар закінчився. */
+    OUT_OF_STOCK,
+    /** Недостатньо коштів. */
+    INSUFFICIENT_FUNDS,
+    /** Гроші не внесено (автомат в очікуванні). */
+    NO_MONEY,
+    /** Автомат зайнятий видачею попереднього товару. */
+    BUSY;
+
+    private static final PurchaseOutcome[] VALUES = values();
+
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+
+    /**
+     * Код для передачі через результат дії таблиці переходів: 0 - успіх,
+     * від'ємне значення - подію відхилено.
+     */
+    long toResultCode() {
+        return -ordinal();
+    }
+
+    static PurchaseOutcome fromResultCode(long code) {
+        return VALUES[(int) -code];
+    }
+}
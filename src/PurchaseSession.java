@@ -0,0 +1,41 @@
+/**
+ * Сесія покупця для конкурентного режиму покупок.
+ * Кожна сесія має власний баланс, захищений власним монітором, тому покупки
+ * різних покупців не конкурують за спільний баланс автомата.
+ */
+public class PurchaseSession {
+    private long balance; // Баланс у копійках
+
+    public synchronized void deposit(long amount) {
+        if (amount > 0) {
+            balance += amount;
+        }
+    }
+
+    /**
+     * Списує суму з балансу, якщо коштів достатньо.
+     * @param amount Сума для списання в копійках.
+     * @return true, якщо кошти списано, інакше false.
+     */
+    public synchronized boolean tryDebit(long amount) {
+        if (balance < amount) {
+            return false;
+        }
+        balance -= amount;
+        return true;
+    }
+
+    /**
+     * Повертає весь залишок і обнуляє баланс сесії.
+     * @return Сума решти в копійках.
+     */
+    public synchronized long withdrawAll() {
+        long change = balance;
+        balance = 0;
+        return change;
+    }
+
+    public synchronized long getBalance() {
+        return balance;
+    }
+}
@@ -0,0 +1,244 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Планувальник поповнення парку автоматів. Як спостерігач отримує події продажу
+ * і для кожного слота оцінює швидкість продажів (експоненційне ковзне середнє
+ * інтервалу між продажами). За цією оцінкою plan() прогнозує, коли слот спорожніє,
+ * і складає списки поповнення для кожного автомата та для кожного маршруту
+ * (з сумарним завантаженням машини за SKU).
+ *
+ * Автомати парку обробляються паралельно (parallelStream), кожен - за один прохід
+ * по слотах, тому план для сотень тисяч слотів будується за один виклик.
+ *
+ * GRASP Patterns:
+ * - Pure Fabrication: Окремий клас для планування, не пов'язаний з логікою продажу.
+ * Behavioral Patterns:
+ * - Observer: Отримує події PRODUCT_DISPENSED.
+ */
+public class RestockPlanner implements VendingMachineObserver {
+    /** Маршрут для автоматів, яким маршрут не призначено. */
+    public static final String UNASSIGNED_ROUTE = "unassigned";
+
+    private static final double HOUR_MILLIS = 3_600_000.0;
+    // Вага нового інтервалу в ковзному середньому
+    private static final double SMOOTHING = 0.3;
+
+    private final int parLevel;
+    private final LongSupplier clockMillis;
+    private final Map<String, SlotRates> rates = new ConcurrentHashMap<>();
+    private final Map<String, String> routes = new ConcurrentHashMap<>();
+
+    /**
+     * @param parLevel Цільова кількість товару у слоті після поповнення.
+     */
+    public RestockPlanner(int parLevel) {
+        this(parLevel, System::currentTimeMillis);
+    }
+
+    RestockPlanner(int parLevel, LongSupplier clockMillis) {
+        if (parLevel <= 0) {
+            throw new IllegalArgumentException("Цільова кількість має бути більшою за 0.");
+        }
+        this.parLevel = parLevel;
+        this.clockMillis = clockMillis;
+    }
+
+    @Override
+    public void update(VendingMachineEvent event) {
+        if (event.getType() == VendingMachineEvent.Type.PRODUCT_DISPENSED) {
+            rates.computeIfAbsent(event.getMachineId(), k -> new SlotRates())
+                    .onSale(event.getSlotNumber(), clockMillis.getAsLong());
+        }
+    }
+
+    /**
+     * Призначає автомат маршруту обслуговування.
+     */
+    public void assignRoute(String machineId, String route) {
+        routes.put(machineId, route);
+    }
+
+    /**
+     * @return Оцінка швидкості продажів слота в одиницях за годину (0, якщо продажів ще не було).
+     */
+    public double getUnitsPerHour(String machineId, int slotNumber) {
+        SlotRates slotRates = rates.get(machineId);
+        return slotRates == null ? 0 : slotRates.unitsPerHour(slotNumber, clockMillis.getAsLong());
+    }
+
+    /**
+     * Складає план поповнення: до плану потрапляють порожні слоти та слоти, що за
+     * прогнозом спорожніють протягом horizonMillis.
+     * @param fleet Парк автоматів.
+     * @param horizonMillis Горизонт планування (наприклад, час до наступного рейсу).
+     * @return План поповнення.
+     */
+    public Plan plan(VendingMachineFleet fleet, long horizonMillis) {
+        long now = clockMillis.getAsLong();
+        Map<String, List<RefillItem>> byMachine = fleet.getMachines().parallelStream()
+                .map(machine -> planMachine(machine, now, horizonMillis))
+                .filter(items -> !items.isEmpty())
+                .collect(Collectors.toConcurrentMap(items -> items.get(0).getMachineId(), items -> items));
+        return new Plan(byMachine, routes);
+    }
+
+    private List<RefillItem> planMachine(VendingMachine machine, long now, long horizonMillis) {
+        String machineId = machine.getMachineId();
+        SlotRates slotRates = rates.get(machineId);
+        List<Slot> slots = machine.getSlots();
+        List<RefillItem> items = new ArrayList<>();
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            int quantity = slot.getQuantity();
+            double perHour = slotRates == null ? 0 : slotRates.unitsPerHour(i + 1, now);
+            long millisToEmpty = quantity <= 0 ? 0
+                    : perHour > 0 ? (long) (quantity / perHour * HOUR_MILLIS) : Long.MAX_VALUE;
+            if (millisToEmpty <= horizonMillis && quantity < parLevel) {
+                items.add(new RefillItem(machineId, i + 1, slot.getProduct().getSku(), quantity,
+                        parLevel - quantity, perHour, millisToEmpty));
+            }
+        }
+        // Найтерміновіші слоти - першими
+        items.sort(Comparator.comparingLong(RefillItem::getMillisToEmpty));
+        return items;
+    }
+
+    /**
+     * Швидкості продажів слотів одного автомата. Масиви ростуть за номером слота.
+     */
+    private static final class SlotRates {
+        private long[] lastSaleMillis = new long[0];
+        private double[] averageIntervalMillis = new double[0];
+
+        synchronized void onSale(int slotNumber, long now) {
+            if (slotNumber <= 0) {
+                return;
+            }
+            int i = slotNumber - 1;
+            if (i >= lastSaleMillis.length) {
+                lastSaleMillis = Arrays.copyOf(lastSaleMillis, slotNumber);
+                averageIntervalMillis = Arrays.copyOf(averageIntervalMillis, slotNumber);
+            }
+            long last = lastSaleMillis[i];
+            if (last > 0) {
+                double interval = Math.max(1, now - last);
+                double average = averageIntervalMillis[i];
+                averageIntervalMillis[i] = average == 0 ? interval : SMOOTHING * interval + (1 - SMOOTHING) * average;
+            }
+            lastSaleMillis[i] = now;
+        }
+
+        synchronized double unitsPerHour(int slotNumber, long now) {
+            int i = slotNumber - 1;
+            if (i < 0 || i >= averageIntervalMillis.length || averageIntervalMillis[i] == 0) {
+                return 0;
+            }
+            // Якщо продажів давно не було, швидкість знижується: інтервал не менший за час з останнього продажу
+            double interval = Math.max(averageIntervalMillis[i], now - lastSaleMillis[i]);
+            return HOUR_MILLIS / interval;
+        }
+    }
+
+    /**
+     * Позиція плану: один слот, який треба поповнити.
+     */
+    public static class RefillItem {
+        private final String machineId;
+        private final int slotNumber;
+        private final String sku;
+        private final int quantity;
+        private final int refillUnits;
+        private final double unitsPerHour;
+        private final long millisToEmpty;
+
+        RefillItem(String machineId, int slotNumber, String sku, int quantity, int refillUnits,
+                   double unitsPerHour, long millisToEmpty) {
+            this.machineId = machineId;
+            this.slotNumber = slotNumber;
+            this.sku = sku;
+            this.quantity = quantity;
+            this.refillUnits = refillUnits;
+            this.unitsPerHour = unitsPerHour;
+            this.millisToEmpty = millisToEmpty;
+        }
+
+        public String getMachineId() { return machineId; }
+        public int getSlotNumber() { return slotNumber; }
+        public String getSku() { return sku; }
+        /** @return Поточна кількість товару у слоті. */
+        public int getQuantity() { return quantity; }
+        /** @return Скільки одиниць довезти до цільової кількості. */
+        public int getRefillUnits() { return refillUnits; }
+        public double getUnitsPerHour() { return unitsPerHour; }
+        /** @return Прогнозований час до спорожніння (0 - вже порожній). */
+        public long getMillisToEmpty() { return millisToEmpty; }
+
+        @Override
+        public String toString() {
+            return machineId + " #" + slotNumber + " " + sku + ": " + quantity + " -> +" + refillUnits;
+        }
+    }
+
+    /**
+     * План поповнення парку.
+     */
+    public static class Plan {
+        private final Map<String, List<RefillItem>> byMachine;
+        private final Map<String, List<String>> machinesByRoute = new TreeMap<>();
+        private final Map<String, Map<String, Integer>> loadByRoute = new TreeMap<>();
+
+        Plan(Map<String, List<RefillItem>> byMachine, Map<String, String> routes) {
+            this.byMachine = Collections.unmodifiableMap(byMachine);
+            // Автомати маршруту впорядковані за найтерміновішим слотом
+            List<List<RefillItem>> ordered = new ArrayList<>(byMachine.values());
+            ordered.sort(Comparator.comparingLong(items -> items.get(0).getMillisToEmpty()));
+            for (List<RefillItem> items : ordered) {
+                String machineId = items.get(0).getMachineId();
+                String route = routes.getOrDefault(machineId, UNASSIGNED_ROUTE);
+                machinesByRoute.computeIfAbsent(route, k -> new ArrayList<>()).add(machineId);
+                Map<String, Integer> load = loadByRoute.computeIfAbsent(route, k -> new TreeMap<>());
+                for (RefillItem item : items) {
+                    load.merge(item.getSku(), item.getRefillUnits(), Integer::sum);
+                }
+            }
+        }
+
+        /** @return Позиції плану за ідентифікатором автомата, найтерміновіші - першими. */
+        public Map<String, List<RefillItem>> getByMachine() { return byMachine; }
+
+        public List<RefillItem> getItems(String machineId) {
+            return byMachine.getOrDefault(machineId, Collections.emptyList());
+        }
+
+        /** @return Автомати маршруту в порядку терміновості. */
+        public List<String> getMachines(String route) {
+            return Collections.unmodifiableList(machinesByRoute.getOrDefault(route, Collections.emptyList()));
+        }
+
+        /** @return Сумарна кількість одиниць кожного SKU, яку треба завантажити на маршрут. */
+        public Map<String, Integer> getLoad(String route) {
+            return Collections.unmodifiableMap(loadByRoute.getOrDefault(route, Collections.emptyMap()));
+        }
+
+        public List<String> getRoutes() {
+            return new ArrayList<>(machinesByRoute.keySet());
+        }
+
+        public int size() {
+            int size = 0;
+            for (List<RefillItem> items : byMachine.values()) {
+                size += items.size();
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * Збій платіжного шлюзу, після якого гарантовано, що кошти не списано (наприклад,
+ * з'єднання з еквайром не встановлено). Лише такі збої PaymentProcessor повторює
+ * для стратегій без ключа ідемпотентності.
+ * Наслідує RuntimeException, бо PaymentStrategy.pay не оголошує перевірених винятків.
+ */
+public class RetryablePaymentException extends RuntimeException {
+    public RetryablePaymentException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * Команда, яку можна скасувати компенсуючою дією (наприклад, при збої видачі
+ * товару або невдалому списанні з картки).
+ */
+public interface ReversibleCommand extends Command {
+    /**
+     * Скасовує результат виконаної команди. Команда, яка нічого не змінила
+     * (наприклад, вибір товару без грошей) або вже скасована, нічого не робить.
+     * @return true, якщо стан автомата повернуто; false, якщо скасовувати було нічого.
+     * @throws VendingMachineException якщо скасування неможливе.
+     */
+    boolean undo() throws VendingMachineException;
+}
@@ -0,0 +1,291 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Спостерігач, що веде аналітику продажів у реальному часі за ковзним вікном
+ * останніх windowMinutes хвилин: продажі кожного товару по хвилинах, виторг
+ * і внесені кошти кожного автомата, найпопулярніші товари.
+ *
+ * Агрегати оновлюються інкрементально на кожну подію, тому запити відповідаються
+ * з пам'яті без перегляду журналу. SKU та ідентифікатори автоматів один раз
+ * перетворюються на цілі індекси, а лічильники зберігаються в масивах long
+ * (кільце хвилинних кошиків + сума за вікно). Коли хвилина виходить за межі вікна,
+ * її кошик віднімається від сум і очищується.
+ *
+ * Один спостерігач можна підписати на всі автомати парку. Усі події обробляються
+ * під одним блокуванням, тому для парку підписуйте його через AsyncEventBus
+ * (з політикою BLOCK: COALESCE і DROP губили б внесення), щоб потоки покупок
+ * різних автоматів не чекали одне на одного.
+ *
+ * Внесені кошти рахуються за подіями BALANCE_CHANGED, тобто лише гроші, внесені
+ * в баланс автомата (insertMoney). Кошти PurchaseSession та асинхронні оплати
+ * автомат не бачить, тому getDeposited їх не містить; виторг від таких покупок
+ * враховується за подіями PRODUCT_DISPENSED.
+ *
+ * Behavioral Patterns:
+ * - Observer: Отримує події PRODUCT_DISPENSED, SALE_REVERSED і BALANCE_CHANGED.
+ */
+public class SalesAnalyticsObserver implements VendingMachineObserver {
+    private static final long MINUTE_MILLIS = 60_000;
+
+    private final int window;
+    private final LongSupplier clockMillis;
+
+    private final Map<String, Integer> productIds = new HashMap<>();
+    private final Map<String, Integer> machineIds = new HashMap<>();
+    private String[] skus = new String[16];
+
+    // [id][хвилина % window] та суми за вікно
+    private long[][] productUnits = new long[16][];
+    private long[][] productRevenue = new long[16][];
+    private long[] productUnitsTotal = new long[16];
+    private long[] productRevenueTotal = new long[16];
+    private long[][] machineRevenue = new long[16][];
+    private long[][] machineDeposits = new long[16][];
+    private long[] machineRevenueTotal = new long[16];
+    private long[] machineDepositsTotal = new long[16];
+
+    private long currentMinute = Long.MIN_VALUE;
+
+    /**
+     * @param windowMinutes Довжина ковзного вікна в хвилинах.
+     */
+    public SalesAnalyticsObserver(int windowMinutes) {
+        this(windowMinutes, System::currentTimeMillis);
+    }
+
+    SalesAnalyticsObserver(int windowMinutes, LongSupplier clockMillis) {
+        if (windowMinutes <= 0) {
+            throw new IllegalArgumentException("Вікно має бути більшим за 0 хвилин.");
+        }
+        this.window = windowMinutes;
+        this.clockMillis = clockMillis;
+    }
+
+    @Override
+    public void update(VendingMachineEvent event) {
+        switch (event.getType()) {
+            case PRODUCT_DISPENSED:
+                recordSale(event.getMachineId(), event.getProduct().getSku(), 1, event.getAmount());
+                break;
+            case SALE_REVERSED:
+                recordSale(event.getMachineId(), event.getProduct().getSku(), -1, -event.getAmount());
+                break;
+            case BALANCE_CHANGED:
+                recordDeposit(event.getMachineId(), event.getAmount());
+                break;
+            default:
+                // Повернення решти не впливає на продажі
+        }
+    }
+
+    private synchronized void recordSale(String machineId, String sku, int units, long revenue) {
+        int bucket = advance();
+        int p = productId(sku);
+        int m = machineId(machineId);
+        productUnits[p][bucket] += units;
+        productUnitsTotal[p] += units;
+        productRevenue[p][bucket] += revenue;
+        productRevenueTotal[p] += revenue;
+        machineRevenue[m][bucket] += revenue;
+        machineRevenueTotal[m] += revenue;
+    }
+
+    private synchronized void recordDeposit(String machineId, long amount) {
+        int bucket = advance();
+        int m = machineId(machineId);
+        machineDeposits[m][bucket] += amount;
+        machineDepositsTotal[m] += amount;
+    }
+
+    // --- Запити ---
+
+    /**
+     * @return Кількість проданих одиниць товару за вікно.
+     */
+    public synchronized long getUnitsSold(String sku) {
+        advance();
+        Integer p = productIds.get(sku);
+        return p == null ? 0 : productUnitsTotal[p];
+    }
+
+    /**
+     * @return Продажі товару по хвилинах, від найстарішої до поточної (довжина - windowMinutes).
+     */
+    public synchronized long[] getSalesPerMinute(String sku) {
+        int bucket = advance();
+        long[] result = new long[window];
+        Integer p = productIds.get(sku);
+        if (p != null) {
+            for (int i = 0; i < window; i++) {
+                result[i] = productUnits[p][(bucket + 1 + i) % window];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Виторг автомата за вікно в копійках.
+     */
+    public synchronized long getRevenue(String machineId) {
+        advance();
+        Integer m = machineIds.get(machineId);
+        return m == null ? 0 : machineRevenueTotal[m];
+    }
+
+    /**
+     * @return Кошти, внесені в баланс автомата за вікно, в копійках (без внесень у
+     *         PurchaseSession, див. опис класу).
+     */
+    public synchronized long getDeposited(String machineId) {
+        advance();
+        Integer m = machineIds.get(machineId);
+        return m == null ? 0 : machineDepositsTotal[m];
+    }
+
+    /**
+     * @return Виторг усіх автоматів за вікно в копійках.
+     */
+    public synchronized long getTotalRevenue() {
+        advance();
+        long total = 0;
+        for (int m = 0; m < machineIds.size(); m++) {
+            total += machineRevenueTotal[m];
+        }
+        return total;
+    }
+
+    /**
+     * @param n Кількість позицій.
+     * @return До n товарів з найбільшою кількістю продажів за вікно, за спаданням.
+     */
+    public synchronized List<Seller> getTopSellers(int n) {
+        advance();
+        if (n <= 0) {
+            return new ArrayList<>();
+        }
+        // Мін-купа розміру n: O(P log n) замість сортування всіх товарів
+        PriorityQueue<Integer> top = new PriorityQueue<>(n + 1, (a, b) -> {
+            int cmp = Long.compare(productUnitsTotal[a], productUnitsTotal[b]);
+            return cmp != 0 ? cmp : skus[b].compareTo(skus[a]);
+        });
+        for (int p = 0; p < productIds.size(); p++) {
+            if (productUnitsTotal[p] <= 0) {
+                continue;
+            }
+            top.add(p);
+            if (top.size() > n) {
+                top.poll();
+            }
+        }
+        Seller[] result = new Seller[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            int p = top.poll();
+            result[i] = new Seller(skus[p], productUnitsTotal[p], productRevenueTotal[p]);
+        }
+        return Arrays.asList(result);
+    }
+
+    // --- Внутрішня логіка ---
+
+    /**
+     * Зсуває вікно до поточної хвилини, віднімаючи від сум кошики, що вийшли з вікна.
+     * @return Індекс кошика поточної хвилини.
+     */
+    private int advance() {
+        long minute = clockMillis.getAsLong() / MINUTE_MILLIS;
+        if (minute > currentMinute) {
+            long from = currentMinute == Long.MIN_VALUE ? minute : Math.max(currentMinute + 1, minute - window + 1);
+            for (long expired = from; expired <= minute; expired++) {
+                clearBucket((int) (expired % window));
+            }
+            currentMinute = minute;
+        }
+        return (int) (currentMinute % window);
+    }
+
+    private void clearBucket(int bucket) {
+        for (int p = 0; p < productIds.size(); p++) {
+            productUnitsTotal[p] -= productUnits[p][bucket];
+            productRevenueTotal[p] -= productRevenue[p][bucket];
+            productUnits[p][bucket] = 0;
+            productRevenue[p][bucket] = 0;
+        }
+        for (int m = 0; m < machineIds.size(); m++) {
+            machineRevenueTotal[m] -= machineRevenue[m][bucket];
+            machineDepositsTotal[m] -= machineDeposits[m][bucket];
+            machineRevenue[m][bucket] = 0;
+            machineDeposits[m][bucket] = 0;
+        }
+    }
+
+    private int productId(String sku) {
+        Integer id = productIds.get(sku);
+        if (id != null) {
+            return id;
+        }
+        int p = productIds.size();
+        if (p == skus.length) {
+            int capacity = p * 2;
+            skus = Arrays.copyOf(skus, capacity);
+            productUnits = Arrays.copyOf(productUnits, capacity);
+            productRevenue = Arrays.copyOf(productRevenue, capacity);
+            productUnitsTotal = Arrays.copyOf(productUnitsTotal, capacity);
+            productRevenueTotal = Arrays.copyOf(productRevenueTotal, capacity);
+        }
+        skus[p] = sku;
+        productUnits[p] = new long[window];
+        productRevenue[p] = new long[window];
+        productIds.put(sku, p);
+        return p;
+    }
+
+    private int machineId(String machineId) {
+        Integer id = machineIds.get(machineId);
+        if (id != null) {
+            return id;
+        }
+        int m = machineIds.size();
+        if (m == machineRevenue.length) {
+            int capacity = m * 2;
+            machineRevenue = Arrays.copyOf(machineRevenue, capacity);
+            machineDeposits = Arrays.copyOf(machineDeposits, capacity);
+            machineRevenueTotal = Arrays.copyOf(machineRevenueTotal, capacity);
+            machineDepositsTotal = Arrays.copyOf(machineDepositsTotal, capacity);
+        }
+        machineRevenue[m] = new long[window];
+        machineDeposits[m] = new long[window];
+        machineIds.put(machineId, m);
+        return m;
+    }
+
+    /**
+     * Позиція рейтингу товарів.
+     */
+    public static class Seller {
+        private final String sku;
+        private final long units;
+        private final long revenue;
+
+        Seller(String sku, long units, long revenue) {
+            this.sku = sku;
+            this.units = units;
+            this.revenue = revenue;
+        }
+
+        public String getSku() { return sku; }
+        public long getUnits() { return units; }
+        /** @return Виторг за вікно в копійках. */
+        public long getRevenue() { return revenue; }
+
+        @Override
+        public String toString() {
+            return sku + ": " + units + " шт., " + Money.format(revenue) + " грн";
+        }
+    }
+}
@@ -1,10 +1,13 @@
 /**
  * Конкретна команда (Command) для вибору продукту.
  * Інкапсулює запит до VendingMachine на вибір продукту з певного слота.
+ * Команда запам'ятовує проданий продукт, тому скасування повертає його у слот,
+ * а ціну - на баланс.
  */
-public class SelectProductCommand implements Command {
+public class SelectProductCommand implements ReversibleCommand {
     private final VendingMachine machine;
     private final int slotNumber;
+    private Product sold; // Продукт, виданий під час execute(); null, якщо продажу не було
 
     public SelectProductCommand(VendingMachine machine, int slotNumber) {
         this.machine = machine;
@@ -13,6 +16,16 @@ public class SelectProductCommand implements Command {
 
     @Override
     public void execute() throws VendingMachineException {
-        machine.selectSlot(slotNumber);
+        sold = machine.selectSlot(slotNumber);
+    }
+
+    @Override
+    public boolean undo() {
+        if (sold == null) {
+            return false;
+        }
+        machine.doReverseSale(slotNumber, sold);
+        sold = null;
+        return true;
     }
 }
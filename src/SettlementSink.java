@@ -0,0 +1,31 @@
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Приймач пакетів розрахунку карткових транзакцій (наприклад, файл або банківський шлюз).
+ * Реалізація має бути ідемпотентною щодо ідентифікаторів транзакцій.
+ */
+public interface SettlementSink {
+    /**
+     * Розраховує пакет транзакцій одного автомата.
+     * @param machineId Ідентифікатор автомата.
+     * @param batch Транзакції пакета.
+     * @throws IOException якщо пакет не вдалося передати; транзакції залишаються в черзі.
+     */
+    void settle(String machineId, List<CardTransaction> batch) throws IOException;
+
+    /**
+     * @param transactionId Ідентифікатор транзакції.
+     * @return true, якщо транзакцію вже розраховано раніше (зокрема до перезапуску).
+     */
+    boolean isSettled(String transactionId);
+
+    /**
+     * Повідомляє, що ці розраховані транзакції вилучено з журналу очікуючих, тому
+     * isSettled для них більше не викликатиметься і реалізація може їх забути.
+     * @param transactionIds Ідентифікатори розрахованих транзакцій.
+     */
+    default void forget(Collection<String> transactionIds) {
+    }
+}
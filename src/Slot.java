@@ -1,11 +1,26 @@
-// Клас, що представляє комірку в автоматі
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Клас, що представляє комірку в автоматі.
+// Кількість товару зберігається в атомарному лічильнику, тому її можна безпечно
+// читати та зменшувати з різних потоків. Підкласи можуть зберігати кількість
+// в іншому місці (див. ColumnarInventory). Змінювати кількість може лише автомат:
+// продаж має пройти через VendingMachine, щоб оновити ProductCatalog і меню.
 public class Slot {
     private Product product;
-    private int quantity;
+    private final AtomicInteger quantity;
 
     public Slot(Product product, int quantity) {
         this.product = product;
-        this.quantity = quantity;
+        this.quantity = new AtomicInteger(quantity);
+    }
+
+    /**
+     * Конструктор для підкласів, які самі зберігають кількість товару.
+     * @param product Продукт слота.
+     */
+    protected Slot(Product product) {
+        this.product = product;
+        this.quantity = null;
     }
 
     public Product getProduct() {
@@ -13,12 +28,45 @@ public class Slot {
     }
 
     public int getQuantity() {
-        return quantity;
+        return quantity.get();
+    }
+
+    /**
+     * Встановлює кількість товару (використовується при відновленні зі знімка).
+     * @param value Нова кількість.
+     */
+    void setQuantity(int value) {
+        quantity.set(value);
+    }
+
+    /**
+     * Атомарно повертає одиницю товару у слот (скасування продажу).
+     */
+    void increaseQuantity() {
+        quantity.incrementAndGet();
+    }
+
+    /**
+     * Зменшує кількість товару на одиницю (наявність уже перевірено під блокуванням слота).
+     */
+    void decreaseQuantity() {
+        tryDecreaseQuantity();
     }
 
-    public void decreaseQuantity() {
-        if (quantity > 0) {
-            quantity--;
+    /**
+     * Атомарно зменшує кількість товару на одиницю, якщо товар є в наявності.
+     * Викликається лише автоматом, який одразу оновлює ProductCatalog.
+     * @return true, якщо одиницю товару вдалося списати, інакше false.
+     */
+    boolean tryDecreaseQuantity() {
+        while (true) {
+            int current = quantity.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (quantity.compareAndSet(current, current - 1)) {
+                return true;
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,19 @@
 /**
- * Стан видачі товару. Перехідний стан, який виконує видачу і одразу ж змінює стан далі.
+ * Стан видачі товару. Перехідний стан: автомат виконує видачу одразу після входу в нього,
+ * після чого таблиця переходів повертає його в HasMoney (є залишок) або Idle.
  */
 public class SoldState implements VendingMachineState {
+    static final SoldState INSTANCE = new SoldState();
 
     @Override
-    public void insertMoney(VendingMachine machine, double amount) {
-        System.out.println("Зачекайте, йде видача товару...");
+    public void insertMoney(VendingMachine machine, long amount) {
+        machine.getDisplay().show("Зачекайте, йде видача товару...");
     }
 
     @Override
-    public void selectProduct(VendingMachine machine, int slotNumber) {
-        System.out.println("Зачекайте, йде видача товару...");
+    public PurchaseOutcome selectProduct(VendingMachine machine, int slotNumber) {
+        machine.getDisplay().show("Зачекайте, йде видача товару...");
+        return PurchaseOutcome.BUSY;
     }
 
     @Override
@@ -19,21 +22,11 @@ public class SoldState implements VendingMachineState {
         if (product != null) {
             // Тут могла б бути логіка фізичної видачі
         }
-
-        // Перевіряємо, чи залишилась решта
-        if (machine.getCurrentBalance() > 0) {
-            // Замість автоматичної видачі решти, перейдемо в стан HasMoney
-            // щоб користувач міг зробити ще одну покупку
-            machine.setCurrentState(machine.getHasMoneyState());
-        } else {
-            // Якщо грошей не залишилось, переходимо в стан очікування
-            machine.setCurrentState(machine.getIdleState());
-        }
     }
 
     @Override
-    public double returnChange(VendingMachine machine) {
-        System.out.println("Зачекайте, йде видача товару...");
+    public long returnChange(VendingMachine machine) {
+        machine.getDisplay().show("Зачекайте, йде видача товару...");
         return 0;
     }
 }
@@ -0,0 +1,289 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Скомпільована таблиця переходів торгового автомата: (стан × подія) → дія, наступний стан.
+ * Таблиця незмінна і спільна для всіх автоматів, тому екземпляр автомата зберігає
+ * лише поточний стан (значення enum), а перехід - це звернення до масиву за індексом.
+ *
+ * Дії переходів виконують об'єкти станів (IdleState, HasMoneyState, SoldState), але
+ * самі стан не змінюють: наступний стан визначає таблиця. Для перехідних станів
+ * (SOLD) задається автоматична подія, яку автомат запускає одразу після входу
+ * в стан - у циклі, а не рекурсивним викликом.
+ *
+ * Дія може відхилити подію, повернувши від'ємний результат (наприклад, вибір товару
+ * без достатніх коштів); тоді стан автомата не змінюється.
+ *
+ * Перед використанням таблиця перевіряється (validate): кожна пара стан × подія
+ * має перехід, кожен стан досяжний з початкового, а автоматичні переходи не утворюють
+ * циклів.
+ *
+ * Behavioral Patterns:
+ * - State: Поведінка автомата залежить від поточного стану, але переходи описані даними.
+ */
+public final class StateTransitionTable {
+
+    /**
+     * Стан автомата. Порядкові номери збігаються з кодами стану у знімках.
+     */
+    public enum State { IDLE, HAS_MONEY, SOLD }
+
+    /**
+     * Подія (тригер), що запускає перехід.
+     */
+    public enum Trigger { INSERT_MONEY, SELECT_PRODUCT, DISPENSE, RETURN_CHANGE }
+
+    /**
+     * Дія переходу.
+     */
+    @FunctionalInterface
+    public interface Action {
+        /**
+         * @param machine Автомат.
+         * @param argument Аргумент події: сума для INSERT_MONEY, номер слота для SELECT_PRODUCT.
+         * @return Результат дії (решта для RETURN_CHANGE, інакше 0); від'ємне значення
+         *         означає, що подію відхилено і стан не змінюється.
+         */
+        long apply(VendingMachine machine, long argument);
+    }
+
+    /**
+     * Перехід: дія та наступний стан. Якщо після дії баланс порожній, використовується
+     * nextWhenEmpty.
+     */
+    public static final class Transition {
+        private final Action action;
+        private final State next;
+        private final State nextWhenEmpty;
+
+        Transition(Action action, State next, State nextWhenEmpty) {
+            this.action = action;
+            this.next = next;
+            this.nextWhenEmpty = nextWhenEmpty;
+        }
+
+        public Action getAction() { return action; }
+
+        /**
+         * @param balance Баланс автомата після дії.
+         * @return Наступний стан.
+         */
+        public State next(long balance) {
+            return balance > 0 ? next : nextWhenEmpty;
+        }
+    }
+
+    private static final State[] STATES = State.values();
+    private static final Trigger[] TRIGGERS = Trigger.values();
+    private static final StateTransitionTable STANDARD = createStandard();
+
+    private final State initial;
+    private final Transition[] transitions; // [state * TRIGGERS.length + trigger]
+    private final Trigger[] automatic; // Автоматична подія для перехідних станів
+
+    private StateTransitionTable(Builder builder) {
+        this.initial = builder.initial;
+        this.transitions = builder.transitions.clone();
+        this.automatic = builder.automatic.clone();
+    }
+
+    /**
+     * @return Стандартна таблиця торгового автомата (спільна для всіх екземплярів).
+     */
+    public static StateTransitionTable standard() {
+        return STANDARD;
+    }
+
+    public State getInitialState() {
+        return initial;
+    }
+
+    /**
+     * @return Перехід для пари стан × подія.
+     */
+    public Transition get(State state, Trigger trigger) {
+        return transitions[state.ordinal() * TRIGGERS.length + trigger.ordinal()];
+    }
+
+    /**
+     * @return Автоматична подія для перехідного стану або null для стійкого.
+     */
+    public Trigger getAutomaticTrigger(State state) {
+        return automatic[state.ordinal()];
+    }
+
+    /**
+     * Перевіряє таблицю.
+     * @return Список знайдених проблем; порожній, якщо таблиця коректна.
+     */
+    public List<String> validate() {
+        return validate(initial, transitions, automatic);
+    }
+
+    private static List<String> validate(State initial, Transition[] transitions, Trigger[] automatic) {
+        List<String> problems = new ArrayList<>();
+        if (initial == null) {
+            problems.add("Не задано початковий стан");
+            return problems;
+        }
+        for (State state : STATES) {
+            for (Trigger trigger : TRIGGERS) {
+                Transition t = transitions[state.ordinal() * TRIGGERS.length + trigger.ordinal()];
+                if (t == null) {
+                    problems.add("Немає переходу " + state + " × " + trigger);
+                } else if (t.action == null || t.next == null || t.nextWhenEmpty == null) {
+                    problems.add("Неповний перехід " + state + " × " + trigger);
+                }
+            }
+        }
+        if (!problems.isEmpty()) {
+            return problems;
+        }
+        // Автоматичні переходи не повинні зациклюватися
+        int[] color = new int[STATES.length];
+        for (State state : STATES) {
+            if (hasAutomaticCycle(state, transitions, automatic, color)) {
+                problems.add("Цикл автоматичних переходів через " + state);
+                break;
+            }
+        }
+        // Усі стани мають бути досяжні з початкового
+        boolean[] reachable = new boolean[STATES.length];
+        reachable[initial.ordinal()] = true;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < transitions.length; i++) {
+                if (reachable[i / TRIGGERS.length]) {
+                    Transition t = transitions[i];
+                    changed |= mark(reachable, t.next) | mark(reachable, t.nextWhenEmpty);
+                }
+            }
+        }
+        for (State state : STATES) {
+            if (!reachable[state.ordinal()]) {
+                problems.add("Стан " + state + " недосяжний");
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Пошук у глибину по автоматичних переходах (0 - не відвідано, 1 - в обробці, 2 - готово).
+     */
+    private static boolean hasAutomaticCycle(State state, Transition[] transitions, Trigger[] automatic, int[] color) {
+        Trigger trigger = automatic[state.ordinal()];
+        if (trigger == null || color[state.ordinal()] == 2) {
+            return false;
+        }
+        if (color[state.ordinal()] == 1) {
+            return true;
+        }
+        color[state.ordinal()] = 1;
+        Transition t = transitions[state.ordinal() * TRIGGERS.length + trigger.ordinal()];
+        boolean cycle = hasAutomaticCycle(t.next, transitions, automatic, color)
+                || hasAutomaticCycle(t.nextWhenEmpty, transitions, automatic, color);
+        color[state.ordinal()] = 2;
+        return cycle;
+    }
+
+    private static boolean mark(boolean[] reachable, State state) {
+        if (reachable[state.ordinal()]) {
+            return false;
+        }
+        reachable[state.ordinal()] = true;
+        return true;
+    }
+
+    private static StateTransitionTable createStandard() {
+        VendingMachineState idle = IdleState.INSTANCE;
+        VendingMachineState hasMoney = HasMoneyState.INSTANCE;
+        VendingMachineState sold = SoldState.INSTANCE;
+        return new Builder(State.IDLE)
+                .on(State.IDLE, Trigger.INSERT_MONEY, insert(idle), State.HAS_MONEY, State.IDLE)
+                .on(State.IDLE, Trigger.SELECT_PRODUCT, select(idle), State.IDLE)
+                .on(State.IDLE, Trigger.DISPENSE, dispense(idle), State.IDLE)
+                .on(State.IDLE, Trigger.RETURN_CHANGE, change(idle), State.IDLE)
+                .on(State.HAS_MONEY, Trigger.INSERT_MONEY, insert(hasMoney), State.HAS_MONEY)
+                .on(State.HAS_MONEY, Trigger.SELECT_PRODUCT, select(hasMoney), State.SOLD)
+                .on(State.HAS_MONEY, Trigger.DISPENSE, dispense(hasMoney), State.HAS_MONEY)
+                .on(State.HAS_MONEY, Trigger.RETURN_CHANGE, change(hasMoney), State.IDLE)
+                .on(State.SOLD, Trigger.INSERT_MONEY, insert(sold), State.SOLD)
+                .on(State.SOLD, Trigger.SELECT_PRODUCT, select(sold), State.SOLD)
+                // Після видачі лишаємось з грошима, якщо є залишок, інакше - очікування
+                .on(State.SOLD, Trigger.DISPENSE, dispense(sold), State.HAS_MONEY, State.IDLE)
+                .on(State.SOLD, Trigger.RETURN_CHANGE, change(sold), State.SOLD)
+                .automatic(State.SOLD, Trigger.DISPENSE)
+                .build();
+    }
+
+    private static Action insert(VendingMachineState state) {
+        return (machine, amount) -> {
+            state.insertMoney(machine, amount);
+            return 0;
+        };
+    }
+
+    private static Action select(VendingMachineState state) {
+        return (machine, slotNumber) -> state.selectProduct(machine, (int) slotNumber).toResultCode();
+    }
+
+    private static Action dispense(VendingMachineState state) {
+        return (machine, unused) -> {
+            state.dispenseProduct(machine);
+            return 0;
+        };
+    }
+
+    private static Action change(VendingMachineState state) {
+        return (machine, unused) -> state.returnChange(machine);
+    }
+
+    /**
+     * Builder для опису таблиці переходів.
+     */
+    public static class Builder {
+        private final State initial;
+        private final Transition[] transitions = new Transition[STATES.length * TRIGGERS.length];
+        private final Trigger[] automatic = new Trigger[STATES.length];
+
+        public Builder(State initial) {
+            this.initial = initial;
+        }
+
+        /**
+         * Задає перехід із фіксованим наступним станом.
+         */
+        public Builder on(State state, Trigger trigger, Action action, State next) {
+            return on(state, trigger, action, next, next);
+        }
+
+        /**
+         * Задає перехід, наступний стан якого залежить від того, чи лишився баланс після дії.
+         */
+        public Builder on(State state, Trigger trigger, Action action, State next, State nextWhenEmpty) {
+            transitions[state.ordinal() * TRIGGERS.length + trigger.ordinal()] = new Transition(action, next, nextWhenEmpty);
+            return this;
+        }
+
+        /**
+         * Позначає стан як перехідний: подія trigger запускається одразу після входу в нього.
+         */
+        public Builder automatic(State state, Trigger trigger) {
+            automatic[state.ordinal()] = trigger;
+            return this;
+        }
+
+        /**
+         * @return Перевірена таблиця.
+         * @throws IllegalStateException якщо таблиця неповна або містить цикли.
+         */
+        public StateTransitionTable build() {
+            List<String> problems = validate(initial, transitions, automatic);
+            if (!problems.isEmpty()) {
+                throw new IllegalStateException("Некоректна таблиця переходів: " + String.join("; ", problems));
+            }
+            return new StateTransitionTable(this);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Спостерігач, що повідомляє про малий залишок товару та наближення кінця терміну
+ * придатності. Перевірки інкрементальні, без періодичного перегляду всіх слотів:
+ * - малий залишок перевіряється на кожну подію продажу за залишком, який несе подія;
+ *   сповіщення надсилається один раз, коли залишок опускається нижче порогу, і знову
+ *   стає можливим після повернення товару або повторного watch() після поповнення;
+ * - терміни придатності зберігаються в черзі з пріоритетом, впорядкованій за днем
+ *   сповіщення, тому checkExpiry() переглядає лише ті записи, час яких настав
+ *   (O(log n) на запис).
+ *
+ * Behavioral Patterns:
+ * - Observer: Отримує події PRODUCT_DISPENSED і SALE_REVERSED.
+ */
+public class StockAlertWatcher implements VendingMachineObserver {
+
+    /**
+     * Тип сповіщення.
+     */
+    public enum AlertType { LOW_STOCK, NEAR_EXPIRY }
+
+    private final int lowStockThreshold;
+    private final int expiryLeadDays;
+    private final Consumer<Alert> listener;
+
+    // Слоти, про які вже надіслано LOW_STOCK (біт = номер слота - 1)
+    private final Map<String, BitSet> lowStock = new ConcurrentHashMap<>();
+    private final PriorityQueue<ExpiryEntry> expiries = new PriorityQueue<>();
+
+    /**
+     * @param lowStockThreshold Сповіщати, коли залишок у слоті менший за це значення.
+     * @param expiryLeadDays За скільки днів до кінця терміну придатності сповіщати.
+     * @param listener Отримувач сповіщень (викликається в потоці, що змінив залишок,
+     *                 або в потоці checkExpiry).
+     */
+    public StockAlertWatcher(int lowStockThreshold, int expiryLeadDays, Consumer<Alert> listener) {
+        if (lowStockThreshold < 0 || expiryLeadDays < 0) {
+            throw new IllegalArgumentException("Поріг і кількість днів не можуть бути від'ємними.");
+        }
+        this.lowStockThreshold = lowStockThreshold;
+        this.expiryLeadDays = expiryLeadDays;
+        this.listener = listener;
+    }
+
+    /**
+     * Починає стежити за автоматом: підписується на його події, ставить терміни
+     * придатності слотів у чергу і одразу сповіщає про слоти з малим залишком.
+     * Повторний виклик (наприклад, після поповнення) перечитує слоти заново.
+     * @param machine Автомат.
+     */
+    public void watch(VendingMachine machine) {
+        String machineId = machine.getMachineId();
+        List<Slot> slots = machine.getSlots();
+        BitSet flags = new BitSet(slots.size());
+        List<Alert> alerts = new ArrayList<>();
+        synchronized (this) {
+            expiries.removeIf(entry -> entry.machineId.equals(machineId));
+            for (int i = 0; i < slots.size(); i++) {
+                Slot slot = slots.get(i);
+                Product product = slot.getProduct();
+                if (product.getExpirationDay() != Product.NO_EXPIRATION) {
+                    expiries.add(new ExpiryEntry(product.getExpirationDay() - expiryLeadDays, machineId, i + 1, product));
+                }
+                int quantity = slot.getQuantity();
+                if (quantity < lowStockThreshold) {
+                    flags.set(i);
+                    alerts.add(new Alert(AlertType.LOW_STOCK, machineId, i + 1, product, quantity, 0));
+                }
+            }
+            lowStock.put(machineId, flags);
+        }
+        machine.removeObserver(this);
+        machine.addObserver(this);
+        alerts.forEach(listener);
+    }
+
+    @Override
+    public void update(VendingMachineEvent event) {
+        VendingMachineEvent.Type type = event.getType();
+        if (type != VendingMachineEvent.Type.PRODUCT_DISPENSED && type != VendingMachineEvent.Type.SALE_REVERSED) {
+            return;
+        }
+        BitSet flags = lowStock.get(event.getMachineId());
+        if (flags == null) {
+            return;
+        }
+        int bit = event.getSlotNumber() - 1;
+        boolean low = event.getRemaining() < lowStockThreshold;
+        synchronized (flags) {
+            if (flags.get(bit) == low) {
+                return;
+            }
+            flags.set(bit, low);
+        }
+        if (low) {
+            listener.accept(new Alert(AlertType.LOW_STOCK, event.getMachineId(), event.getSlotNumber(),
+                    event.getProduct(), event.getRemaining(), 0));
+        }
+    }
+
+    /**
+     * Надсилає сповіщення NEAR_EXPIRY для всіх слотів, день сповіщення яких настав.
+     * Кожен слот сповіщається один раз.
+     * @param today Поточна дата.
+     * @return Кількість надісланих сповіщень.
+     */
+    public int checkExpiry(LocalDate today) {
+        long day = today.toEpochDay();
+        List<Alert> alerts = new ArrayList<>();
+        synchronized (this) {
+            while (!expiries.isEmpty() && expiries.peek().alertDay <= day) {
+                ExpiryEntry entry = expiries.poll();
+                alerts.add(new Alert(AlertType.NEAR_EXPIRY, entry.machineId, entry.slotNumber, entry.product, 0,
+                        (int) (entry.product.getExpirationDay() - day)));
+            }
+        }
+        alerts.forEach(listener);
+        return alerts.size();
+    }
+
+    /**
+     * @return Кількість слотів, терміни придатності яких ще очікують перевірки.
+     */
+    public synchronized int getPendingExpiryChecks() {
+        return expiries.size();
+    }
+
+    /**
+     * Запис черги термінів придатності.
+     */
+    private static final class ExpiryEntry implements Comparable<ExpiryEntry> {
+        private final long alertDay;
+        private final String machineId;
+        private final int slotNumber;
+        private final Product product;
+
+        ExpiryEntry(long alertDay, String machineId, int slotNumber, Product product) {
+            this.alertDay = alertDay;
+            this.machineId = machineId;
+            this.slotNumber = slotNumber;
+            this.product = product;
+        }
+
+        @Override
+        public int compareTo(ExpiryEntry other) {
+            return Long.compare(alertDay, other.alertDay);
+        }
+    }
+
+    /**
+     * Сповіщення про слот.
+     */
+    public static class Alert {
+        private final AlertType type;
+        private final String machineId;
+        private final int slotNumber;
+        private final Product product;
+        private final int remaining;
+        private final int daysLeft;
+
+        Alert(AlertType type, String machineId, int slotNumber, Product product, int remaining, int daysLeft) {
+            this.type = type;
+            this.machineId = machineId;
+            this.slotNumber = slotNumber;
+            this.product = product;
+            this.remaining = remaining;
+            this.daysLeft = daysLeft;
+        }
+
+        public AlertType getType() { return type; }
+        public String getMachineId() { return machineId; }
+        public int getSlotNumber() { return slotNumber; }
+        public Product getProduct() { return product; }
+        /** @return Залишок для LOW_STOCK. */
+        public int getRemaining() { return remaining; }
+        /** @return Днів до кінця терміну для NEAR_EXPIRY (від'ємне, якщо термін уже минув). */
+        public int getDaysLeft() { return daysLeft; }
+
+        @Override
+        public String toString() {
+            if (type == AlertType.LOW_STOCK) {
+                return "[" + machineId + " #" + slotNumber + "] Мало товару '" + product.getName() + "': " + remaining;
+            }
+            return "[" + machineId + " #" + slotNumber + "] Термін придатності '" + product.getName()
+                    + "' закінчується " + product.getExpirationDate() + " (днів: " + daysLeft + ")";
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Заглушка еквайра для тестів і навантажувальних прогонів. Імітує авторизацію
+ * картки з налаштовуваною затримкою і не пише нічого в консоль.
+ */
+public class StubAcquirer implements PaymentStrategy {
+    private final long latencyMillis;
+    private final boolean approve;
+
+    /**
+     * @param latencyMillis Затримка відповіді в мілісекундах.
+     * @param approve Чи схвалює еквайр оплату.
+     */
+    public StubAcquirer(long latencyMillis, boolean approve) {
+        this.latencyMillis = latencyMillis;
+        this.approve = approve;
+    }
+
+    @Override
+    public boolean pay(long amount) {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                // Авторизацію скасовано
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return approve;
+    }
+}
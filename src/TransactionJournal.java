@@ -0,0 +1,321 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Журнал транзакцій автомата з дописуванням у кінець (append-only).
+ * Підключається до VendingMachine як спостерігач і записує кожну подію (внесення,
+ * продаж, решта) у вигляді компактного двійкового запису фіксованої довжини
+ * у файли-сегменти, відображені в пам'ять (memory-mapped). Коли сегмент заповнюється,
+ * журнал переходить до наступного.
+ *
+ * Групова фіксація (group commit): дані скидаються на диск (force) не після кожного
+ * запису, а раз на groupSize записів або при явному sync()/flush()/close(), тому
+ * вартість fsync розподіляється на пакет покупок. Скидання виконує окремий потік
+ * (committer): update() викликається з переходу автомата під його блокуванням і лише
+ * пише запис у пам'ять. Хто потребує надійності (наприклад, перед видачею чека),
+ * викликає sync() і чекає, поки всі попередні записи опиняться на диску.
+ *
+ * Помилка вводу-виводу не передається в автомат: виняток із спостерігача перервав би
+ * перехід посередині (баланс уже змінено, а стан - ні). Журнал записує помилку,
+ * припиняє запис, а sync() після цього кидає IOException.
+ *
+ * Формат запису (32 байти): тип (1 байт), резерв (3 байти), номер слота (int),
+ * сума (long), баланс (long), час у мілісекундах (long). Тип 0 означає кінець даних.
+ */
+public class TransactionJournal implements VendingMachineObserver, AutoCloseable {
+    static final int RECORD_SIZE = 32;
+
+    private static final byte END = 0;
+    private static final byte INSERT = 1;
+    private static final byte SALE = 2;
+    private static final byte SESSION_SALE = 3;
+    private static final byte CHANGE = 4;
+    private static final byte REVERSAL = 5;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int groupSize;
+
+    private final Thread committer;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int segmentIndex;
+    private long appended; // Записи, додані з моменту відкриття
+    private long forced; // Записи, вже скинуті на диск
+    private boolean forceRequested;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Відкриває журнал у каталозі, продовжуючи останній сегмент, якщо він є.
+     * @param directory Каталог для файлів-сегментів.
+     * @param segmentRecords Кількість записів в одному сегменті.
+     * @param groupSize Кількість записів між примусовими скиданнями на диск.
+     * @throws IOException якщо не вдалося створити або відкрити сегмент.
+     */
+    public TransactionJournal(Path directory, int segmentRecords, int groupSize) throws IOException {
+        if (segmentRecords <= 0 || groupSize <= 0) {
+            throw new IllegalArgumentException("Розмір сегмента та групи має бути більшим за 0.");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentRecords * RECORD_SIZE;
+        this.groupSize = groupSize;
+        Files.createDirectories(directory);
+
+        List<Path> segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            openSegment(0);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            openSegment(parseIndex(last));
+            buffer.position(findEnd(buffer));
+        }
+        committer = new Thread(this::commitLoop, "journal-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    @Override
+    public synchronized void update(VendingMachineEvent event) {
+        if (closed || failure != null) {
+            return;
+        }
+        byte type;
+        switch (event.getType()) {
+            case BALANCE_CHANGED: type = INSERT; break;
+            case PRODUCT_DISPENSED: type = event.isSessionPurchase() ? SESSION_SALE : SALE; break;
+            case CHANGE_RETURNED: type = CHANGE; break;
+            case SALE_REVERSED: type = REVERSAL; break;
+            default: return;
+        }
+        try {
+            append(type, event.getSlotNumber(), event.getAmount(), event.getBalance());
+        } catch (IOException | UncheckedIOException e) {
+            fail(e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : (IOException) e);
+        }
+    }
+
+    private void append(byte type, int slotNumber, long amount, long balance) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            // Перехід між сегментами рідкісний: старий сегмент скидається тут, щоб
+            // лічильник forced завжди покривав лише записи поточного буфера
+            buffer.force();
+            forced = appended;
+            channel.close();
+            openSegment(segmentIndex + 1);
+        }
+        int start = buffer.position();
+        buffer.put(start, type);
+        buffer.putInt(start + 4, slotNumber);
+        buffer.putLong(start + 8, amount);
+        buffer.putLong(start + 16, balance);
+        buffer.putLong(start + 24, System.currentTimeMillis());
+        buffer.position(start + RECORD_SIZE);
+        if (++appended - forced >= groupSize && !forceRequested) {
+            forceRequested = true;
+            notifyAll();
+        }
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        System.err.println("[ПОМИЛКА журналу]: " + e);
+        notifyAll();
+    }
+
+    /**
+     * Цикл потоку committer: скидає буфер на диск поза блокуванням журналу, тому
+     * запис нових подій не чекає на fsync.
+     */
+    private void commitLoop() {
+        while (true) {
+            MappedByteBuffer target;
+            long upTo;
+            synchronized (this) {
+                try {
+                    while (!closed && failure == null && !(forceRequested && appended > forced)) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed || failure != null) {
+                    return;
+                }
+                forceRequested = false;
+                target = buffer;
+                upTo = appended;
+            }
+            try {
+                target.force();
+            } catch (UncheckedIOException e) {
+                synchronized (this) {
+                    fail(e.getCause());
+                }
+                return;
+            }
+            synchronized (this) {
+                forced = Math.max(forced, upTo);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Чекає, поки всі записи, додані до виклику, будуть скинуті на диск потоком committer.
+     * @throws IOException якщо запис або скидання журналу не вдалися.
+     * @throws InterruptedException якщо потік перервано під час очікування.
+     */
+    public synchronized void sync() throws IOException, InterruptedException {
+        long target = appended;
+        if (forced < target && !forceRequested) {
+            forceRequested = true;
+            notifyAll();
+        }
+        while (forced < target && failure == null) {
+            wait();
+        }
+        if (failure != null) {
+            throw new IOException("Журнал не записано на диск", failure);
+        }
+    }
+
+    /**
+     * Примусово скидає на диск усі записи поточної групи в потоці, що викликає.
+     */
+    public synchronized void flush() {
+        if (!closed && failure == null && appended > forced) {
+            buffer.force();
+            forced = appended;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                if (failure == null && appended > forced) {
+                    buffer.force();
+                    forced = appended;
+                }
+            } catch (UncheckedIOException e) {
+                failure = e.getCause();
+                throw failure;
+            } finally {
+                notifyAll();
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Відтворює журнал поверх автомата з початковою планограмою (тими самими слотами,
+     * що були на момент запуску журналу): повторює продажі та відновлює баланс.
+     * Спостерігачі автомата під час відтворення не сповіщаються.
+     * @param directory Каталог журналу.
+     * @param machine Автомат для відновлення.
+     * @return Кількість відтворених записів.
+     * @throws IOException якщо не вдалося прочитати сегменти.
+     */
+    public static int replay(Path directory, VendingMachine machine) throws IOException {
+        int records = 0;
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        for (Path segment : listSegments(directory)) {
+            try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                for (int pos = 0; pos + RECORD_SIZE <= data.limit(); pos += RECORD_SIZE) {
+                    byte type = data.get(pos);
+                    if (type == END) {
+                        break;
+                    }
+                    int slotNumber = data.getInt(pos + 4);
+                    long balance = data.getLong(pos + 16);
+                    switch (type) {
+                        case INSERT:
+                            machine.restoreBalance(balance);
+                            break;
+                        case SALE:
+                            machine.restoreSale(slotNumber);
+                            machine.restoreBalance(balance);
+                            break;
+                        case SESSION_SALE:
+                            machine.restoreSale(slotNumber);
+                            break;
+                        case CHANGE:
+                            machine.restoreBalance(0);
+                            break;
+                        case REVERSAL:
+                            machine.restoreQuantity(slotNumber, machine.getSlots().get(slotNumber - 1).getQuantity() + 1);
+                            machine.restoreBalance(balance);
+                            break;
+                        default:
+                            throw new IOException("Пошкоджений запис журналу у " + segment + " на позиції " + pos);
+                    }
+                    records++;
+                }
+            }
+        }
+        return records;
+    }
+
+    // --- Допоміжні методи ---
+
+    private void openSegment(int index) throws IOException {
+        segmentIndex = index;
+        Path path = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private static int findEnd(ByteBuffer data) {
+        int pos = 0;
+        while (pos + RECORD_SIZE <= data.limit() && data.get(pos) != END) {
+            pos += RECORD_SIZE;
+        }
+        return pos;
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private static int parseIndex(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
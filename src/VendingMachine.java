@@ -1,9 +1,13 @@
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 /**
- * Основний клас торгового автомата, реалізований як Singleton.
+ * Основний клас торгового автомата.
  * Він керує слотами з продуктами, балансом та станами.
+ * Кожен екземпляр повністю незалежний, тому багато автоматів можуть працювати
+ * в одній JVM (див. VendingMachineFleet).
  * 
  * GRASP Patterns:
  * - Creator: Створює та керує об'єктами Slot.
@@ -11,96 +15,405 @@ import java.util.List;
  *   решти та перевірки наявності товару.
  * 
  * Creational Patterns:
- * - Singleton: Гарантує існування лише одного екземпляра автомата в системі.
+ * - Singleton: getInstance() повертає автомат за замовчуванням для консольного
+ *   інтерфейсу; для парку автоматів екземпляри створює VendingMachineFleet.
  * 
  * Behavioral Patterns:
  * - State: Керує станами автомата (Idle, HasMoney, Sold). Делегує поведінку
- *   об'єктам стану.
+ *   об'єктам стану, а переходи бере зі спільної StateTransitionTable.
  */
 public class VendingMachine {
-    private static final VendingMachine INSTANCE = new VendingMachine();
+    public static final String DEFAULT_MACHINE_ID = "default";
+    // Таблиця переходів спільна для всіх автоматів (ініціалізується до INSTANCE)
+    private static final StateTransitionTable TRANSITIONS = StateTransitionTable.standard();
+    private static final VendingMachine INSTANCE = new VendingMachine(DEFAULT_MACHINE_ID);
+
+    private final String machineId;
     private List<Slot> slots;
-    private double currentBalance;
-    
-    // State Pattern: Поля для всіх можливих станів
-    private final VendingMachineState idleState;
-    private final VendingMachineState hasMoneyState;
-    private final VendingMachineState soldState;
+    private final ProductCatalog catalog = new ProductCatalog();
+    // volatile, щоб фонові знімки (FleetCheckpointer) бачили актуальні значення
+    private volatile long currentBalance; // Баланс у копійках
     
-    private VendingMachineState currentState;
+    // State Pattern: Поточний стан; переходи - у спільній таблиці TRANSITIONS
+    private volatile StateTransitionTable.State currentState;
+    // Блокування переходів: баланс, стан і залишок змінюються разом під ним
+    private final Object stateLock = new Object();
+    // Номер сесії покупця: збільшується при кожному поверненні решти та reset()
+    private volatile long sessionEpoch;
     private Product productToDispense;
 
     // Observer Pattern: Список спостерігачів
-    private final List<VendingMachineObserver> observers = new ArrayList<>();
+    private final List<VendingMachineObserver> observers = new CopyOnWriteArrayList<>();
+    // Об'єкт події для повторного використання, окремий для кожного потоку
+    private final ThreadLocal<EventScratch> scratchEvent = ThreadLocal.withInitial(EventScratch::new);
+    // Вихід для повідомлень користувачу; за замовчуванням повідомлення відкидаються
+    private volatile DisplaySink display = NoOpDisplaySink.INSTANCE;
+    // Черга команд створюється при першому зверненні
+    private volatile CommandQueue commandQueue;
+    // Метрики вмикаються через MetricsRegistry; без них операції не вимірюються
+    private volatile MachineMetrics metrics;
+    // Останнє зібране меню; перебудовується, коли змінюються слоти або залишки
+    private volatile MenuCache menuCache;
 
-    private VendingMachine() {
+    /**
+     * Створює новий незалежний автомат.
+     * @param machineId Ідентифікатор автомата в парку.
+     */
+    VendingMachine(String machineId) {
+        this.machineId = machineId;
         this.slots = new ArrayList<>();
-        this.currentBalance = 0.0;
-        
-        this.idleState = new IdleState();
-        this.hasMoneyState = new HasMoneyState();
-        this.soldState = new SoldState();
-        this.currentState = idleState;
+        this.currentBalance = 0;
+        this.currentState = TRANSITIONS.getInitialState();
     }
 
     public static VendingMachine getInstance() {
         return INSTANCE;
     }
     
-    // --- Методи, що делегують виклики стану ---
+    // --- Методи, що запускають переходи за таблицею ---
     
-    public void insertMoney(double amount) {
-        currentState.insertMoney(this, amount);
+    public void insertMoney(long amount) {
+        MachineMetrics m = metrics;
+        if (m == null) {
+            fire(StateTransitionTable.Trigger.INSERT_MONEY, amount);
+            return;
+        }
+        long start = System.nanoTime();
+        fire(StateTransitionTable.Trigger.INSERT_MONEY, amount);
+        m.record(MachineMetrics.Operation.INSERT_MONEY, System.nanoTime() - start);
+    }
+
+    /**
+     * Вибір товару. Обгортка над trySelectSlot для коду, що очікує винятків.
+     * Виданий продукт читається під тим самим блокуванням, що й перехід, тому
+     * конкурентна покупка в іншому потоці не може його підмінити.
+     * @param slotNumber Номер слота (починаючи з 1).
+     * @return Виданий продукт.
+     * @throws VendingMachineException якщо слот невірний, товар закінчився або коштів недостатньо.
+     */
+    public Product selectSlot(int slotNumber) throws VendingMachineException {
+        PurchaseOutcome outcome;
+        Product sold;
+        long balance;
+        synchronized (stateLock) {
+            productToDispense = null;
+            outcome = trySelectSlot(slotNumber);
+            sold = productToDispense;
+            balance = currentBalance;
+        }
+        if (!outcome.isSuccess()) {
+            throwFor(outcome, slotNumber, balance);
+        }
+        return sold;
+    }
+
+    /**
+     * Вибір товару без винятків: відмова повертається як заздалегідь створене значення
+     * PurchaseOutcome, тому часті відмови (наприклад, по розпроданому слоту) не розміщують
+     * об'єктів.
+     * @param slotNumber Номер слота (починаючи з 1).
+     * @return SUCCESS або причина відмови.
+     */
+    public PurchaseOutcome trySelectSlot(int slotNumber) {
+        MachineMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        long result = fire(StateTransitionTable.Trigger.SELECT_PRODUCT, slotNumber);
+        PurchaseOutcome outcome = result < 0 ? PurchaseOutcome.fromResultCode(result) : PurchaseOutcome.SUCCESS;
+        if (m != null) {
+            m.recordSelection(MachineMetrics.Operation.SELECT_SLOT, metricSlot(slotNumber), outcome, System.nanoTime() - start);
+        }
+        return outcome;
     }
 
-    public void selectSlot(int slotNumber) throws VendingMachineException {
-        currentState.selectProduct(this, slotNumber);
+    /**
+     * @return Номер слота для метрик або 0, якщо такого слота немає. Стан IDLE відхиляє
+     *         вибір без перевірки номера, тому довільне число не має розширювати метрики.
+     */
+    private int metricSlot(int slotNumber) {
+        return slotNumber >= 1 && slotNumber <= slots.size() ? slotNumber : 0;
     }
     
     public void dispenseProduct() {
-        currentState.dispenseProduct(this);
+        fire(StateTransitionTable.Trigger.DISPENSE, 0);
     }
     
-    public double requestChange() {
-        return currentState.returnChange(this);
+    public long requestChange() {
+        MachineMetrics m = metrics;
+        if (m == null) {
+            return fire(StateTransitionTable.Trigger.RETURN_CHANGE, 0);
+        }
+        long start = System.nanoTime();
+        long change = fire(StateTransitionTable.Trigger.RETURN_CHANGE, 0);
+        m.record(MachineMetrics.Operation.REQUEST_CHANGE, System.nanoTime() - start);
+        return change;
+    }
+
+    /**
+     * Виконує перехід для події, а потім автоматичні переходи перехідних станів (видача
+     * після продажу). Якщо дія відхилила подію, стан не змінюється.
+     */
+    private long fire(StateTransitionTable.Trigger trigger, long argument) {
+        synchronized (stateLock) {
+            StateTransitionTable.Transition transition = TRANSITIONS.get(currentState, trigger);
+            long result = transition.getAction().apply(this, argument);
+            if (result < 0) {
+                return result;
+            }
+            StateTransitionTable.State next = transition.next(currentBalance);
+            StateTransitionTable.Trigger automatic;
+            while ((automatic = TRANSITIONS.getAutomaticTrigger(next)) != null) {
+                transition = TRANSITIONS.get(next, automatic);
+                transition.getAction().apply(this, 0);
+                next = transition.next(currentBalance);
+            }
+            currentState = next;
+            return result;
+        }
+    }
+
+    /**
+     * Виконує reader, поки переходи автомата (і скасування команд) заблоковано, тому
+     * баланс, стан і залишки, прочитані в ньому, узгоджені між собою.
+     * @param reader Код, що читає стан автомата.
+     * @return Результат reader.
+     */
+    <T> T readConsistent(Supplier<T> reader) {
+        synchronized (stateLock) {
+            return reader.get();
+        }
+    }
+
+    /**
+     * Перетворює відмову на відповідний виняток (повідомлення формується лише тут).
+     */
+    private void throwFor(PurchaseOutcome outcome, int slotNumber, long balance) throws VendingMachineException {
+        VendingMachineException exception;
+        switch (outcome) {
+            case INVALID_SLOT:
+                exception = new InvalidSlotException("Невірний номер слота: " + slotNumber);
+                break;
+            case OUT_OF_STOCK:
+                exception = new ProductOutOfStockException("Товар '" + slots.get(slotNumber - 1).getProduct().getName() + "' закінчився.");
+                break;
+            case INSUFFICIENT_FUNDS:
+                long price = slots.get(slotNumber - 1).getProduct().getPrice();
+                exception = new InsufficientFundsException("Недостатньо коштів. Потрібно: " + Money.format(price) + " грн, на балансі: " + Money.format(balance) + " грн.");
+                break;
+            default:
+                // NO_MONEY і BUSY - підказки користувачу, а не помилки
+                return;
+        }
+        MachineMetrics m = metrics;
+        if (m != null) {
+            m.recordException(exception.getClass());
+        }
+        throw exception;
     }
     
     // --- Внутрішні методи, що використовуються станами ---
 
-    void doInsertMoney(double amount) {
+    void doInsertMoney(long amount) {
         if (amount > 0) {
             this.currentBalance += amount;
-            notifyObservers(String.format("Баланс оновлено: %.2f грн", this.currentBalance));
+            if (hasObservers()) {
+                notifyObservers(nextEvent().set(VendingMachineEvent.Type.BALANCE_CHANGED, machineId, 0, null, 0, amount, currentBalance));
+            }
         }
     }
     
-    Product doSelectProduct(int slotNumber) throws VendingMachineException {
+    PurchaseOutcome doSelectProduct(int slotNumber) {
         if (slotNumber <= 0 || slotNumber > slots.size()) {
-            throw new InvalidSlotException("Невірний номер слота: " + slotNumber);
+            return PurchaseOutcome.INVALID_SLOT;
         }
         Slot slot = slots.get(slotNumber - 1);
         if (slot.getQuantity() <= 0) {
-            throw new ProductOutOfStockException("Товар '" + slot.getProduct().getName() + "' закінчився.");
+            return PurchaseOutcome.OUT_OF_STOCK;
         }
         Product product = slot.getProduct();
         if (currentBalance < product.getPrice()) {
-            throw new InsufficientFundsException(String.format("Недостатньо коштів. Потрібно: %.2f грн, на балансі: %.2f грн.", product.getPrice(), currentBalance));
+            return PurchaseOutcome.INSUFFICIENT_FUNDS;
+        }
+        if (!slot.tryDecreaseQuantity()) {
+            return PurchaseOutcome.OUT_OF_STOCK;
         }
+        catalog.onSold(product);
         currentBalance -= product.getPrice();
-        slot.decreaseQuantity();
-        notifyObservers(String.format("Видано '%s'. Залишилось: %d. Баланс: %.2f грн", product.getName(), slot.getQuantity(), currentBalance));
-        return product;
+        if (hasObservers()) {
+            notifyObservers(nextEvent().set(VendingMachineEvent.Type.PRODUCT_DISPENSED, machineId, slotNumber, product, slot.getQuantity(), product.getPrice(), currentBalance));
+        }
+        return PurchaseOutcome.SUCCESS;
     }
     
-    double doReturnChange() {
-        double change = currentBalance;
+    long doReturnChange() {
+        long change = currentBalance;
         currentBalance = 0;
-        if (change > 0) {
-            notifyObservers(String.format("Повернено решту: %.2f грн. Баланс: 0.00 грн", change));
+        sessionEpoch++;
+        if (change > 0 && hasObservers()) {
+            notifyObservers(nextEvent().set(VendingMachineEvent.Type.CHANGE_RETURNED, machineId, 0, null, 0, change, 0));
         }
         return change;
     }
 
+    // --- Компенсація команд (див. ReversibleCommand) ---
+
+    /**
+     * Скасовує внесення грошей: списує суму з балансу.
+     * @param amount Сума в копійках.
+     * @throws InsufficientFundsException якщо внесені кошти вже витрачено.
+     */
+    void doRefundInsert(long amount) throws InsufficientFundsException {
+        synchronized (stateLock) {
+            refundInsert(amount);
+        }
+    }
+
+    private void refundInsert(long amount) throws InsufficientFundsException {
+        if (amount > currentBalance) {
+            throw new InsufficientFundsException("Неможливо скасувати внесення " + Money.format(amount) + " грн: на балансі " + Money.format(currentBalance) + " грн.");
+        }
+        currentBalance -= amount;
+        currentState = currentBalance > 0 ? StateTransitionTable.State.HAS_MONEY : StateTransitionTable.State.IDLE;
+        if (hasObservers()) {
+            notifyObservers(nextEvent().set(VendingMachineEvent.Type.BALANCE_CHANGED, machineId, 0, null, 0, -amount, currentBalance));
+        }
+    }
+
+    /**
+     * Скасовує продаж: повертає одиницю товару у слот і ціну на баланс.
+     * @param slotNumber Номер слота (починаючи з 1).
+     * @param product Проданий продукт.
+     */
+    void doReverseSale(int slotNumber, Product product) {
+        synchronized (stateLock) {
+            reverseSale(slotNumber, product);
+        }
+    }
+
+    private void reverseSale(int slotNumber, Product product) {
+        Slot slot = slots.get(slotNumber - 1);
+        slot.increaseQuantity();
+        catalog.onStockChanged(product, 1);
+        currentBalance += product.getPrice();
+        currentState = StateTransitionTable.State.HAS_MONEY;
+        if (hasObservers()) {
+            notifyObservers(nextEvent().set(VendingMachineEvent.Type.SALE_REVERSED, machineId, slotNumber, product, slot.getQuantity(), product.getPrice(), currentBalance));
+        }
+    }
+
+    // --- Конкурентний режим покупок ---
+
+    /**
+     * Купує товар для окремої сесії покупця. Метод безпечний для виклику з багатьох потоків:
+     * перевірка залишку, списання коштів і зменшення кількості виконуються під блокуванням
+     * конкретного слота, тому покупки з різних слотів ідуть паралельно, а товар
+     * ніколи не продається понад наявну кількість.
+     * @param session Сесія покупця з власним балансом.
+     * @param slotNumber Номер слота (починаючи з 1).
+     * @return Проданий продукт.
+     * @throws VendingMachineException якщо слот невірний, товар закінчився або коштів недостатньо.
+     */
+    public Product purchase(PurchaseSession session, int slotNumber) throws VendingMachineException {
+        PurchaseOutcome outcome = tryPurchase(session, slotNumber);
+        if (!outcome.isSuccess()) {
+            throwFor(outcome, slotNumber, session.getBalance());
+        }
+        return slots.get(slotNumber - 1).getProduct();
+    }
+
+    /**
+     * Конкурентна покупка без винятків (див. purchase).
+     * @param session Сесія покупця з власним балансом.
+     * @param slotNumber Номер слота (починаючи з 1).
+     * @return SUCCESS або причина відмови.
+     */
+    public PurchaseOutcome tryPurchase(PurchaseSession session, int slotNumber) {
+        MachineMetrics m = metrics;
+        if (m == null) {
+            return doPurchase(session, slotNumber);
+        }
+        long start = System.nanoTime();
+        PurchaseOutcome outcome = doPurchase(session, slotNumber);
+        m.recordSelection(MachineMetrics.Operation.PURCHASE, metricSlot(slotNumber), outcome, System.nanoTime() - start);
+        return outcome;
+    }
+
+    private PurchaseOutcome doPurchase(PurchaseSession session, int slotNumber) {
+        if (slotNumber <= 0 || slotNumber > slots.size()) {
+            return PurchaseOutcome.INVALID_SLOT;
+        }
+        Slot slot = slots.get(slotNumber - 1);
+        Product product = slot.getProduct();
+        int remaining;
+        synchronized (slot) {
+            if (slot.getQuantity() <= 0) {
+                return PurchaseOutcome.OUT_OF_STOCK;
+            }
+            if (!session.tryDebit(product.getPrice())) {
+                return PurchaseOutcome.INSUFFICIENT_FUNDS;
+            }
+            slot.decreaseQuantity();
+            catalog.onSold(product);
+            remaining = slot.getQuantity();
+        }
+        if (hasObservers()) {
+            notifyObservers(nextEvent().set(VendingMachineEvent.Type.PRODUCT_DISPENSED, machineId, slotNumber, product, remaining, product.getPrice(), session.getBalance()).forSession());
+        }
+        return PurchaseOutcome.SUCCESS;
+    }
+
+    /**
+     * Резервує одиницю товару до завершення оплати: товар списується зі слота одразу,
+     * тому за час авторизації його не може купити інший покупець. Резерв треба або
+     * завершити (completeReservedPurchase), або скасувати (releaseReservation).
+     * @param slotNumber Номер слота (починаючи з 1).
+     * @return SUCCESS, INVALID_SLOT або OUT_OF_STOCK.
+     */
+    public PurchaseOutcome reserve(int slotNumber) {
+        if (slotNumber <= 0 || slotNumber > slots.size()) {
+            return PurchaseOutcome.INVALID_SLOT;
+        }
+        Slot slot = slots.get(slotNumber - 1);
+        synchronized (slot) {
+            if (!slot.tryDecreaseQuantity()) {
+                return PurchaseOutcome.OUT_OF_STOCK;
+            }
+            catalog.onSold(slot.getProduct());
+        }
+        return PurchaseOutcome.SUCCESS;
+    }
+
+    /**
+     * Повертає зарезервовану одиницю товару у слот (оплату відхилено або вона не вдалася).
+     * @param slotNumber Номер слота, для якого викликався reserve.
+     */
+    public void releaseReservation(int slotNumber) {
+        Slot slot = slots.get(slotNumber - 1);
+        synchronized (slot) {
+            slot.increaseQuantity();
+            catalog.onStockChanged(slot.getProduct(), 1);
+        }
+    }
+
+    /**
+     * Завершує покупку зарезервованого товару: списує ціну з сесії і сповіщає спостерігачів.
+     * Якщо коштів у сесії недостатньо, резерв скасовується.
+     * @param session Сесія покупця з оплаченою сумою.
+     * @param slotNumber Номер слота, для якого викликався reserve.
+     * @return SUCCESS або INSUFFICIENT_FUNDS.
+     */
+    public PurchaseOutcome completeReservedPurchase(PurchaseSession session, int slotNumber) {
+        Slot slot = slots.get(slotNumber - 1);
+        Product product = slot.getProduct();
+        if (!session.tryDebit(product.getPrice())) {
+            releaseReservation(slotNumber);
+            return PurchaseOutcome.INSUFFICIENT_FUNDS;
+        }
+        if (hasObservers()) {
+            notifyObservers(nextEvent().set(VendingMachineEvent.Type.PRODUCT_DISPENSED, machineId, slotNumber, product, slot.getQuantity(), product.getPrice(), session.getBalance()).forSession());
+        }
+        return PurchaseOutcome.SUCCESS;
+    }
+
     // --- Observer Pattern методи ---
 
     public void addObserver(VendingMachineObserver observer) {
@@ -111,45 +424,232 @@ public class VendingMachine {
         observers.remove(observer);
     }
 
-    private void notifyObservers(String message) {
-        for (VendingMachineObserver observer : observers) {
-            observer.update(message);
+    private boolean hasObservers() {
+        return !observers.isEmpty();
+    }
+
+    /**
+     * @return Об'єкт події потоку для повторного використання або новий об'єкт, якщо
+     *         спостерігач викликав автомат під час розсилки (подію, яку ще отримують
+     *         інші спостерігачі, перезаписувати не можна).
+     */
+    private VendingMachineEvent nextEvent() {
+        EventScratch scratch = scratchEvent.get();
+        return scratch.depth == 0 ? scratch.event : new VendingMachineEvent();
+    }
+
+    private void notifyObservers(VendingMachineEvent event) {
+        EventScratch scratch = scratchEvent.get();
+        scratch.depth++;
+        try {
+            for (VendingMachineObserver observer : observers) {
+                observer.update(event);
+            }
+        } finally {
+            scratch.depth--;
         }
     }
 
-    // --- Геттери та Сеттери для станів ---
-    
-    void setCurrentState(VendingMachineState newState) {
-        this.currentState = newState;
+    /**
+     * Подія для повторного використання та глибина вкладеної розсилки в потоці.
+     */
+    private static final class EventScratch {
+        private final VendingMachineEvent event = new VendingMachineEvent();
+        private int depth;
     }
 
-    VendingMachineState getIdleState() { return idleState; }
-    VendingMachineState getHasMoneyState() { return hasMoneyState; }
-    VendingMachineState getSoldState() { return soldState; }
+    // --- Дані для дій станів ---
     
     void setProductToDispense(Product product) { this.productToDispense = product; }
     Product getProductToDispense() { return productToDispense; }
     
     // --- Інші методи ---
     
-    public void addSlot(Slot slot) { slots.add(slot); }
+    public String getMachineId() { return machineId; }
+
+    /**
+     * @return Метрики автомата або null, якщо вони вимкнені.
+     */
+    public MachineMetrics getMetrics() { return metrics; }
+
+    /**
+     * Вмикає (або вимикає, якщо null) збір метрик. Зазвичай викликається з MetricsRegistry.register.
+     */
+    public void setMetrics(MachineMetrics metrics) { this.metrics = metrics; }
+
+    /**
+     * @return Вихід для повідомлень користувачу.
+     */
+    public DisplaySink getDisplay() { return display; }
+
+    /**
+     * Встановлює вихід для повідомлень (наприклад, ConsoleDisplaySink у консольному режимі).
+     * @param display Новий вихід.
+     */
+    public void setDisplay(DisplaySink display) {
+        this.display = display == null ? NoOpDisplaySink.INSTANCE : display;
+    }
+    public void addSlot(Slot slot) {
+        slots.add(slot);
+        catalog.index(slots.size(), slot);
+    }
+
+    /**
+     * @return Індекс продуктів автомата для пошуку за SKU, назвою та типом.
+     */
+    public ProductCatalog getCatalog() { return catalog; }
+
+    /**
+     * @return Черга команд цього автомата (одна на автомат, створюється при першому виклику
+     *         і заново, якщо попередню закрито).
+     */
+    public CommandQueue getCommandQueue() {
+        CommandQueue queue = commandQueue;
+        if (queue == null || queue.isClosed()) {
+            synchronized (this) {
+                queue = commandQueue;
+                if (queue == null || queue.isClosed()) {
+                    queue = new CommandQueue(this, 1024, 64);
+                    commandQueue = queue;
+                }
+            }
+        }
+        return queue;
+    }
     public List<Slot> getSlots() { return slots; }
-    public double getCurrentBalance() { return currentBalance; }
+    public long getCurrentBalance() { return currentBalance; }
     
+    // --- Відновлення стану (журнал, знімки) ---
+
+    /**
+     * Відновлює баланс без сповіщення спостерігачів і встановлює відповідний стан.
+     * @param balance Баланс у копійках.
+     */
+    void restoreBalance(long balance) {
+        this.currentBalance = balance;
+        this.currentState = balance > 0 ? StateTransitionTable.State.HAS_MONEY : StateTransitionTable.State.IDLE;
+    }
+
+    /**
+     * @return Номер поточної сесії покупця. Змінюється, коли повертається решта,
+     *         тобто коли кошти сесії вже видано покупцю.
+     */
+    long getSessionEpoch() {
+        return sessionEpoch;
+    }
+
+    /**
+     * @return Код поточного стану для знімків: 0 - Idle, 1 - HasMoney, 2 - Sold.
+     */
+    int getStateCode() {
+        return currentState.ordinal();
+    }
+
+    /**
+     * Встановлює кількість товару у слоті без сповіщення спостерігачів.
+     * @param slotNumber Номер слота (починаючи з 1).
+     * @param quantity Нова кількість.
+     */
+    void restoreQuantity(int slotNumber, int quantity) {
+        Slot slot = slots.get(slotNumber - 1);
+        int delta = quantity - slot.getQuantity();
+        if (delta != 0) {
+            slot.setQuantity(quantity);
+            catalog.onStockChanged(slot.getProduct(), delta);
+        }
+    }
+
+    /**
+     * Повторює списання однієї одиниці товару зі слота без сповіщення спостерігачів.
+     * @param slotNumber Номер слота (починаючи з 1).
+     * @return true, якщо одиницю товару списано.
+     */
+    boolean restoreSale(int slotNumber) {
+        if (slotNumber <= 0 || slotNumber > slots.size()) {
+            return false;
+        }
+        Slot slot = slots.get(slotNumber - 1);
+        if (!slot.tryDecreaseQuantity()) {
+            return false;
+        }
+        catalog.onSold(slot.getProduct());
+        return true;
+    }
+
     public void reset() {
+        sessionEpoch++;
         slots.clear();
+        catalog.clear();
         currentBalance = 0;
-        currentState = idleState;
+        currentState = TRANSITIONS.getInitialState();
     }
 
     public void displayProducts() {
-        System.out.println("--- Асортимент ---");
-        for (int i = 0; i < slots.size(); i++) {
-            Slot slot = slots.get(i);
-            if(slot.getQuantity() > 0) {
-                System.out.printf("%d. %s | Залишилось: %d%n", (i + 1), slot.getProduct().getDescription(), slot.getQuantity());
+        DisplaySink sink = display;
+        if (sink.isEnabled()) {
+            sink.show(getMenu());
+        }
+    }
+
+    /**
+     * Повертає текст меню: слоти з товаром, їхні описи та залишки. Меню кешується
+     * і збирається заново лише тоді, коли змінився набір слотів або залишок у
+     * якомусь слоті; інакше повторний виклик лише порівнює залишки з кешем і не
+     * форматує рядків. Метод можна використовувати і для віддаленого показу меню.
+     * @return Текст меню.
+     */
+    public String getMenu() {
+        MenuCache cached = menuCache;
+        if (cached != null && cached.isCurrent(slots)) {
+            return cached.text;
+        }
+        MenuCache rebuilt = MenuCache.build(slots);
+        menuCache = rebuilt;
+        return rebuilt.text;
+    }
+
+    /**
+     * Зібране меню разом зі слотами і залишками, для яких його зібрано.
+     */
+    private static final class MenuCache {
+        private final Slot[] slots;
+        private final int[] quantities;
+        private final String text;
+
+        private MenuCache(Slot[] slots, int[] quantities, String text) {
+            this.slots = slots;
+            this.quantities = quantities;
+            this.text = text;
+        }
+
+        boolean isCurrent(List<Slot> current) {
+            if (current.size() != slots.length) {
+                return false;
+            }
+            for (int i = 0; i < slots.length; i++) {
+                Slot slot = current.get(i);
+                if (slot != slots[i] || slot.getQuantity() != quantities[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static MenuCache build(List<Slot> current) {
+            Slot[] slots = current.toArray(new Slot[0]);
+            int[] quantities = new int[slots.length];
+            StringBuilder menu = new StringBuilder("--- Асортимент ---\n");
+            for (int i = 0; i < slots.length; i++) {
+                // Залишок читається один раз, щоб текст збігався зі збереженими залишками
+                int quantity = slots[i].getQuantity();
+                quantities[i] = quantity;
+                if (quantity > 0) {
+                    menu.append(i + 1).append(". ").append(slots[i].getProduct().getDescription())
+                            .append(" | Залишилось: ").append(quantity).append('\n');
+                }
             }
+            menu.append("-----------------");
+            return new MenuCache(slots, quantities, menu.toString());
         }
-        System.out.println("-----------------");
     }
 }
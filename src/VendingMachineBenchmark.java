@@ -0,0 +1,262 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Клас для запуску мікробенчмарків без використання фреймворку JMH.
+ * Кожен сценарій спочатку прогрівається (щоб JIT скомпілював гарячий шлях),
+ * а потім вимірюється час та кількість байтів, розміщених у купі на одну операцію.
+ * Виміри пам'яті використовують com.sun.management.ThreadMXBean.
+ *
+ * Автомати в сценаріях використовують NoOpDisplaySink; консольний вивід на час
+ * вимірювання все одно перенаправляється в порожній потік.
+ */
+public class VendingMachineBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 1_000_000;
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final PrintStream CONSOLE = System.out;
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    // Результати операцій записуються сюди, щоб JIT не вилучив їх як мертвий код
+    private static volatile Object blackhole;
+
+    @FunctionalInterface
+    interface Operation {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Запуск бенчмарків...");
+        System.out.println("--- Один потік ---");
+        Result purchase = measure("purchaseWithoutObservers", purchaseOperation(new VendingMachine("bench")));
+        measure("insertSelectChangeCycle", insertSelectChangeCycle());
+        measure("controllerExecuteCommands", controllerExecuteCommands());
+        measure("rejectedSelectionThrowing", rejectedSelection(true));
+        Result rejected = measure("rejectedSelectionOutcome", rejectedSelection(false));
+        measure("productFactoryCreateDrink", () -> blackhole = ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5));
+        measure("productFactoryCreateFood", () -> blackhole = ProductFactory.createFoodWithExtras("Snickers", Money.hryvnias(18), 50, 250, "2025-12-31"));
+        measure("observerFanOut1", observerFanOut(1, false));
+        measure("observerFanOut8", observerFanOut(8, false));
+        measure("observerFanOut8Rendered", observerFanOut(8, true));
+        measure("menuRebuildAfterSale", menuRender(true));
+        Result menu = measure("menuCached", menuRender(false));
+
+        System.out.println("--- Багато потоків ---");
+        for (int threads : THREAD_COUNTS) {
+            measureConcurrent("purchaseSameSlot", threads, false);
+        }
+        for (int threads : THREAD_COUNTS) {
+            measureConcurrent("purchaseDistinctSlots", threads, true);
+        }
+
+        if (purchase.bytesPerOp >= 1.0) {
+            System.err.println("Покупка без спостерігачів розміщує об'єкти в купі!");
+            System.exit(1);
+        }
+        if (rejected.bytesPerOp >= 1.0) {
+            System.err.println("Відмова через PurchaseOutcome розміщує об'єкти в купі!");
+            System.exit(1);
+        }
+        if (menu.bytesPerOp >= 1.0) {
+            System.err.println("Кешоване меню розміщує об'єкти в купі!");
+            System.exit(1);
+        }
+        System.out.println("Бенчмарки завершено.");
+    }
+
+    // --- Сценарії ---
+
+    /**
+     * Покупка через конкурентний API. Без спостерігачів очікується нуль байтів на операцію.
+     */
+    private static Operation purchaseOperation(VendingMachine machine) {
+        machine.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), Integer.MAX_VALUE));
+        PurchaseSession session = new PurchaseSession();
+        session.deposit(Long.MAX_VALUE / 2);
+        return () -> machine.purchase(session, 1);
+    }
+
+    /**
+     * Повний цикл через стани автомата: insertMoney, selectSlot, requestChange.
+     */
+    private static Operation insertSelectChangeCycle() {
+        VendingMachine machine = new VendingMachine("bench-cycle");
+        machine.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), Integer.MAX_VALUE));
+        long amount = Money.hryvnias(30);
+        return () -> {
+            machine.insertMoney(amount);
+            machine.selectSlot(1);
+            machine.requestChange();
+        };
+    }
+
+    /**
+     * Виконання команд через VendingMachineController.executeCommand.
+     */
+    private static Operation controllerExecuteCommands() {
+        VendingMachine machine = new VendingMachine("bench-commands");
+        machine.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), Integer.MAX_VALUE));
+        VendingMachineController controller = new VendingMachineController(machine);
+        // Історія не приймає той самий екземпляр двічі, тому кожна покупка - нові команди
+        return () -> {
+            controller.executeCommand(new InsertMoneyCommand(machine, Money.hryvnias(25)));
+            controller.executeCommand(new SelectProductCommand(machine, 1));
+        };
+    }
+
+    /**
+     * Повторний вибір розпроданого слота.
+     * @param throwing true - через selectSlot (виняток), false - через trySelectSlot (код результату).
+     */
+    private static Operation rejectedSelection(boolean throwing) {
+        VendingMachine machine = new VendingMachine("bench-rejected");
+        machine.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 0));
+        machine.insertMoney(Money.hryvnias(30));
+        if (throwing) {
+            return () -> {
+                try {
+                    machine.selectSlot(1);
+                } catch (ProductOutOfStockException e) {
+                    blackhole = e;
+                }
+            };
+        }
+        return () -> blackhole = machine.trySelectSlot(1);
+    }
+
+    /**
+     * Розсилка подій кільком синхронним спостерігачам.
+     * @param observers Кількість спостерігачів.
+     * @param render Чи запитує спостерігач текст повідомлення.
+     */
+    private static Operation observerFanOut(int observers, boolean render) {
+        VendingMachine machine = new VendingMachine("bench-observers");
+        AtomicLong sink = new AtomicLong();
+        for (int i = 0; i < observers; i++) {
+            machine.addObserver(render
+                    ? event -> sink.addAndGet(event.getMessage().length())
+                    : event -> sink.addAndGet(event.getAmount()));
+        }
+        return purchaseOperation(machine);
+    }
+
+    /**
+     * Отримання меню автомата з 10 слотами.
+     * @param sell true - перед кожним запитом продається товар (меню перебудовується),
+     *             false - меню не змінюється і повертається з кешу.
+     */
+    private static Operation menuRender(boolean sell) {
+        VendingMachine machine = new VendingMachine("bench-menu");
+        for (int i = 0; i < 10; i++) {
+            machine.addSlot(new Slot(ProductFactory.createDrink("Drink" + i, Money.hryvnias(20 + i), 0.5), Integer.MAX_VALUE));
+        }
+        if (!sell) {
+            return () -> blackhole = machine.getMenu();
+        }
+        PurchaseSession session = new PurchaseSession();
+        session.deposit(Long.MAX_VALUE / 2);
+        return () -> {
+            machine.purchase(session, 1);
+            blackhole = machine.getMenu();
+        };
+    }
+
+    // --- Вимірювання ---
+
+    private static Result measure(String name, Operation operation) throws Exception {
+        System.setOut(DISCARD);
+        Result result;
+        try {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                operation.run();
+            }
+            long threadId = Thread.currentThread().threadId();
+            long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                operation.run();
+            }
+            long elapsed = System.nanoTime() - start;
+            long bytes = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+            result = new Result(MEASURED_ITERATIONS, elapsed, bytes);
+        } finally {
+            System.setOut(CONSOLE);
+        }
+        System.out.printf("%-32s %10.1f нс/оп %10.2f байт/оп%n", name, result.nanosPerOp, result.bytesPerOp);
+        return result;
+    }
+
+    /**
+     * Вимірює пропускну здатність конкурентних покупок з кількох потоків.
+     * @param name Назва сценарію.
+     * @param threads Кількість потоків.
+     * @param distinctSlots true - кожен потік купує зі свого слота, false - усі з одного.
+     */
+    private static void measureConcurrent(String name, int threads, boolean distinctSlots) throws Exception {
+        VendingMachine machine = new VendingMachine("bench-concurrent");
+        int slotCount = distinctSlots ? threads : 1;
+        for (int i = 0; i < slotCount; i++) {
+            machine.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), Integer.MAX_VALUE));
+        }
+        int perThread = MEASURED_ITERATIONS / threads;
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long[] allocated = new long[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            final int slotNumber = distinctSlots ? id + 1 : 1;
+            workers[t] = new Thread(() -> {
+                PurchaseSession session = new PurchaseSession();
+                session.deposit(Long.MAX_VALUE / 2);
+                try {
+                    for (int i = 0; i < WARMUP_ITERATIONS / threads; i++) {
+                        machine.purchase(session, slotNumber);
+                    }
+                    ready.countDown();
+                    start.await();
+                    long bytesBefore = THREADS.getThreadAllocatedBytes(Thread.currentThread().threadId());
+                    for (int i = 0; i < perThread; i++) {
+                        machine.purchase(session, slotNumber);
+                    }
+                    allocated[id] = THREADS.getThreadAllocatedBytes(Thread.currentThread().threadId()) - bytesBefore;
+                } catch (VendingMachineException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            workers[t].start();
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        long operations = (long) perThread * threads;
+        long bytes = 0;
+        for (long b : allocated) {
+            bytes += b;
+        }
+        System.out.printf("%-24s x%-2d %10.0f оп/мс %10.2f байт/оп%n",
+                name, threads, operations * 1_000_000.0 / elapsed, (double) bytes / operations);
+    }
+
+    private static class Result {
+        final double nanosPerOp;
+        final double bytesPerOp;
+
+        Result(long operations, long elapsedNanos, long allocatedBytes) {
+            this.nanosPerOp = (double) elapsedNanos / operations;
+            this.bytesPerOp = (double) allocatedBytes / operations;
+        }
+    }
+}
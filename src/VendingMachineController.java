@@ -1,3 +1,8 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Контролер (Controller) для управління торговим автоматом.
  * Він приймає введення від користувача (або іншого клієнта), створює відповідні
@@ -13,41 +18,116 @@
 public class VendingMachineController {
     private final VendingMachine machine;
     private final PaymentProcessor paymentProcessor;
+    private final CommandHistory history = new CommandHistory(32);
+    // Сесія автомата, до якої належать команди в історії
+    private long historyEpoch;
 
     public VendingMachineController() {
-        this.machine = VendingMachine.getInstance();
-        this.paymentProcessor = new PaymentProcessor();
+        this(VendingMachine.getInstance());
+    }
+
+    /**
+     * Створює контролер для конкретного автомата (наприклад, з VendingMachineFleet).
+     * @param machine Автомат, яким керує контролер.
+     */
+    public VendingMachineController(VendingMachine machine) {
+        this(machine, new PaymentProcessor());
+    }
+
+    /**
+     * @param machine Автомат, яким керує контролер.
+     * @param paymentProcessor Процесор платежів (може бути спільним для кількох автоматів).
+     */
+    public VendingMachineController(VendingMachine machine, PaymentProcessor paymentProcessor) {
+        this.machine = machine;
+        this.paymentProcessor = paymentProcessor;
     }
 
     /**
-     * Виконує передану команду.
+     * Виконує передану команду; команду, яку можна скасувати, записує в історію.
      * @param command Команда для виконання.
+     * @throws IllegalStateException якщо цей екземпляр команди вже є в історії
+     *         (команда не виконується; для повтору потрібен новий екземпляр).
      */
     public void executeCommand(Command command) {
         try {
+            executeAndRecord(command);
+        } catch (VendingMachineException e) {
+            machine.getDisplay().error("[ПОМИЛКА]: " + e.getMessage());
+        }
+    }
+
+    private void executeAndRecord(Command command) throws VendingMachineException {
+        if (!(command instanceof ReversibleCommand)) {
             command.execute();
+            return;
+        }
+        ReversibleCommand reversible = (ReversibleCommand) command;
+        fenceHistory();
+        if (history.contains(reversible)) {
+            throw new IllegalStateException("Команда вже є в історії; для повторного виконання потрібен новий екземпляр.");
+        }
+        command.execute();
+        fenceHistory();
+        history.record(reversible);
+    }
+
+    /**
+     * Скасовує останню виконану команду (наприклад, після збою видачі товару).
+     * Команди, виконані до повернення решти, не скасовуються: кошти тієї сесії вже
+     * видано покупцю, і повернення ціни на баланс дозволило б забрати їх удруге.
+     * @return true, якщо команду скасовано.
+     */
+    public boolean undoLastCommand() {
+        try {
+            fenceHistory();
+            return history.undoLast();
         } catch (VendingMachineException e) {
-            System.err.println("[ПОМИЛКА]: " + e.getMessage());
+            machine.getDisplay().error("[ПОМИЛКА]: " + e.getMessage());
+            return false;
         }
     }
 
+    /**
+     * Очищає історію, якщо після останнього запису автомат повернув решту (сесія завершилась).
+     */
+    private synchronized void fenceHistory() {
+        long epoch = machine.getSessionEpoch();
+        if (epoch != historyEpoch) {
+            history.clear();
+            historyEpoch = epoch;
+        }
+    }
+
+    /**
+     * Ставить команду в чергу автомата. Команди з усіх потоків виконуються по черзі
+     * одним виконавцем (див. CommandQueue) і, як і в executeCommand, записуються в
+     * історію, тож їх можна скасувати через undoLastCommand.
+     * @param command Команда для виконання.
+     * @return Future, що завершується після виконання команди або з її винятком.
+     */
+    public CompletableFuture<Void> submitCommand(Command command) {
+        return machine.getCommandQueue().submit(() -> executeAndRecord(command));
+    }
+
     /**
      * Ініціалізує автомат початковими даними.
      */
     public void initializeVendingMachine() {
         // Використовуємо ProductFactory для створення продуктів
-        Product coke = ProductFactory.createDrink("Coca-Cola", 25.0, 0.5);
-        Product pepsi = ProductFactory.createDrink("Pepsi", 24.5, 0.5);
-        Product snickers = ProductFactory.createFoodWithExtras("Snickers", 18.0, 50, 250, "2025-12-31");
-        Product lays = ProductFactory.createFood("Lays", 32.5, 80);
+        Product coke = ProductFactory.createDrink("Coca-Cola", Money.of(25, 0), 0.5);
+        Product pepsi = ProductFactory.createDrink("Pepsi", Money.of(24, 50), 0.5);
+        Product snickers = ProductFactory.createFoodWithExtras("Snickers", Money.of(18, 0), 50, 250, "2025-12-31");
+        Product lays = ProductFactory.createFood("Lays", Money.of(32, 50), 80);
 
         machine.addSlot(new Slot(coke, 10));
         machine.addSlot(new Slot(pepsi, 5));
         machine.addSlot(new Slot(snickers, 1)); // Спеціально для тестування out of stock
         machine.addSlot(new Slot(lays, 8));
         
-        // Додаємо спостерігача
-        machine.addObserver(new ConsoleDisplayObserver());
+        // Консольний режим: повідомлення виводяться асинхронно, щоб не гальмувати покупки
+        machine.setDisplay(new ConsoleDisplaySink());
+        machine.addObserver(new ConsoleDisplayObserver(machine.getDisplay()));
     }
 
     public VendingMachine getMachine() {
@@ -61,37 +141,186 @@ public class VendingMachineController {
      * @param paymentStrategy стратегія оплати
      */
     public void purchaseProductWithPayment(int slotNumber, PaymentStrategy paymentStrategy) {
-        System.out.println("\n--- Починаємо процес покупки товару №" + slotNumber + " ---");
+        purchase(slotNumber, paymentStrategy);
+    }
+
+    /**
+     * Покупка з оплатою через ланцюжок стратегій процесора платежів.
+     * @param slotNumber номер слота
+     */
+    public void purchaseProductWithPayment(int slotNumber) {
+        purchase(slotNumber, null);
+    }
+
+    private void purchase(int slotNumber, PaymentStrategy paymentStrategy) {
+        DisplaySink display = machine.getDisplay();
+        if (display.isEnabled()) {
+            display.show("\n--- Починаємо процес покупки товару №" + slotNumber + " ---");
+        }
         try {
             // 1. Отримуємо ціну товару (без фактичної видачі)
             if (slotNumber <= 0 || slotNumber > machine.getSlots().size()) {
-                throw new InvalidSlotException("Невірний номер слота.");
+                throw recorded(new InvalidSlotException("Невірний номер слота."));
             }
             Slot slot = machine.getSlots().get(slotNumber - 1);
             if (slot.getQuantity() <= 0) {
-                throw new ProductOutOfStockException("Товар закінчився.");
+                throw recorded(new ProductOutOfStockException("Товар закінчився."));
             }
             
-            double price = slot.getProduct().getPrice();
-            System.out.println("Ціна товару: " + price + " грн.");
+            long price = slot.getProduct().getPrice();
+            if (display.isEnabled()) {
+                display.show("Ціна товару: " + Money.format(price) + " грн.");
+            }
 
-            // 2. Встановлюємо стратегію та обробляємо платіж
-            paymentProcessor.setPaymentStrategy(paymentStrategy);
-            if (paymentProcessor.processPayment(price)) {
+            // 2. Обробляємо платіж обраною стратегією або ланцюжком процесора
+            PaymentProcessor.Result paid = pay(price, paymentStrategy);
+            if (paid == PaymentProcessor.Result.PAID) {
                 // 3. Якщо оплата успішна, вносимо гроші на баланс та видаємо товар
-                System.out.println("Оплата пройшла успішно. Вносимо гроші на баланс автомата...");
+                display.show("Оплата пройшла успішно. Вносимо гроші на баланс автомата...");
                 machine.insertMoney(price);
                 machine.selectSlot(slotNumber);
+            } else if (paid == PaymentProcessor.Result.UNKNOWN) {
+                // Кошти могли бути списані: товар не видаємо і не пропонуємо іншу оплату
+                display.error("Результат оплати невідомий. Зверніться до оператора для звірки.");
             } else {
-                System.out.println("Оплата не вдалася.");
+                display.show("Оплата не вдалася.");
             }
 
         } catch (VendingMachineException e) {
-            System.err.println("[ПОМИЛКА]: " + e.getMessage());
+            display.error("[ПОМИЛКА]: " + e.getMessage());
         } finally {
             // 4. Повертаємо решту, щоб автомат був готовий до наступної операції
             machine.requestChange();
-            System.out.println("--- Процес покупки завершено ---");
+            display.show("--- Процес покупки завершено ---");
+        }
+    }
+
+    /**
+     * Рахує виняток у метриках автомата (якщо вони ввімкнені) перед тим, як його кинути.
+     * @return Той самий виняток.
+     */
+    private <E extends Exception> E recorded(E exception) {
+        MachineMetrics metrics = machine.getMetrics();
+        if (metrics != null) {
+            metrics.recordException(exception.getClass());
+        }
+        return exception;
+    }
+
+    /**
+     * Проводить оплату і, якщо в автоматі ввімкнено метрики, записує її тривалість
+     * та результат за типом стратегії (PaymentProcessor - для ланцюжка).
+     */
+    private PaymentProcessor.Result pay(long price, PaymentStrategy paymentStrategy) {
+        MachineMetrics metrics = machine.getMetrics();
+        if (metrics == null) {
+            return processPayment(price, paymentStrategy);
+        }
+        Class<?> type = paymentStrategy != null ? paymentStrategy.getClass() : PaymentProcessor.class;
+        long start = System.nanoTime();
+        try {
+            PaymentProcessor.Result paid = processPayment(price, paymentStrategy);
+            metrics.recordPayment(type, System.nanoTime() - start,
+                    paid == PaymentProcessor.Result.PAID ? MachineMetrics.PaymentResult.APPROVED
+                            : paid == PaymentProcessor.Result.UNKNOWN ? MachineMetrics.PaymentResult.UNKNOWN
+                            : MachineMetrics.PaymentResult.DECLINED);
+            return paid;
+        } catch (RuntimeException e) {
+            metrics.recordPayment(type, System.nanoTime() - start, MachineMetrics.PaymentResult.FAILED);
+            metrics.recordException(e.getClass());
+            throw e;
         }
     }
+
+    private PaymentProcessor.Result processPayment(long price, PaymentStrategy paymentStrategy) {
+        DisplaySink display = machine.getDisplay();
+        return paymentStrategy != null
+                ? paymentProcessor.processPayment(price, paymentStrategy, display)
+                : paymentProcessor.processPayment(price, display);
+    }
+
+    /**
+     * Асинхронна покупка товару: потік не блокується на час авторизації оплати,
+     * тому контролер може вести багато покупок одночасно. Товар резервується до
+     * авторизації, тому покупцю ніколи не списують гроші за товар, якого вже немає:
+     * якщо товар закінчився, оплата не запускається, а якщо оплату відхилено, резерв
+     * повертається у слот.
+     *
+     * Після тайм-ауту або скасування результат оплати невідомий: кошти могли бути
+     * списані. Тому резерв тримається, доки авторизація справді не завершиться
+     * (AsyncPaymentAdapter.PaymentFuture.outcome()): якщо вона пройшла, товар видається,
+     * інакше резерв повертається у слот. Скасування повернутої future скасовує оплату.
+     * @param slotNumber номер слота
+     * @param paymentStrategy асинхронна стратегія оплати
+     * @return Future з проданим продуктом; null, якщо оплату відхилено. Завершується винятком
+     *         VendingMachineException (слот невірний, товар закінчився) або TimeoutException.
+     */
+    public CompletableFuture<Product> purchaseProductWithPaymentAsync(int slotNumber, AsyncPaymentStrategy paymentStrategy) {
+        PurchaseOutcome reserved = machine.reserve(slotNumber);
+        if (reserved == PurchaseOutcome.INVALID_SLOT) {
+            return CompletableFuture.failedFuture(new InvalidSlotException("Невірний номер слота: " + slotNumber));
+        }
+        if (reserved == PurchaseOutcome.OUT_OF_STOCK) {
+            return CompletableFuture.failedFuture(new ProductOutOfStockException("Товар закінчився."));
+        }
+        Product product = machine.getSlots().get(slotNumber - 1).getProduct();
+        long price = product.getPrice();
+        MachineMetrics metrics = machine.getMetrics();
+        // Час беремо до виклику payAsync: стратегія може виконати частину роботи синхронно
+        long start = metrics != null ? System.nanoTime() : 0;
+        CompletableFuture<Boolean> started;
+        try {
+            started = paymentStrategy.payAsync(price);
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Boolean> source = started;
+        // Справжній результат авторизації; для інших стратегій - сама future оплати
+        CompletableFuture<Boolean> outcome = source instanceof AsyncPaymentAdapter.PaymentFuture
+                ? ((AsyncPaymentAdapter.PaymentFuture) source).outcome() : source;
+        CompletableFuture<Boolean> payment = source;
+        if (metrics != null) {
+            payment = payment.whenComplete((paid, error) -> metrics.recordPayment(paymentStrategy.getClass(),
+                    System.nanoTime() - start,
+                    error instanceof TimeoutException || error instanceof CancellationException
+                            ? MachineMetrics.PaymentResult.UNKNOWN
+                            : error != null ? MachineMetrics.PaymentResult.FAILED
+                            : paid ? MachineMetrics.PaymentResult.APPROVED : MachineMetrics.PaymentResult.DECLINED));
+        }
+        // Резерв вирішується в окремій стадії: вона виконується, навіть якщо покупку вже скасовано
+        CompletableFuture<Product> purchase = new CompletableFuture<>();
+        payment.whenComplete((paid, error) -> {
+            if (error == null) {
+                if (!paid) {
+                    machine.releaseReservation(slotNumber);
+                    purchase.complete(null);
+                    return;
+                }
+                completeReserved(slotNumber, price);
+                purchase.complete(product);
+                return;
+            }
+            // Відповіді не дочекались: резерв вирішується, коли авторизація справді завершиться
+            outcome.whenComplete((finalPaid, finalError) -> {
+                if (finalError == null && finalPaid) {
+                    completeReserved(slotNumber, price);
+                } else {
+                    machine.releaseReservation(slotNumber);
+                }
+            });
+            purchase.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+        });
+        purchase.whenComplete((result, error) -> {
+            if (error instanceof CancellationException) {
+                source.cancel(true);
+            }
+        });
+        return purchase;
+    }
+
+    private void completeReserved(int slotNumber, long price) {
+        PurchaseSession session = new PurchaseSession();
+        session.deposit(price);
+        machine.completeReservedPurchase(session, slotNumber);
+    }
 }
@@ -0,0 +1,167 @@
+/**
+ * Типізована подія торгового автомата, яку отримують спостерігачі (Observer).
+ * Містить структуровані дані про подію; текстове повідомлення для дисплея
+ * формується лише тоді, коли його запитують через getMessage().
+ *
+ * Автомат повторно використовує об'єкти подій, щоб не розміщувати нові об'єкти
+ * на кожну покупку. Тому подія, отримана в update(), дійсна лише під час виклику;
+ * спостерігач, який хоче зберегти її довше, має зробити copy(). Якщо спостерігач
+ * під час update() звертається до автомата, вкладена подія створюється новим
+ * об'єктом, тому інші спостерігачі отримують поточну подію незмінною.
+ */
+public class VendingMachineEvent {
+
+    /**
+     * Тип події.
+     */
+    public enum Type {
+        /** Змінився баланс (внесено гроші). */
+        BALANCE_CHANGED,
+        /** Видано товар. */
+        PRODUCT_DISPENSED,
+        /** Повернено решту. */
+        CHANGE_RETURNED,
+        /** Продаж скасовано: товар повернено у слот, ціну - на баланс. */
+        SALE_REVERSED
+    }
+
+    private Type type;
+    private String machineId;
+    private int slotNumber;
+    private Product product;
+    private int remaining;
+    private long amount;
+    private long balance;
+    private boolean sessionPurchase;
+    private String message; // Кешоване повідомлення, формується ліниво
+
+    VendingMachineEvent() {
+    }
+
+    private VendingMachineEvent(Type type, String machineId, int slotNumber, Product product,
+                                int remaining, long amount, long balance) {
+        set(type, machineId, slotNumber, product, remaining, amount, balance);
+    }
+
+    /**
+     * Перезаписує дані події для повторного використання об'єкта.
+     * @return Цей самий об'єкт.
+     */
+    VendingMachineEvent set(Type type, String machineId, int slotNumber, Product product,
+                            int remaining, long amount, long balance) {
+        this.type = type;
+        this.machineId = machineId;
+        this.slotNumber = slotNumber;
+        this.product = product;
+        this.remaining = remaining;
+        this.amount = amount;
+        this.balance = balance;
+        this.sessionPurchase = false;
+        this.message = null;
+        return this;
+    }
+
+    /**
+     * Позначає подію як покупку через PurchaseSession: баланс у ній - це баланс сесії,
+     * а не автомата.
+     * @return Цей самий об'єкт.
+     */
+    VendingMachineEvent forSession() {
+        this.sessionPurchase = true;
+        return this;
+    }
+
+    /**
+     * Створює незалежну копію події, яку можна зберігати після повернення з update().
+     * @return Копія події.
+     */
+    public VendingMachineEvent copy() {
+        VendingMachineEvent copy = new VendingMachineEvent(type, machineId, slotNumber, product, remaining, amount, balance);
+        copy.sessionPurchase = sessionPurchase;
+        copy.message = message;
+        return copy;
+    }
+
+    /**
+     * Подія внесення грошей.
+     * @param machineId Ідентифікатор автомата.
+     * @param amount Внесена сума в копійках.
+     * @param balance Баланс після внесення.
+     * @return Нова подія.
+     */
+    public static VendingMachineEvent balanceChanged(String machineId, long amount, long balance) {
+        return new VendingMachineEvent(Type.BALANCE_CHANGED, machineId, 0, null, 0, amount, balance);
+    }
+
+    /**
+     * Подія видачі товару.
+     * @param machineId Ідентифікатор автомата.
+     * @param slotNumber Номер слота (починаючи з 1).
+     * @param product Виданий продукт.
+     * @param remaining Залишок товару у слоті.
+     * @param balance Баланс після покупки.
+     * @return Нова подія.
+     */
+    public static VendingMachineEvent productDispensed(String machineId, int slotNumber, Product product,
+                                                       int remaining, long balance) {
+        return new VendingMachineEvent(Type.PRODUCT_DISPENSED, machineId, slotNumber, product,
+                remaining, product.getPrice(), balance);
+    }
+
+    /**
+     * Подія повернення решти.
+     * @param machineId Ідентифікатор автомата.
+     * @param change Сума решти в копійках.
+     * @return Нова подія.
+     */
+    public static VendingMachineEvent changeReturned(String machineId, long change) {
+        return new VendingMachineEvent(Type.CHANGE_RETURNED, machineId, 0, null, 0, change, 0);
+    }
+
+    public Type getType() { return type; }
+    public String getMachineId() { return machineId; }
+    /** @return Номер слота для PRODUCT_DISPENSED і SALE_REVERSED, інакше 0. */
+    public int getSlotNumber() { return slotNumber; }
+    /** @return Продукт для PRODUCT_DISPENSED і SALE_REVERSED, інакше null. */
+    public Product getProduct() { return product; }
+    public int getRemaining() { return remaining; }
+    /** @return Сума події в копійках: внесено (від'ємна при скасуванні внесення), ціна товару або решта. */
+    public long getAmount() { return amount; }
+    public long getBalance() { return balance; }
+    /** @return true, якщо подія сталася в конкурентному режимі (баланс належить сесії покупця). */
+    public boolean isSessionPurchase() { return sessionPurchase; }
+
+    /**
+     * Повертає текстове повідомлення для дисплея. Рядок формується при першому
+     * виклику і кешується до наступного повторного використання події.
+     * @return Рядок з описом події.
+     */
+    public String getMessage() {
+        if (message == null) {
+            message = render();
+        }
+        return message;
+    }
+
+    private String render() {
+        switch (type) {
+            case BALANCE_CHANGED:
+                return "Баланс оновлено: " + Money.format(balance) + " грн";
+            case PRODUCT_DISPENSED:
+                return "Видано '" + product.getName() + "'. Залишилось: " + remaining
+                        + ". Баланс: " + Money.format(balance) + " грн";
+            case CHANGE_RETURNED:
+                return "Повернено решту: " + Money.format(amount) + " грн. Баланс: 0.00 грн";
+            case SALE_REVERSED:
+                return "Продаж '" + product.getName() + "' скасовано. Залишилось: " + remaining
+                        + ". Баланс: " + Money.format(balance) + " грн";
+            default:
+                throw new IllegalStateException("Невідомий тип події: " + type);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
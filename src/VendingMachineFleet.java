@@ -0,0 +1,81 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Реєстр парку торгових автоматів. Зберігає багато незалежних екземплярів
+ * VendingMachine за їхнім ідентифікатором.
+ * Кожен автомат має власні слоти, баланс і стан, а сам реєстр побудований на
+ * ConcurrentHashMap без глобального блокування, тому навантаження на один автомат
+ * не блокує роботу інших.
+ *
+ * GRASP Patterns:
+ * - Creator: Створює екземпляри VendingMachine та керує їхнім життєвим циклом.
+ */
+public class VendingMachineFleet {
+    private final ConcurrentMap<String, VendingMachine> machines = new ConcurrentHashMap<>();
+
+    /**
+     * Повертає автомат з вказаним ідентифікатором, створюючи його за потреби.
+     * @param machineId Ідентифікатор автомата.
+     * @return Автомат парку.
+     */
+    public VendingMachine getOrCreate(String machineId) {
+        if (machineId == null) {
+            throw new IllegalArgumentException("Ідентифікатор автомата не може бути null.");
+        }
+        return machines.computeIfAbsent(machineId, VendingMachine::new);
+    }
+
+    /**
+     * Повертає автомат з вказаним ідентифікатором.
+     * @param machineId Ідентифікатор автомата.
+     * @return Автомат або null, якщо такого немає в парку.
+     */
+    public VendingMachine get(String machineId) {
+        return machines.get(machineId);
+    }
+
+    /**
+     * Видаляє автомат з парку.
+     * @param machineId Ідентифікатор автомата.
+     * @return Видалений автомат або null.
+     */
+    public VendingMachine remove(String machineId) {
+        return machines.remove(machineId);
+    }
+
+    public boolean contains(String machineId) {
+        return machines.containsKey(machineId);
+    }
+
+    public int size() {
+        return machines.size();
+    }
+
+    /**
+     * Шукає автомати парку, у яких товар з вказаним SKU є в наявності.
+     * Перевірка кожного автомата виконується за O(1) через його ProductCatalog.
+     * @param sku Артикул товару.
+     * @return Список автоматів, де товар є в наявності.
+     */
+    public List<VendingMachine> findMachinesWithStock(String sku) {
+        List<VendingMachine> result = new ArrayList<>();
+        for (VendingMachine machine : machines.values()) {
+            if (machine.getCatalog().getStockBySku(sku) > 0) {
+                result.add(machine);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Незмінне представлення всіх автоматів парку.
+     */
+    public Collection<VendingMachine> getMachines() {
+        return Collections.unmodifiableCollection(machines.values());
+    }
+}
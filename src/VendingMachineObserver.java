@@ -5,7 +5,7 @@
 public interface VendingMachineObserver {
     /**
      * Метод, що викликається, коли в автоматі відбулася подія.
-     * @param message Повідомлення про подію.
+     * @param event Типізована подія автомата.
      */
-    void update(String message);
+    void update(VendingMachineEvent event);
 }
@@ -1,23 +1,25 @@
 /**
  * Інтерфейс для патерну State. Визначає дії, які може виконувати торговий автомат,
  * і реалізація яких залежить від поточного стану автомата.
+ * Реалізації не мають полів і спільні для всіх автоматів; вони лише виконують дію,
+ * а наступний стан визначає StateTransitionTable.
  */
 public interface VendingMachineState {
     
     /**
      * Внесення грошей в автомат.
      * @param machine Контекст (сам автомат).
-     * @param amount Сума для внесення.
+     * @param amount Сума для внесення в копійках.
      */
-    void insertMoney(VendingMachine machine, double amount);
+    void insertMoney(VendingMachine machine, long amount);
     
     /**
      * Вибір продукту.
      * @param machine Контекст (сам автомат).
      * @param slotNumber Номер обраного слота.
-     * @throws VendingMachineException якщо виникає помилка під час вибору.
+     * @return SUCCESS, якщо товар продано, інакше причина відмови.
      */
-    void selectProduct(VendingMachine machine, int slotNumber) throws VendingMachineException;
+    PurchaseOutcome selectProduct(VendingMachine machine, int slotNumber);
     
     /**
      * Видача продукту.
@@ -28,7 +30,7 @@ public interface VendingMachineState {
     /**
      * Повернення решти.
      * @param machine Контекст (сам автомат).
-     * @return Сума решти.
+     * @return Сума решти в копійках.
      */
-    double returnChange(VendingMachine machine);
+    long returnChange(VendingMachine machine);
 }
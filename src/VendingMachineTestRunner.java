@@ -15,6 +15,30 @@ public class VendingMachineTestRunner {
         runTest("testProductOutOfStockException");
         runTest("testInvalidSlotException");
         runTest("testReturnChange");
+        runTest("testFleetMachinesAreIndependent");
+        runTest("testConcurrentPurchaseNoOversell");
+        runTest("testMoneyParseAndFormat");
+        runTest("testAsyncEventBusBackpressure");
+        runTest("testProductCatalogIndex");
+        runTest("testProductFactoryInterning");
+        runTest("testColumnarInventory");
+        runTest("testTransactionJournalReplay");
+        runTest("testFleetSnapshotAndDelta");
+        runTest("testPlanogramLoaderCsvAndBinary");
+        runTest("testAsyncPaymentConcurrencyAndTimeout");
+        runTest("testCardSettlementPipeline");
+        runTest("testPaymentRetryAndCircuitBreaker");
+        runTest("testCommandQueueSingleWriter");
+        runTest("testCommandUndoAndHistory");
+        runTest("testStateTransitionTable");
+        runTest("testDisplaySinks");
+        runTest("testPurchaseOutcomeApi");
+        runTest("testMetricsRegistry");
+        runTest("testSalesAnalyticsObserver");
+        runTest("testRestockPlanner");
+        runTest("testStockAlertWatcher");
+        runTest("testCachedMenu");
+        runTest("testReentrantObserverEvents");
         System.out.println("Всі тести успішно пройдені!");
     }
 
@@ -29,6 +53,30 @@ public class VendingMachineTestRunner {
                 case "testProductOutOfStockException": testProductOutOfStockException(); break;
                 case "testInvalidSlotException": testInvalidSlotException(); break;
                 case "testReturnChange": testReturnChange(); break;
+                case "testFleetMachinesAreIndependent": testFleetMachinesAreIndependent(); break;
+                case "testConcurrentPurchaseNoOversell": testConcurrentPurchaseNoOversell(); break;
+                case "testMoneyParseAndFormat": testMoneyParseAndFormat(); break;
+                case "testAsyncEventBusBackpressure": testAsyncEventBusBackpressure(); break;
+                case "testProductCatalogIndex": testProductCatalogIndex(); break;
+                case "testProductFactoryInterning": testProductFactoryInterning(); break;
+                case "testColumnarInventory": testColumnarInventory(); break;
+                case "testTransactionJournalReplay": testTransactionJournalReplay(); break;
+                case "testFleetSnapshotAndDelta": testFleetSnapshotAndDelta(); break;
+                case "testPlanogramLoaderCsvAndBinary": testPlanogramLoaderCsvAndBinary(); break;
+                case "testAsyncPaymentConcurrencyAndTimeout": testAsyncPaymentConcurrencyAndTimeout(); break;
+                case "testCardSettlementPipeline": testCardSettlementPipeline(); break;
+                case "testPaymentRetryAndCircuitBreaker": testPaymentRetryAndCircuitBreaker(); break;
+                case "testCommandQueueSingleWriter": testCommandQueueSingleWriter(); break;
+                case "testCommandUndoAndHistory": testCommandUndoAndHistory(); break;
+                case "testStateTransitionTable": testStateTransitionTable(); break;
+                case "testDisplaySinks": testDisplaySinks(); break;
+                case "testPurchaseOutcomeApi": testPurchaseOutcomeApi(); break;
+                case "testMetricsRegistry": testMetricsRegistry(); break;
+                case "testSalesAnalyticsObserver": testSalesAnalyticsObserver(); break;
+                case "testRestockPlanner": testRestockPlanner(); break;
+                case "testStockAlertWatcher": testStockAlertWatcher(); break;
+                case "testCachedMenu": testCachedMenu(); break;
+                case "testReentrantObserverEvents": testReentrantObserverEvents(); break;
             }
             System.out.println("OK");
         } catch (AssertionError e) {
@@ -45,25 +93,25 @@ public class VendingMachineTestRunner {
     private static void setUp() {
         machine = VendingMachine.getInstance();
         machine.reset();
-        machine.addSlot(new Slot(ProductFactory.createDrink("Coke", 25.0, 0.5), 5));
-        machine.addSlot(new Slot(ProductFactory.createFood("Snickers", 18.0, 50), 0));
+        machine.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 5));
+        machine.addSlot(new Slot(ProductFactory.createFood("Snickers", Money.hryvnias(18), 50), 0));
     }
 
     private static void testSuccessfulPurchase() throws VendingMachineException {
-        machine.insertMoney(30.0);
+        machine.insertMoney(Money.hryvnias(30));
         machine.selectSlot(1);
-        assertEquals(5.0, machine.getCurrentBalance());
+        assertEquals(Money.hryvnias(5), machine.getCurrentBalance());
         assertEquals(4, machine.getSlots().get(0).getQuantity());
     }
 
     private static void testPurchaseWithExactAmount() throws VendingMachineException {
-        machine.insertMoney(25.0);
+        machine.insertMoney(Money.hryvnias(25));
         machine.selectSlot(1);
-        assertEquals(0.0, machine.getCurrentBalance());
+        assertEquals(Money.hryvnias(0), machine.getCurrentBalance());
     }
 
     private static void testInsufficientFundsException() {
-        machine.insertMoney(10.0);
+        machine.insertMoney(Money.hryvnias(10));
         try {
             machine.selectSlot(1);
             throw new AssertionError("Очікувався InsufficientFundsException");
@@ -72,11 +120,11 @@ public class VendingMachineTestRunner {
         } catch (VendingMachineException e) {
             throw new AssertionError("Очікувався інший тип винятку");
         }
-        assertEquals(10.0, machine.getCurrentBalance());
+        assertEquals(Money.hryvnias(10), machine.getCurrentBalance());
     }
 
     private static void testProductOutOfStockException() {
-        machine.insertMoney(50.0);
+        machine.insertMoney(Money.hryvnias(50));
         try {
             machine.selectSlot(2);
             throw new AssertionError("Очікувався ProductOutOfStockException");
@@ -88,15 +136,1351 @@ public class VendingMachineTestRunner {
     }
 
     private static void testInvalidSlotException() throws VendingMachineException {
-        machine.insertMoney(50.0);
+        machine.insertMoney(Money.hryvnias(50));
         assertThrows(InvalidSlotException.class, () -> machine.selectSlot(99));
         assertThrows(InvalidSlotException.class, () -> machine.selectSlot(0));
     }
 
     private static void testReturnChange() {
-        machine.insertMoney(50.0);
+        machine.insertMoney(Money.hryvnias(50));
         machine.requestChange();
-        assertEquals(0.0, machine.getCurrentBalance());
+        assertEquals(Money.hryvnias(0), machine.getCurrentBalance());
+    }
+
+    private static void testFleetMachinesAreIndependent() throws VendingMachineException {
+        VendingMachineFleet fleet = new VendingMachineFleet();
+        VendingMachine first = fleet.getOrCreate("A-1");
+        VendingMachine second = fleet.getOrCreate("B-2");
+        assertTrue(first == fleet.getOrCreate("A-1"), "Очікувався той самий екземпляр для A-1");
+        assertTrue(first != second, "Автомати парку мають бути різними екземплярами");
+        assertEquals(2, fleet.size());
+
+        first.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 3));
+        second.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 3));
+        first.insertMoney(Money.hryvnias(25));
+        first.selectSlot(1);
+        assertEquals(2, first.getSlots().get(0).getQuantity());
+        assertEquals(3, second.getSlots().get(0).getQuantity());
+        assertEquals(Money.hryvnias(0), second.getCurrentBalance());
+    }
+
+    private static void testConcurrentPurchaseNoOversell() throws Exception {
+        final int threads = 16;
+        final int attemptsPerThread = 500;
+        final int stockPerSlot = 1000;
+        machine.reset();
+        machine.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), stockPerSlot));
+        machine.addSlot(new Slot(ProductFactory.createFood("Snickers", Money.hryvnias(18), 50), stockPerSlot));
+
+        PurchaseSession[] sessions = new PurchaseSession[threads];
+        int[] sold = new int[threads];
+        Thread[] workers = new Thread[threads];
+        java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            sessions[id] = new PurchaseSession();
+            sessions[id].deposit(Money.hryvnias(1_000_000));
+            workers[id] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    try {
+                        machine.purchase(sessions[id], (i + id) % 2 + 1);
+                        sold[id]++;
+                    } catch (VendingMachineException e) {
+                        // Товар закінчився - очікувано під кінець тесту
+                    }
+                }
+            });
+            workers[id].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        int totalSold = 0;
+        long totalSpent = 0;
+        for (int t = 0; t < threads; t++) {
+            totalSold += sold[t];
+            totalSpent += Money.hryvnias(1_000_000) - sessions[t].getBalance();
+        }
+        assertEquals(2 * stockPerSlot, totalSold);
+        assertEquals(0, machine.getSlots().get(0).getQuantity());
+        assertEquals(0, machine.getSlots().get(1).getQuantity());
+        assertEquals(stockPerSlot * Money.hryvnias(25 + 18), totalSpent);
+    }
+
+    private static void testMoneyParseAndFormat() {
+        assertEquals(Money.of(24, 50), Money.parse("24.5"));
+        assertEquals(Money.of(24, 50), Money.parse("24,50"));
+        assertEquals(Money.of(0, 5), Money.parse("0.05"));
+        assertEquals(Money.hryvnias(30), Money.parse("30"));
+        assertTrue("24.50".equals(Money.format(Money.of(24, 50))), "Невірне форматування 24.50");
+        assertTrue("0.05".equals(Money.format(5)), "Невірне форматування 0.05");
+        assertTrue("-0.05".equals(Money.format(-5)), "Невірне форматування -0.05");
+        assertTrue("-92233720368547758.08".equals(Money.format(Long.MIN_VALUE)),
+                "Невірне форматування Long.MIN_VALUE");
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.234"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+
+        // 0.1 + 0.2 у копійках складається точно, без похибки double
+        machine.insertMoney(Money.parse("0.1"));
+        machine.insertMoney(Money.parse("0.2"));
+        assertEquals(Money.parse("0.3"), machine.getCurrentBalance());
+    }
+
+    private static void testAsyncEventBusBackpressure() throws Exception {
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        java.util.List<VendingMachineEvent> received = new java.util.concurrent.CopyOnWriteArrayList<>();
+        VendingMachineObserver slowObserver = event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(event);
+        };
+
+        AsyncEventBus bus = new AsyncEventBus(4, 2, AsyncEventBus.BackpressurePolicy.DROP);
+        bus.subscribe(slowObserver);
+        machine.addObserver(bus);
+        try {
+            // Повільний спостерігач не повинен блокувати внесення грошей
+            for (int i = 0; i < 20; i++) {
+                machine.insertMoney(Money.hryvnias(1));
+            }
+            assertEquals(Money.hryvnias(20), machine.getCurrentBalance());
+        } finally {
+            machine.removeObserver(bus);
+            release.countDown();
+            bus.close();
+        }
+
+        AsyncEventBus.ObserverLag lag = bus.getLagMetrics().get(0);
+        assertEquals(20L, lag.getPublished());
+        assertTrue(lag.getDropped() > 0, "Очікувалися відкинуті події при переповненні буфера");
+        assertEquals(0L, lag.getLag());
+        assertEquals(lag.getDelivered(), (long) received.size());
+        assertTrue(received.get(0).getType() == VendingMachineEvent.Type.BALANCE_CHANGED, "Очікувалась подія зміни балансу");
+
+        // COALESCE зливає лише зміни балансу в хвості буфера; продаж чекає на місце
+        java.util.concurrent.CountDownLatch entered = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch proceed = new java.util.concurrent.CountDownLatch(1);
+        java.util.List<VendingMachineEvent> merged = new java.util.concurrent.CopyOnWriteArrayList<>();
+        AsyncEventBus coalescing = new AsyncEventBus(2, 1, AsyncEventBus.BackpressurePolicy.COALESCE);
+        coalescing.subscribe(event -> {
+            entered.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            merged.add(event);
+        });
+        coalescing.update(VendingMachineEvent.balanceChanged("T", 100, 100));
+        entered.await();
+        coalescing.update(VendingMachineEvent.balanceChanged("T", 200, 300));
+        coalescing.update(VendingMachineEvent.balanceChanged("T", 300, 600));
+        coalescing.update(VendingMachineEvent.balanceChanged("T", 400, 1_000));
+        Product coke = ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5);
+        Thread seller = new Thread(() -> coalescing.update(VendingMachineEvent.productDispensed("T", 1, coke, 4, 0)));
+        seller.start();
+        seller.join(100);
+        assertTrue(seller.isAlive(), "Продаж не можна злити зі зміною балансу");
+        proceed.countDown();
+        seller.join();
+        coalescing.close();
+        assertEquals(4, merged.size());
+        assertEquals(700L, merged.get(2).getAmount());
+        assertEquals(1_000L, merged.get(2).getBalance());
+        assertTrue(merged.get(3).getType() == VendingMachineEvent.Type.PRODUCT_DISPENSED, "Продаж доставлено останнім");
+        assertEquals(1L, coalescing.getLagMetrics().get(0).getCoalesced());
+    }
+
+    private static void testProductCatalogIndex() throws VendingMachineException {
+        ProductCatalog catalog = machine.getCatalog();
+        assertEquals(1, catalog.findSlotsByName("Coke").length);
+        assertEquals(2, catalog.findSlotsByType(Food.class)[0]);
+        assertEquals(5, catalog.getStockBySku("Coke"));
+        assertEquals(0, catalog.getStockByType(Food.class));
+        assertEquals(1, catalog.findInStockSlot("Coke"));
+        assertEquals(-1, catalog.findInStockSlot("Snickers"));
+
+        machine.insertMoney(Money.hryvnias(25));
+        machine.selectSlot(1);
+        assertEquals(4, catalog.getStockBySku("Coke"));
+        assertEquals(4, catalog.getStockByType(Drink.class));
+
+        VendingMachineFleet fleet = new VendingMachineFleet();
+        fleet.getOrCreate("A-1").addSlot(new Slot(new Drink.Builder("Water", Money.hryvnias(15)).sku("W-05").build(), 2));
+        fleet.getOrCreate("B-2").addSlot(new Slot(new Drink.Builder("Water", Money.hryvnias(15)).sku("W-05").build(), 0));
+        assertEquals(1, fleet.findMachinesWithStock("W-05").size());
+        assertTrue("A-1".equals(fleet.findMachinesWithStock("W-05").get(0).getMachineId()), "Очікувався автомат A-1");
+    }
+
+    private static void testProductFactoryInterning() {
+        Drink first = ProductFactory.createDrink("Coca-Cola", Money.hryvnias(25), 0.5);
+        Drink second = ProductFactory.createDrink("Coca-Cola", Money.hryvnias(25), 0.5);
+        assertTrue(first == second, "Однакові напої мають бути одним канонічним екземпляром");
+        assertTrue(first != ProductFactory.createDrink("Coca-Cola", Money.hryvnias(25), 1.0), "Різний об'єм - різні продукти");
+        assertTrue(ProductFactory.createFood("Lays", Money.hryvnias(30), 80)
+                != ProductFactory.createFoodWithExtras("Lays", Money.hryvnias(30), 80, 500, "2025-12-31"), "Різні додаткові параметри - різні продукти");
+        assertTrue(ProductFactory.createFood("Lays", Money.hryvnias(30), 80)
+                == ProductFactory.createFood("Lays", Money.hryvnias(30), 80), "Однакова їжа має бути одним екземпляром");
+        // Ключ пулу - день придатності, а не текст дати
+        assertTrue(ProductFactory.createFood("Lays", "LAYS-80", Money.hryvnias(30), 80, 500, "2025-12-31")
+                == ProductFactory.createFood("Lays", "LAYS-80", Money.hryvnias(30), 80, 500, " 2025-12-31 "),
+                "Однакова дата в різному записі - один продукт");
+        assertTrue(ProductFactory.createDrink("Water", "W-05", Money.hryvnias(15), 0.5, 0, null)
+                == ProductFactory.createDrink("Water", "W-05", Money.hryvnias(15), 0.5, 0, "n/a"),
+                "Відсутній термін у різному записі - один продукт");
+        // Без артикула продукт має той самий ключ, що й з артикулом, рівним назві
+        assertTrue(ProductFactory.createDrink("Coca-Cola", null, Money.hryvnias(25), 0.5, 0, null) == first,
+                "Відсутній артикул - той самий продукт, що й у короткому методі");
+        assertTrue(ProductFactory.createFood("Lays", null, Money.hryvnias(30), 80, 0, null)
+                == ProductFactory.createFood("Lays", Money.hryvnias(30), 80), "Відсутній артикул їжі - один продукт");
+        assertThrows(IllegalArgumentException.class,
+                () -> ProductFactory.createFood("Lays", "LAYS-80", Money.hryvnias(30), 80, 500, "31.12.2025"));
+    }
+
+    private static void testColumnarInventory() throws VendingMachineException {
+        ColumnarInventory inventory = new ColumnarInventory(8);
+        VendingMachineFleet fleet = new VendingMachineFleet();
+        VendingMachine first = fleet.getOrCreate("A-1");
+        VendingMachine second = fleet.getOrCreate("B-2");
+        first.addSlot(inventory.newSlot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 3));
+        first.addSlot(inventory.newSlot(ProductFactory.createFood("Lays", Money.hryvnias(30), 80), 10));
+        second.addSlot(inventory.newSlot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 1));
+
+        first.insertMoney(Money.hryvnias(25));
+        first.selectSlot(1);
+        assertEquals(2, first.getSlots().get(0).getQuantity());
+        assertEquals(2 + 10 + 1, inventory.totalStock());
+        assertEquals(Money.hryvnias(2 * 25 + 10 * 30 + 25), inventory.totalStockValue());
+
+        int[] low = inventory.findLowStock(3);
+        assertEquals(2, low.length);
+        assertEquals(0, low[0]);
+        assertEquals(2, low[1]);
+
+        second.insertMoney(Money.hryvnias(50));
+        second.selectSlot(1);
+        assertThrows(ProductOutOfStockException.class, () -> second.selectSlot(1));
+        assertEquals(0, inventory.getQuantity(2));
+    }
+
+    private static void testTransactionJournalReplay() throws Exception {
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("journal-test");
+        // Маленькі сегменти (3 записи), щоб перевірити перехід до наступного сегмента
+        TransactionJournal journal = new TransactionJournal(dir, 3, 2);
+        machine.addObserver(journal);
+        try {
+            machine.insertMoney(Money.hryvnias(60));
+            machine.selectSlot(1);
+            machine.selectSlot(1);
+            machine.requestChange();
+            machine.insertMoney(Money.hryvnias(30));
+            machine.selectSlot(1);
+        } finally {
+            machine.removeObserver(journal);
+            journal.close();
+        }
+
+        // "Перезапуск": новий автомат з тією ж початковою планограмою
+        VendingMachine restored = new VendingMachine("restored");
+        restored.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 5));
+        restored.addSlot(new Slot(ProductFactory.createFood("Snickers", Money.hryvnias(18), 50), 0));
+        assertEquals(6, TransactionJournal.replay(dir, restored));
+        assertEquals(machine.getSlots().get(0).getQuantity(), restored.getSlots().get(0).getQuantity());
+        assertEquals(2, restored.getSlots().get(0).getQuantity());
+        assertEquals(Money.hryvnias(5), restored.getCurrentBalance());
+        assertEquals(2, restored.getCatalog().getStockBySku("Coke"));
+
+        // Повторне відкриття журналу продовжує запис після останнього запису
+        try (TransactionJournal reopened = new TransactionJournal(dir, 3, 2)) {
+            restored.addObserver(reopened);
+            restored.requestChange();
+            restored.removeObserver(reopened);
+        }
+        VendingMachine again = new VendingMachine("again");
+        again.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 5));
+        assertEquals(7, TransactionJournal.replay(dir, again));
+        assertEquals(0L, again.getCurrentBalance());
+
+        // sync() чекає, поки потік committer скине записи на диск
+        java.nio.file.Path durableDir = java.nio.file.Files.createTempDirectory("journal-durable");
+        try (TransactionJournal durable = new TransactionJournal(durableDir, 16, 1_000)) {
+            again.addObserver(durable);
+            again.insertMoney(Money.hryvnias(25));
+            durable.sync();
+            again.removeObserver(durable);
+        }
+        assertEquals(1, TransactionJournal.replay(durableDir, new VendingMachine("durable")));
+
+        // Помилка запису не перериває перехід автомата: журнал лише припиняє запис
+        java.nio.file.Path brokenDir = java.nio.file.Files.createTempDirectory("journal-broken");
+        try (TransactionJournal broken = new TransactionJournal(brokenDir, 1, 1)) {
+            // Наступний сегмент неможливо відкрити
+            java.nio.file.Files.createDirectories(brokenDir.resolve("journal-000001.seg"));
+            again.addObserver(broken);
+            again.insertMoney(Money.hryvnias(25));
+            again.insertMoney(Money.hryvnias(5));
+            assertEquals(Money.hryvnias(55), again.getCurrentBalance());
+            again.selectSlot(1);
+            assertEquals(Money.hryvnias(30), again.getCurrentBalance());
+            again.removeObserver(broken);
+            assertThrows(java.io.IOException.class, broken::sync);
+        }
+    }
+
+    private static void testFleetSnapshotAndDelta() throws Exception {
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("snapshot-test");
+        VendingMachineFleet fleet = new VendingMachineFleet();
+        VendingMachine first = fleet.getOrCreate("A-1");
+        first.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 5));
+        first.addSlot(new Slot(new Food.Builder("Lays", Money.hryvnias(30)).weight(80).sku("L-80").build(), 2));
+        fleet.getOrCreate("B-2").addSlot(new Slot(ProductFactory.createFood("Snickers", Money.hryvnias(18), 50), 7));
+
+        try (FleetCheckpointer checkpointer = new FleetCheckpointer(fleet, dir)) {
+            checkpointer.writeSnapshot();
+            first.insertMoney(Money.hryvnias(40));
+            first.selectSlot(1);
+            checkpointer.writeDelta();
+            first.insertMoney(Money.hryvnias(20));
+            first.selectSlot(2);
+            checkpointer.writeDelta();
+        }
+
+        VendingMachineFleet restored = new VendingMachineFleet();
+        assertEquals(3, FleetCheckpointer.restore(dir, restored));
+        VendingMachine restoredFirst = restored.get("A-1");
+        assertEquals(4, restoredFirst.getSlots().get(0).getQuantity());
+        assertEquals(1, restoredFirst.getSlots().get(1).getQuantity());
+        assertEquals(Money.hryvnias(5), restoredFirst.getCurrentBalance());
+        assertTrue("L-80".equals(restoredFirst.getSlots().get(1).getProduct().getSku()), "SKU має відновлюватися");
+        assertEquals(1, restoredFirst.getCatalog().getStockBySku("L-80"));
+        assertEquals(7, restored.get("B-2").getSlots().get(0).getQuantity());
+
+        // Відновлений автомат продовжує роботу з балансом і станом HasMoney
+        assertThrows(InsufficientFundsException.class, () -> restoredFirst.selectSlot(1));
+        restoredFirst.insertMoney(Money.hryvnias(20));
+        restoredFirst.selectSlot(1);
+        assertEquals(3, restoredFirst.getCatalog().getStockBySku("Coke"));
+
+        // Невдалий запис дельти не зсуває ні номер дельти, ні її базу
+        java.nio.file.Path failingDir = java.nio.file.Files.createTempDirectory("snapshot-failing");
+        try (FleetCheckpointer checkpointer = new FleetCheckpointer(fleet, failingDir)) {
+            checkpointer.writeSnapshot();
+            first.insertMoney(Money.hryvnias(25));
+            first.selectSlot(1);
+            java.nio.file.Path blocker = failingDir.resolve("snapshot-000001.delta-0001.bin");
+            java.nio.file.Files.createDirectories(blocker.resolve("busy"));
+            assertThrows(java.io.IOException.class, checkpointer::writeDelta);
+            java.nio.file.Files.delete(blocker.resolve("busy"));
+            java.nio.file.Files.delete(blocker);
+            assertTrue(checkpointer.writeDelta().equals(blocker), "Номер дельти не мав зсунутися");
+        }
+        VendingMachineFleet afterFailure = new VendingMachineFleet();
+        assertEquals(2, FleetCheckpointer.restore(failingDir, afterFailure));
+        assertEquals(3, afterFailure.get("A-1").getSlots().get(0).getQuantity());
+
+        // Фонові знімки під час покупок: баланс і залишок у знімку узгоджені
+        java.nio.file.Path scheduledDir = java.nio.file.Files.createTempDirectory("snapshot-scheduled");
+        VendingMachineFleet busy = new VendingMachineFleet();
+        VendingMachine shop = busy.getOrCreate("S-1");
+        shop.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 1_000_000));
+        java.util.concurrent.atomic.AtomicBoolean stop = new java.util.concurrent.atomic.AtomicBoolean();
+        Thread buyer = new Thread(() -> {
+            try {
+                while (!stop.get()) {
+                    shop.insertMoney(Money.hryvnias(30));
+                    shop.selectSlot(1);
+                }
+            } catch (VendingMachineException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try (FleetCheckpointer checkpointer = new FleetCheckpointer(busy, scheduledDir)) {
+            assertThrows(IllegalArgumentException.class, () -> checkpointer.start(10, 0));
+            assertThrows(IllegalArgumentException.class, () -> checkpointer.start(0, 3));
+            buyer.start();
+            // Повний знімок лише перший: дельти не видаляються, поки тест чекає на них
+            checkpointer.start(5, 1_000);
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (System.currentTimeMillis() < deadline) {
+                try (java.util.stream.Stream<java.nio.file.Path> files = java.nio.file.Files.list(scheduledDir)) {
+                    if (files.filter(f -> f.getFileName().toString().contains(".delta-")).count() >= 2) {
+                        break;
+                    }
+                }
+                Thread.sleep(5);
+            }
+        } finally {
+            stop.set(true);
+            buyer.join();
+        }
+        VendingMachineFleet restoredBusy = new VendingMachineFleet();
+        assertTrue(FleetCheckpointer.restore(scheduledDir, restoredBusy) >= 2, "Очікувались знімок і дельти");
+        VendingMachine restoredShop = restoredBusy.get("S-1");
+        long sold = 1_000_000 - restoredShop.getSlots().get(0).getQuantity();
+        long balance = restoredShop.getCurrentBalance();
+        // Після кожної покупки лишається 5 грн решти; між внесенням і покупкою - ще 30 грн
+        assertTrue(balance == sold * Money.hryvnias(5) || balance == sold * Money.hryvnias(5) + Money.hryvnias(30),
+                "Неузгоджений знімок: продано " + sold + ", баланс " + balance);
+    }
+
+    private static void testPlanogramLoaderCsvAndBinary() throws Exception {
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("planogram-test");
+        java.nio.file.Path csv = dir.resolve("planogram.csv");
+        StringBuilder text = new StringBuilder("machineId,type,name,price,size,quantity,calories,expirationDate,sku\n");
+        text.append("# коментар\n");
+        for (int m = 0; m < 20; m++) {
+            text.append("M-").append(m).append(",DRINK,Coca-Cola,25.00,0.5,").append(m).append("\r\n");
+            text.append("M-").append(m).append(",FOOD,Снікерс,18.5,50,3,250,2025-12-31,SN-50\n");
+        }
+        java.nio.file.Files.write(csv, text.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+
+        VendingMachineFleet fleet = new VendingMachineFleet();
+        PlanogramLoader loader = new PlanogramLoader(fleet, 3, 2, 1);
+        PlanogramLoader.LoadResult result = loader.loadCsv(csv);
+        assertEquals(40L, result.getRows());
+        assertEquals(20, result.getMachines());
+        VendingMachine m7 = fleet.get("M-7");
+        assertEquals(2, m7.getSlots().size());
+        assertEquals(7, m7.getSlots().get(0).getQuantity());
+        Product snickers = m7.getSlots().get(1).getProduct();
+        assertTrue(snickers instanceof Food && "SN-50".equals(snickers.getSku()), "Очікувався Food зі SKU SN-50");
+        assertEquals(Money.of(18, 50), snickers.getPrice());
+        assertTrue(snickers == fleet.get("M-3").getSlots().get(1).getProduct(), "Однакові продукти мають бути канонічними");
+
+        java.nio.file.Path binary = dir.resolve("planogram.bin");
+        assertEquals(40L, PlanogramLoader.convertCsvToBinary(csv, binary));
+        VendingMachineFleet fromBinary = new VendingMachineFleet();
+        new PlanogramLoader(fromBinary, 2, 8, 2).loadBinary(binary);
+        assertEquals(20, fromBinary.size());
+        assertEquals(7, fromBinary.get("M-7").getSlots().get(0).getQuantity());
+        assertEquals(250, fromBinary.get("M-7").getSlots().get(1).getProduct().getCalories());
+
+        java.nio.file.Files.write(csv, "M-1,SODA,Water,10,0.5,1\n".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        assertThrows(java.io.IOException.class, () -> loader.loadCsv(csv));
+        // Дробова вага їжі відхиляється, а не обрізається
+        java.nio.file.Files.write(csv, "M-1,FOOD,Lays,30,80.5,1\n".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        assertThrows(java.io.IOException.class, () -> loader.loadCsv(csv));
+
+        // Пропускається лише заголовок у першому рядку, а не дані автомата з ідентифікатором "machineId..."
+        java.nio.file.Files.write(csv, ("machineId,type,name,price,size,quantity\n"
+                + "machineId-7,DRINK,Water,15,0.5,4\n").getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        VendingMachineFleet prefixed = new VendingMachineFleet();
+        assertEquals(1L, new PlanogramLoader(prefixed, 1, 4, 1).loadCsv(csv).getRows());
+        assertEquals(4, prefixed.get("machineId-7").getSlots().get(0).getQuantity());
+
+        // Від'ємні значення відхиляються з номером рядка, а парк не заповнюється наполовину
+        java.nio.file.Files.write(csv, ("N-1,DRINK,Water,15,0.5,4\n"
+                + "N-2,DRINK,Water,-15,0.5,4\n").getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        VendingMachineFleet untouched = new VendingMachineFleet();
+        try {
+            new PlanogramLoader(untouched, 2, 1, 1).loadCsv(csv);
+            throw new AssertionError("Очікувалась помилка від'ємної ціни");
+        } catch (java.io.IOException e) {
+            assertTrue(e.getMessage().startsWith("Рядок 2:"), "Очікувався номер рядка: " + e.getMessage());
+        }
+        assertEquals(0, untouched.size());
+        java.nio.file.Files.write(csv, "N-1,FOOD,Lays,30,80,-1\n".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        assertThrows(java.io.IOException.class, () -> loader.loadCsv(csv));
+
+        // Двійковий запис з від'ємною ціною
+        java.io.ByteArrayOutputStream raw = new java.io.ByteArrayOutputStream();
+        try (java.io.DataOutputStream out = new java.io.DataOutputStream(raw)) {
+            out.writeInt(PlanogramLoader.BINARY_MAGIC);
+            out.writeUTF("N-1");
+            out.writeByte(1);
+            out.writeUTF("Water");
+            out.writeUTF("W");
+            out.writeLong(-100);
+            out.writeDouble(0.5);
+            out.writeInt(1);
+            out.writeInt(0);
+            out.writeUTF("N/A");
+        }
+        java.nio.file.Files.write(binary, raw.toByteArray());
+        try {
+            new PlanogramLoader(untouched, 1, 1, 1).loadBinary(binary);
+            throw new AssertionError("Очікувалась помилка від'ємної ціни");
+        } catch (java.io.IOException e) {
+            assertTrue(e.getMessage().contains("запис 1"), "Очікувався номер запису: " + e.getMessage());
+        }
+        assertEquals(0, untouched.size());
+
+        // Задовгий рядок не накопичується в пам'яті
+        StringBuilder longLine = new StringBuilder("N-1,DRINK,");
+        for (int i = 0; i < PlanogramLoader.MAX_LINE_LENGTH; i++) {
+            longLine.append('x');
+        }
+        java.nio.file.Files.write(csv, longLine.append(",15,0.5,4\n").toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        assertThrows(java.io.IOException.class, () -> loader.loadCsv(csv));
+    }
+
+    private static void testAsyncPaymentConcurrencyAndTimeout() throws Exception {
+        machine.reset();
+        machine.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 300));
+        VendingMachineController controller = new VendingMachineController(machine);
+
+        // 500 покупок при 300 одиницях: авторизації по 200 мс мають іти паралельно,
+        // а покупці без товару не повинні платити взагалі
+        java.util.concurrent.atomic.AtomicInteger charges = new java.util.concurrent.atomic.AtomicInteger();
+        StubAcquirer stub = new StubAcquirer(200, true);
+        AsyncPaymentStrategy acquirer = new AsyncPaymentAdapter(amount -> {
+            charges.incrementAndGet();
+            return stub.pay(amount);
+        }, 5_000);
+        java.util.List<java.util.concurrent.CompletableFuture<Product>> purchases = new java.util.ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 500; i++) {
+            purchases.add(controller.purchaseProductWithPaymentAsync(1, acquirer));
+        }
+        int sold = 0;
+        int outOfStock = 0;
+        for (java.util.concurrent.CompletableFuture<Product> purchase : purchases) {
+            try {
+                if (purchase.get() != null) {
+                    sold++;
+                }
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertTrue(e.getCause() instanceof ProductOutOfStockException, "Очікувався ProductOutOfStockException");
+                outOfStock++;
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(300, sold);
+        assertEquals(200, outOfStock);
+        assertEquals(300, charges.get());
+        assertEquals(0, machine.getSlots().get(0).getQuantity());
+        assertTrue(elapsedMillis < 5_000, "Авторизації виконувались послідовно: " + elapsedMillis + " мс");
+
+        // Тайм-аут спроби: результат невідомий, резерв тримається до відповіді еквайра
+        machine.addSlot(new Slot(ProductFactory.createFood("Lays", Money.hryvnias(30), 80), 5));
+        java.util.concurrent.CountDownLatch dispensed = new java.util.concurrent.CountDownLatch(1);
+        VendingMachineObserver lateSale = event -> {
+            if (event.getType() == VendingMachineEvent.Type.PRODUCT_DISPENSED && event.getSlotNumber() == 2) {
+                dispensed.countDown();
+            }
+        };
+        machine.addObserver(lateSale);
+        AsyncPaymentStrategy slow = new AsyncPaymentAdapter(new StubAcquirer(300, true), 50);
+        try {
+            controller.purchaseProductWithPaymentAsync(2, slow).get();
+            throw new AssertionError("Очікувався тайм-аут оплати");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof java.util.concurrent.TimeoutException, "Очікувався TimeoutException");
+        }
+        assertEquals(4, machine.getSlots().get(1).getQuantity());
+        assertTrue(dispensed.await(5, java.util.concurrent.TimeUnit.SECONDS), "Оплачений після тайм-ауту товар має бути виданий");
+        machine.removeObserver(lateSale);
+        assertEquals(4, machine.getSlots().get(1).getQuantity());
+        assertEquals(4, machine.getCatalog().getStockByName("Lays"));
+
+        // Тайм-аут із відмовою еквайра повертає резерв, коли відмова надійде
+        AsyncPaymentStrategy slowDecline = new AsyncPaymentAdapter(new StubAcquirer(300, false), 50);
+        try {
+            controller.purchaseProductWithPaymentAsync(2, slowDecline).get();
+            throw new AssertionError("Очікувався тайм-аут оплати");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof java.util.concurrent.TimeoutException, "Очікувався TimeoutException");
+        }
+        assertEquals(3, machine.getSlots().get(1).getQuantity());
+        awaitQuantity(machine.getSlots().get(1), 4);
+        assertEquals(4, machine.getCatalog().getStockByName("Lays"));
+
+        // Скасування покупки скасовує оплату і повертає резерв
+        AsyncPaymentStrategy endless = new AsyncPaymentAdapter(new StubAcquirer(10_000, true), 60_000);
+        java.util.concurrent.CompletableFuture<Product> abandoned = controller.purchaseProductWithPaymentAsync(2, endless);
+        assertEquals(3, machine.getSlots().get(1).getQuantity());
+        assertTrue(abandoned.cancel(true) && abandoned.isCancelled(), "Покупку має бути скасовано");
+        awaitQuantity(machine.getSlots().get(1), 4);
+
+        // Скасування та відмова
+        java.util.concurrent.CompletableFuture<Boolean> cancelled = slow.payAsync(Money.hryvnias(30));
+        assertTrue(cancelled.cancel(true) && cancelled.isCancelled(), "Оплату має бути скасовано");
+        AsyncPaymentStrategy declining = new AsyncPaymentAdapter(new StubAcquirer(0, false), 1_000);
+        assertTrue(controller.purchaseProductWithPaymentAsync(2, declining).get() == null, "Відхилена оплата не видає товар");
+        assertEquals(4, machine.getSlots().get(1).getQuantity());
+        assertEquals(4, machine.getCatalog().getStockByName("Lays"));
+    }
+
+    private static void awaitQuantity(Slot slot, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + java.util.concurrent.TimeUnit.SECONDS.toNanos(5);
+        while (slot.getQuantity() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, slot.getQuantity());
+    }
+
+    private static void testCardSettlementPipeline() throws Exception {
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("settlement");
+        java.nio.file.Path settledFile = dir.resolve("settled.log");
+        java.nio.file.Path pendingFile = dir.resolve("pending.log");
+
+        // Пакети формуються за розміром, залишок розраховується при закритті
+        FileSettlementSink sink = new FileSettlementSink(settledFile);
+        CardSettlementPipeline pipeline = new CardSettlementPipeline(sink, 3, 60_000, pendingFile);
+        CardPayment card = new CardPayment("4111111111111111", "M-1", pipeline);
+        for (int i = 0; i < 7; i++) {
+            assertTrue(card.pay(Money.hryvnias(25)), "Авторизація має пройти");
+        }
+        pipeline.close();
+        CardSettlementPipeline.Metrics metrics = pipeline.getMetrics();
+        assertEquals(7L, metrics.getSettledTransactions());
+        assertEquals(3L, metrics.getSettledBatches());
+        assertEquals(Money.hryvnias(175), metrics.getSettledAmount());
+        assertEquals(0, metrics.getPending());
+        assertEquals(0L, java.nio.file.Files.size(pendingFile));
+        // Після закриття оплата не проходить, а не кидає виняток
+        assertTrue(!card.pay(Money.hryvnias(25)), "Закритий конвеєр відхиляє авторизацію");
+        assertThrows(java.io.IOException.class, () -> pipeline.submit(
+                CardTransaction.authorize("M-1", "4111111111111111", Money.hryvnias(25))));
+
+        // Журнал очікуючих очищується після розрахунку пакетів, а не росте
+        java.nio.file.Path busyFile = dir.resolve("busy.log");
+        FileSettlementSink busySink = new FileSettlementSink(dir.resolve("busy-settled.log"));
+        CardSettlementPipeline busy = new CardSettlementPipeline(busySink, 3, 60_000, busyFile, 2);
+        CardPayment busyCard = new CardPayment("4111111111111111", "M-3", busy);
+        for (int i = 0; i < 300; i++) {
+            busyCard.pay(Money.hryvnias(1));
+        }
+        busy.flushAll();
+        assertEquals(0L, java.nio.file.Files.size(busyFile));
+        // Ідентифікатори забуваються лише після вилучення з журналу очікуючих
+        assertEquals(0, busySink.getRetainedIds());
+        busy.close();
+        busySink.close();
+        assertEquals(300L, busy.getMetrics().getSettledTransactions());
+
+        // Збій після розрахунку першої транзакції: після перезапуску розраховується лише друга
+        CardTransaction first = CardTransaction.authorize("M-2", "5500000000000004", Money.hryvnias(18));
+        CardTransaction second = CardTransaction.authorize("M-2", "5500000000000004", Money.hryvnias(30));
+        // Шлюз недоступний, тож конвеєр закривається з нерозрахованою транзакцією в журналі
+        SettlementSink unavailable = new SettlementSink() {
+            @Override
+            public void settle(String machineId, java.util.List<CardTransaction> batch) throws java.io.IOException {
+                throw new java.io.IOException("Шлюз розрахунків недоступний");
+            }
+
+            @Override
+            public boolean isSettled(String transactionId) {
+                return sink.isSettled(transactionId);
+            }
+        };
+        CardSettlementPipeline crashed = new CardSettlementPipeline(unavailable, 100, 60_000, pendingFile);
+        crashed.submit(first);
+        crashed.submit(second);
+        sink.settle("M-2", java.util.List.of(first));
+        crashed.close();
+        sink.close();
+        assertEquals(1, java.nio.file.Files.readAllLines(pendingFile).size());
+
+        FileSettlementSink restartedSink = new FileSettlementSink(settledFile);
+        assertTrue(restartedSink.isSettled(first.getId()), "Розраховані транзакції мають зчитуватися з файлу");
+        CardSettlementPipeline restarted = new CardSettlementPipeline(restartedSink, 100, 60_000, pendingFile);
+        assertEquals(1, restarted.getMetrics().getPending());
+        restarted.close();
+        restartedSink.close();
+        assertEquals(1L, restarted.getMetrics().getSettledTransactions());
+        assertEquals(Money.hryvnias(30), restarted.getMetrics().getSettledAmount());
+        assertEquals(9, java.nio.file.Files.readAllLines(settledFile).size());
+    }
+
+    private static void testPaymentRetryAndCircuitBreaker() {
+        // Тимчасові збої повторюються
+        java.util.concurrent.atomic.AtomicInteger flakyCalls = new java.util.concurrent.atomic.AtomicInteger();
+        PaymentStrategy flaky = amount -> {
+            if (flakyCalls.incrementAndGet() < 3) {
+                throw new RetryablePaymentException("Шлюз недоступний");
+            }
+            return true;
+        };
+        PaymentProcessor retrying = PaymentProcessor.builder().retry(3, 1, 5).build();
+        assertTrue(retrying.processPayment(Money.hryvnias(25), flaky).isPaid(), "Третя спроба має пройти");
+        assertEquals(3, flakyCalls.get());
+
+        // Збій з невідомим результатом не повторюється: кошти могли бути списані
+        java.util.concurrent.atomic.AtomicInteger unknownCalls = new java.util.concurrent.atomic.AtomicInteger();
+        PaymentStrategy unknown = amount -> {
+            unknownCalls.incrementAndGet();
+            throw new IllegalStateException("Розрив з'єднання після запиту");
+        };
+        assertTrue(retrying.processPayment(Money.hryvnias(25), unknown) == PaymentProcessor.Result.UNKNOWN,
+                "Збій посеред звернення - результат невідомий");
+        assertEquals(1, unknownCalls.get());
+
+        // Стратегія з ключем ідемпотентності повторюється після будь-якого збою
+        java.util.concurrent.atomic.AtomicInteger idempotentCalls = new java.util.concurrent.atomic.AtomicInteger();
+        PaymentStrategy idempotent = new PaymentStrategy() {
+            @Override
+            public boolean pay(long amount) {
+                if (idempotentCalls.incrementAndGet() < 2) {
+                    throw new IllegalStateException("Розрив з'єднання після запиту");
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isIdempotent() {
+                return true;
+            }
+        };
+        assertTrue(retrying.processPayment(Money.hryvnias(25), idempotent).isPaid(), "Повтор з ключем має пройти");
+        assertEquals(2, idempotentCalls.get());
+
+        // Спроба, що не вклалася в тайм-аут, переривається і розмикає запобіжник
+        CircuitBreaker slowBreaker = new CircuitBreaker(1, 60_000);
+        PaymentProcessor bounded = PaymentProcessor.builder()
+                .then(new StubAcquirer(10_000, true), slowBreaker).timeout(20).retry(3, 1, 5).build();
+        long started = System.nanoTime();
+        assertTrue(bounded.processPayment(Money.hryvnias(25)) == PaymentProcessor.Result.UNKNOWN,
+                "Після тайм-ауту результат невідомий");
+        assertTrue(System.nanoTime() - started < 5_000_000_000L, "Спроба обмежена тайм-аутом");
+        assertTrue(slowBreaker.getState() == CircuitBreaker.State.OPEN, "Тайм-аут рахується як збій");
+
+        // Відмова не повторюється, а передає оплату наступній стратегії ланцюжка
+        java.util.concurrent.atomic.AtomicInteger cashCalls = new java.util.concurrent.atomic.AtomicInteger();
+        PaymentStrategy cash = amount -> cashCalls.incrementAndGet() > 0;
+        java.util.concurrent.atomic.AtomicInteger declineCalls = new java.util.concurrent.atomic.AtomicInteger();
+        PaymentProcessor declining = PaymentProcessor.builder()
+                .then(amount -> declineCalls.incrementAndGet() < 0).then(cash).retry(3, 1, 5).build();
+        assertTrue(declining.processPayment(Money.hryvnias(25)).isPaid(), "Готівка має прийняти оплату");
+        assertEquals(1, declineCalls.get());
+        assertEquals(1, cashCalls.get());
+
+        // Невідомий результат картки зупиняє ланцюжок: готівка не списується вдруге
+        PaymentProcessor slowCardThenCash = PaymentProcessor.builder()
+                .then(new StubAcquirer(10_000, true)).then(cash).timeout(20).build();
+        assertTrue(slowCardThenCash.processPayment(Money.hryvnias(25)) == PaymentProcessor.Result.UNKNOWN,
+                "Тайм-аут картки - результат невідомий");
+        assertEquals(1, cashCalls.get());
+
+        // Розімкнений запобіжник більше не звертається до шлюзу
+        CircuitBreaker breaker = new CircuitBreaker(2, 60_000);
+        java.util.concurrent.atomic.AtomicInteger cardCalls = new java.util.concurrent.atomic.AtomicInteger();
+        PaymentStrategy broken = amount -> {
+            cardCalls.incrementAndGet();
+            throw new RetryablePaymentException("Еквайр недоступний");
+        };
+        PaymentProcessor chain = PaymentProcessor.builder().then(broken, breaker).then(cash).build();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(chain.processPayment(Money.hryvnias(18)).isPaid(), "Оплата має перейти на готівку");
+        }
+        assertEquals(2, cardCalls.get());
+        assertEquals(11, cashCalls.get());
+        assertTrue(breaker.getState() == CircuitBreaker.State.OPEN, "Запобіжник має бути розімкнений");
+
+        // Пробна спроба після паузи замикає запобіжник
+        CircuitBreaker shortBreaker = new CircuitBreaker(1, 20);
+        shortBreaker.recordFailure();
+        assertTrue(!shortBreaker.allowRequest(), "Розімкнений запобіжник блокує звернення");
+        try {
+            Thread.sleep(30);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assertTrue(shortBreaker.allowRequest(), "Після паузи дозволено пробну спробу");
+        assertTrue(!shortBreaker.allowRequest(), "Одночасно дозволено лише одну пробну спробу");
+        shortBreaker.recordSuccess();
+        assertTrue(shortBreaker.getState() == CircuitBreaker.State.CLOSED, "Успішна проба замикає запобіжник");
+    }
+
+    private static void testCommandQueueSingleWriter() throws Exception {
+        VendingMachine queued = new VendingMachine("Q-1");
+        queued.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 100));
+        VendingMachineController controller = new VendingMachineController(queued);
+
+        // Команди з 8 потоків виконуються по черзі одним виконавцем
+        java.util.List<java.util.concurrent.CompletableFuture<Void>> results =
+                java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        Thread[] producers = new Thread[8];
+        for (int t = 0; t < producers.length; t++) {
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    results.add(controller.submitCommand(new InsertMoneyCommand(queued, Money.hryvnias(25))));
+                    results.add(controller.submitCommand(new SelectProductCommand(queued, 1)));
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        for (java.util.concurrent.CompletableFuture<Void> result : results) {
+            result.get();
+        }
+        CommandQueue queue = queued.getCommandQueue();
+        assertEquals(0L, queue.call(queued::requestChange).get());
+        assertEquals(20, queued.getSlots().get(0).getQuantity());
+        assertEquals(161L, queue.getExecutedCount());
+        assertTrue(queue.getAverageBatchSize() >= 1.0, "Середній розмір пакета має бути не менше 1");
+
+        // Помилка команди повертається через future
+        controller.submitCommand(new InsertMoneyCommand(queued, Money.hryvnias(25)));
+        try {
+            controller.submitCommand(new SelectProductCommand(queued, 9)).get();
+            throw new AssertionError("Очікувався InvalidSlotException");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof InvalidSlotException, "Очікувався InvalidSlotException");
+        }
+
+        // Закриття не перериває команду, що виконується, навіть якщо вона чекає
+        java.util.concurrent.CountDownLatch running = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CompletableFuture<Boolean> slow = queue.call(() -> {
+            running.countDown();
+            Thread.sleep(100);
+            return true;
+        });
+        java.util.concurrent.CompletableFuture<Long> pending = queue.call(queued::requestChange);
+        running.await();
+        queue.close();
+        assertTrue(slow.get(), "Команда, що виконувалась, завершилась без переривання");
+        assertEquals(Money.hryvnias(25), pending.get());
+        assertTrue(queue.isClosed(), "Черга закрита");
+        assertTrue(queue.submit(new InsertMoneyCommand(queued, 100)).isCompletedExceptionally(),
+                "Закрита черга не приймає команди");
+        queue.close(); // Повторне закриття не блокує
+
+        // Автомат створює нову чергу замість закритої
+        CommandQueue next = queued.getCommandQueue();
+        assertTrue(next != queue, "Очікувалась нова черга");
+        controller.submitCommand(new InsertMoneyCommand(queued, 100)).get();
+        assertEquals(100L, queued.getCurrentBalance());
+        next.close();
+
+        // Команда закриває власну чергу, коли та заповнена: без взаємного блокування
+        CommandQueue full = new CommandQueue(queued, 1, 1);
+        java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CompletableFuture<Void> closing = full.call(() -> {
+            started.countDown();
+            release.await();
+            full.close();
+            return null;
+        });
+        started.await();
+        java.util.concurrent.CompletableFuture<Void> queuedBefore = full.submit(new InsertMoneyCommand(queued, 100));
+        release.countDown();
+        closing.get(5, java.util.concurrent.TimeUnit.SECONDS);
+        queuedBefore.get(5, java.util.concurrent.TimeUnit.SECONDS);
+        assertEquals(200L, queued.getCurrentBalance());
+        assertTrue(full.isClosed(), "Черга закрита");
+        full.close(); // Чекає зупинки виконавця
+        assertTrue(full.submit(new InsertMoneyCommand(queued, 100)).isCompletedExceptionally(),
+                "Закрита черга не приймає команди");
+    }
+
+    private static void testCommandUndoAndHistory() throws Exception {
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("undo-test");
+        VendingMachineController controller = new VendingMachineController(machine);
+        try (TransactionJournal journal = new TransactionJournal(dir, 16, 1)) {
+            machine.addObserver(journal);
+            controller.executeCommand(new InsertMoneyCommand(machine, Money.hryvnias(30)));
+            controller.executeCommand(new SelectProductCommand(machine, 1));
+            assertEquals(4, machine.getSlots().get(0).getQuantity());
+
+            // Збій видачі: продаж скасовується, товар і кошти повертаються
+            assertTrue(controller.undoLastCommand(), "Продаж має бути скасовано");
+            assertEquals(5, machine.getSlots().get(0).getQuantity());
+            assertEquals(5, machine.getCatalog().getStockBySku("Coke"));
+            assertEquals(Money.hryvnias(30), machine.getCurrentBalance());
+            machine.removeObserver(journal);
+        }
+        // Скасування записується в журнал і відтворюється
+        VendingMachine restored = new VendingMachine("restored");
+        restored.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 5));
+        assertEquals(3, TransactionJournal.replay(dir, restored));
+        assertEquals(5, restored.getSlots().get(0).getQuantity());
+        assertEquals(Money.hryvnias(30), restored.getCurrentBalance());
+
+        assertTrue(controller.undoLastCommand(), "Внесення має бути скасовано");
+        assertEquals(0L, machine.getCurrentBalance());
+        assertEquals(0L, machine.requestChange());
+        assertTrue(!controller.undoLastCommand(), "Історія має бути порожньою");
+
+        // Витрачені кошти скасувати неможливо; невдалий вибір не змінює нічого
+        CommandHistory history = new CommandHistory(2);
+        InsertMoneyCommand insert = new InsertMoneyCommand(machine, Money.hryvnias(20));
+        insert.execute();
+        history.record(insert);
+        SelectProductCommand failed = new SelectProductCommand(machine, 1);
+        assertThrows(InsufficientFundsException.class, failed::execute);
+        failed.undo();
+        assertEquals(5, machine.getSlots().get(0).getQuantity());
+        machine.requestChange();
+        assertThrows(InsufficientFundsException.class, history::undoLast);
+        assertEquals(1, history.size());
+
+        // Кільцевий буфер витісняє найстаріші команди
+        for (int i = 0; i < 5; i++) {
+            history.record(new InsertMoneyCommand(machine, 0));
+        }
+        assertEquals(2, history.size());
+        // Команди, що нічого не змінили, не рахуються скасованими
+        assertEquals(0, history.undo(10));
+        assertEquals(0, history.size());
+        assertTrue(!failed.undo(), "Невдалий вибір нічого не скасовує");
+
+        // Той самий екземпляр записується лише раз
+        InsertMoneyCommand reused = new InsertMoneyCommand(machine, 0);
+        history.record(reused);
+        assertThrows(IllegalStateException.class, () -> history.record(reused));
+        assertEquals(1, history.size());
+
+        // Після повернення решти продаж скасувати не можна: кошти вже видано
+        controller.executeCommand(new InsertMoneyCommand(machine, Money.hryvnias(30)));
+        controller.executeCommand(new SelectProductCommand(machine, 1));
+        assertEquals(Money.hryvnias(5), machine.requestChange());
+        assertTrue(!controller.undoLastCommand(), "Історію очищено після повернення решти");
+        assertEquals(0L, machine.getCurrentBalance());
+        assertEquals(4, machine.getSlots().get(0).getQuantity());
+
+        // Екземпляр, що вже є в історії, повторно не виконується; після скасування - можна
+        InsertMoneyCommand insertAgain = new InsertMoneyCommand(machine, Money.hryvnias(10));
+        controller.executeCommand(insertAgain);
+        assertThrows(IllegalStateException.class, () -> controller.executeCommand(insertAgain));
+        assertEquals(Money.hryvnias(10), machine.getCurrentBalance());
+        assertTrue(controller.undoLastCommand(), "Скасовано внесення");
+        controller.executeCommand(insertAgain);
+        assertTrue(controller.undoLastCommand(), "Скасовано повторне внесення");
+        assertEquals(0L, machine.getCurrentBalance());
+
+        // Команди з черги потрапляють в історію контролера
+        controller.submitCommand(new InsertMoneyCommand(machine, Money.hryvnias(30))).get();
+        SelectProductCommand queuedSale = new SelectProductCommand(machine, 1);
+        controller.submitCommand(queuedSale).get();
+        assertEquals(3, machine.getSlots().get(0).getQuantity());
+        assertTrue(controller.undoLastCommand(), "Продаж з черги має скасовуватися");
+        assertEquals(4, machine.getSlots().get(0).getQuantity());
+        assertEquals(Money.hryvnias(30), machine.getCurrentBalance());
+        controller.submitCommand(queuedSale).get(); // Після скасування екземпляр можна виконати знову
+        assertEquals(3, machine.getSlots().get(0).getQuantity());
+
+        // selectSlot повертає саме виданий продукт
+        machine.insertMoney(Money.hryvnias(25));
+        assertTrue(machine.selectSlot(1) == machine.getSlots().get(0).getProduct(), "Очікувався виданий продукт");
+    }
+
+    private static void testStateTransitionTable() throws VendingMachineException {
+        StateTransitionTable table = StateTransitionTable.standard();
+        assertTrue(table.validate().isEmpty(), "Стандартна таблиця має бути коректною: " + table.validate());
+        assertTrue(table.getAutomaticTrigger(StateTransitionTable.State.SOLD) == StateTransitionTable.Trigger.DISPENSE,
+                "Стан SOLD має автоматично видавати товар");
+
+        // Після продажу автомат повертається в HasMoney або Idle залежно від залишку
+        machine.insertMoney(Money.hryvnias(50));
+        assertEquals(1, machine.getStateCode());
+        machine.selectSlot(1);
+        assertEquals(1, machine.getStateCode());
+        machine.selectSlot(1);
+        assertEquals(0, machine.getStateCode());
+        assertEquals(0L, machine.getCurrentBalance());
+        // Невдалий вибір не змінює стан
+        machine.insertMoney(Money.hryvnias(10));
+        assertThrows(InsufficientFundsException.class, () -> machine.selectSlot(1));
+        assertEquals(1, machine.getStateCode());
+        machine.requestChange();
+        assertEquals(0, machine.getStateCode());
+
+        // Неповна таблиця та цикл автоматичних переходів відхиляються під час побудови
+        StateTransitionTable.Action noop = (m, arg) -> 0;
+        StateTransitionTable.Builder incomplete = new StateTransitionTable.Builder(StateTransitionTable.State.IDLE)
+                .on(StateTransitionTable.State.IDLE, StateTransitionTable.Trigger.INSERT_MONEY, noop, StateTransitionTable.State.HAS_MONEY);
+        assertThrows(IllegalStateException.class, incomplete::build);
+        StateTransitionTable.Builder looping = new StateTransitionTable.Builder(StateTransitionTable.State.IDLE);
+        for (StateTransitionTable.State state : StateTransitionTable.State.values()) {
+            for (StateTransitionTable.Trigger trigger : StateTransitionTable.Trigger.values()) {
+                looping.on(state, trigger, noop, StateTransitionTable.State.SOLD);
+            }
+        }
+        looping.automatic(StateTransitionTable.State.SOLD, StateTransitionTable.Trigger.DISPENSE);
+        assertThrows(IllegalStateException.class, looping::build);
+    }
+
+    private static void testDisplaySinks() throws VendingMachineException {
+        // За замовчуванням автомат нічого не виводить
+        assertTrue(machine.getDisplay() == NoOpDisplaySink.INSTANCE, "Очікувався NoOpDisplaySink");
+        assertTrue(!machine.getDisplay().isEnabled(), "NoOpDisplaySink має бути вимкненим");
+
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        java.io.ByteArrayOutputStream err = new java.io.ByteArrayOutputStream();
+        java.nio.charset.Charset utf8 = java.nio.charset.StandardCharsets.UTF_8;
+        ConsoleDisplaySink console = new ConsoleDisplaySink(new java.io.PrintStream(out, false, utf8),
+                new java.io.PrintStream(err, false, utf8), 16);
+        machine.setDisplay(console);
+        try {
+            new CashPayment(console).pay(Money.hryvnias(30));
+            machine.insertMoney(Money.hryvnias(30));
+            machine.selectSlot(1);
+            machine.requestChange();
+            machine.getDisplay().error("Тестова помилка");
+            // Процесор оплат пише збої в вихід автомата, а не в System.err
+            assertTrue(!new PaymentProcessor().processPayment(Money.hryvnias(5), machine.getDisplay()).isPaid(),
+                    "Без стратегії оплата не проходить");
+            console.flush();
+            String text = out.toString(utf8);
+            int payment = text.indexOf("Оплата готівкою на суму 30.00 грн прийнята.");
+            int inserted = text.indexOf("Внесено: 30.00 грн. Баланс: 30.00 грн");
+            int change = text.indexOf("Повернено решту: 5.00 грн");
+            assertTrue(payment >= 0 && inserted > payment && change > inserted, "Порядок повідомлень порушено: " + text);
+            assertTrue(err.toString(utf8).contains("Тестова помилка"), "Помилка має потрапити в потік помилок");
+            assertTrue(err.toString(utf8).contains("Спосіб оплати не обрано."), "Помилка оплати має потрапити на дисплей");
+        } finally {
+            machine.setDisplay(null);
+            console.close();
+        }
+        assertTrue(machine.getDisplay() == NoOpDisplaySink.INSTANCE, "null відновлює NoOpDisplaySink");
+
+        // Повідомлення, надіслані під час закриття, не губляться
+        java.io.ByteArrayOutputStream racing = new java.io.ByteArrayOutputStream();
+        ConsoleDisplaySink closing = new ConsoleDisplaySink(new java.io.PrintStream(racing, false, utf8),
+                new java.io.PrintStream(racing, false, utf8), 8);
+        Thread[] senders = new Thread[4];
+        for (int t = 0; t < senders.length; t++) {
+            senders[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    closing.show("рядок");
+                }
+            });
+            senders[t].start();
+        }
+        closing.close();
+        for (Thread sender : senders) {
+            try {
+                sender.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        assertEquals(2000, racing.toString(utf8).split("\n").length);
+    }
+
+    private static void testPurchaseOutcomeApi() {
+        assertTrue(machine.trySelectSlot(1) == PurchaseOutcome.NO_MONEY, "Без грошей очікувався NO_MONEY");
+        machine.insertMoney(Money.hryvnias(20));
+        assertTrue(machine.trySelectSlot(9) == PurchaseOutcome.INVALID_SLOT, "Очікувався INVALID_SLOT");
+        assertTrue(machine.trySelectSlot(2) == PurchaseOutcome.OUT_OF_STOCK, "Очікувався OUT_OF_STOCK");
+        assertTrue(machine.trySelectSlot(1) == PurchaseOutcome.INSUFFICIENT_FUNDS, "Очікувався INSUFFICIENT_FUNDS");
+        // Відмови не змінюють ні баланс, ні стан
+        assertEquals(Money.hryvnias(20), machine.getCurrentBalance());
+        assertEquals(1, machine.getStateCode());
+        machine.insertMoney(Money.hryvnias(10));
+        assertTrue(machine.trySelectSlot(1) == PurchaseOutcome.SUCCESS, "Очікувався SUCCESS");
+        assertEquals(Money.hryvnias(5), machine.getCurrentBalance());
+        assertEquals(4, machine.getSlots().get(0).getQuantity());
+
+        // Конкурентний API
+        PurchaseSession session = new PurchaseSession();
+        session.deposit(Money.hryvnias(10));
+        assertTrue(machine.tryPurchase(session, 1) == PurchaseOutcome.INSUFFICIENT_FUNDS, "Очікувався INSUFFICIENT_FUNDS");
+        assertTrue(machine.tryPurchase(session, 2) == PurchaseOutcome.OUT_OF_STOCK, "Очікувався OUT_OF_STOCK");
+        assertTrue(machine.tryPurchase(session, 0) == PurchaseOutcome.INVALID_SLOT, "Очікувався INVALID_SLOT");
+        assertEquals(Money.hryvnias(10), session.getBalance());
+    }
+
+    private static void testMetricsRegistry() throws java.io.IOException {
+        // Гістограма: межі кошиків і квантилі
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000L);
+        }
+        LatencyHistogram.Snapshot h = histogram.snapshot();
+        assertEquals(100L, h.getCount());
+        assertEquals(100_000L, h.getMaxNanos());
+        long p50 = h.getQuantileNanos(0.5);
+        assertTrue(p50 >= 50_000 && p50 <= 50_000 * 5 / 4, "p50 у межах похибки 25%: " + p50);
+        assertEquals(100_000L, h.getQuantileNanos(1.0));
+        assertEquals(100L, h.countBelow(1L << 17));
+
+        MetricsRegistry registry = new MetricsRegistry();
+        MachineMetrics metrics = registry.register(machine);
+        try {
+            assertTrue(machine.getMetrics() == metrics, "Метрики підключено до автомата");
+            machine.insertMoney(Money.hryvnias(30));
+            machine.trySelectSlot(1);
+            assertThrows(ProductOutOfStockException.class, () -> machine.selectSlot(2));
+            machine.requestChange();
+            PurchaseSession session = new PurchaseSession();
+            session.deposit(Money.hryvnias(50));
+            machine.tryPurchase(session, 1);
+
+            VendingMachineController controller = new VendingMachineController(machine);
+            controller.purchaseProductWithPayment(1, new CashPayment());
+
+            // Синхронна частина payAsync теж входить у час оплати
+            class SlowStart implements AsyncPaymentStrategy {
+                @Override
+                public java.util.concurrent.CompletableFuture<Boolean> payAsync(long amount) {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return java.util.concurrent.CompletableFuture.completedFuture(true);
+                }
+            }
+            assertTrue(controller.purchaseProductWithPaymentAsync(1, new SlowStart()).join() != null, "Оплату прийнято");
+
+            MachineMetrics.Snapshot s = metrics.snapshot();
+            assertTrue(s.getPaymentLatency().get("SlowStart").getMaxNanos() >= 20_000_000L,
+                    "Час оплати враховує синхронну частину payAsync");
+            assertEquals(2L, s.getOperation(MachineMetrics.Operation.INSERT_MONEY).getCount());
+            assertEquals(3L, s.getOperation(MachineMetrics.Operation.SELECT_SLOT).getCount());
+            assertEquals(1L, s.getOperation(MachineMetrics.Operation.PURCHASE).getCount());
+            assertEquals(2L, s.getOperation(MachineMetrics.Operation.REQUEST_CHANGE).getCount());
+            assertEquals(3L, s.getOutcomeCount(PurchaseOutcome.SUCCESS));
+            assertEquals(1L, s.getOutcomeCount(PurchaseOutcome.OUT_OF_STOCK));
+            assertEquals(3L, s.getSlots().get(1).getCount());
+            assertEquals(1L, s.getSlots().get(2).getCount());
+            assertEquals(1L, s.getExceptions().get("ProductOutOfStockException"));
+            assertEquals(1L, s.getPaymentResults().get("CashPayment").get(MachineMetrics.PaymentResult.APPROVED));
+
+            String text = registry.toPrometheus();
+            assertTrue(text.contains("# TYPE vending_operation_seconds histogram"), "Є опис гістограми");
+            assertTrue(text.contains("vending_operation_seconds_count{machine=\"default\",operation=\"select_slot\"} 3"),
+                    "Є лічильник вибору товару");
+            assertTrue(text.contains("vending_operation_seconds_bucket{machine=\"default\",operation=\"purchase\",le=\"+Inf\"} 1"),
+                    "Є кошик +Inf");
+            assertTrue(text.contains("vending_payments_total{machine=\"default\",payment=\"CashPayment\",result=\"approved\"} 1"),
+                    "Є лічильник оплат");
+            assertTrue(text.contains("vending_exceptions_total{machine=\"default\",type=\"ProductOutOfStockException\"} 1"),
+                    "Є лічильник винятків");
+
+            // Неіснуючий слот у стані IDLE не розширює метрики слотів
+            assertTrue(machine.trySelectSlot(50_000_000) == PurchaseOutcome.NO_MONEY, "Без грошей очікувався NO_MONEY");
+            assertTrue(!metrics.snapshot().getSlots().containsKey(50_000_000), "Неіснуючий слот не записується");
+            assertEquals(2, metrics.snapshot().getSlots().size());
+
+            // Відмови контролера до оплати теж рахуються
+            controller.purchaseProductWithPayment(9, new CashPayment());
+            assertEquals(1L, metrics.snapshot().getExceptions().get("InvalidSlotException"));
+
+            // За замовчуванням HTTP-ендпоінт доступний лише локально
+            com.sun.net.httpserver.HttpServer server = registry.startHttpEndpoint(0);
+            try {
+                assertTrue(server.getAddress().getAddress().isLoopbackAddress(), "Ендпоінт має слухати loopback");
+            } finally {
+                server.stop(0);
+            }
+        } finally {
+            registry.unregister(machine);
+        }
+        assertTrue(machine.getMetrics() == null, "Метрики вимкнено");
+    }
+
+    private static void testSalesAnalyticsObserver() throws VendingMachineException {
+        java.util.concurrent.atomic.AtomicLong clock = new java.util.concurrent.atomic.AtomicLong(10 * 60_000L);
+        SalesAnalyticsObserver analytics = new SalesAnalyticsObserver(5, clock::get);
+        VendingMachine other = new VendingMachine("A-2");
+        other.addSlot(new Slot(ProductFactory.createFood("Snickers", Money.hryvnias(18), 50), 10));
+        machine.addObserver(analytics);
+        other.addObserver(analytics);
+        try {
+            machine.insertMoney(Money.hryvnias(100));
+            machine.selectSlot(1);
+            machine.selectSlot(1);
+            clock.addAndGet(60_000);
+            machine.selectSlot(1);
+            other.insertMoney(Money.hryvnias(20));
+            other.selectSlot(1);
+
+            assertEquals(3L, analytics.getUnitsSold("Coke"));
+            assertEquals(Money.hryvnias(75), analytics.getRevenue("default"));
+            assertEquals(Money.hryvnias(100), analytics.getDeposited("default"));
+            assertEquals(Money.hryvnias(93), analytics.getTotalRevenue());
+            long[] perMinute = analytics.getSalesPerMinute("Coke");
+            assertEquals(5, perMinute.length);
+            assertEquals(2L, perMinute[3]);
+            assertEquals(1L, perMinute[4]);
+
+            java.util.List<SalesAnalyticsObserver.Seller> top = analytics.getTopSellers(1);
+            assertEquals(1, top.size());
+            assertTrue(top.get(0).getSku().equals("Coke"), "Лідер продажів - Coke");
+            assertEquals(2, analytics.getTopSellers(10).size());
+
+            // Перша хвилина виходить з вікна
+            clock.addAndGet(4 * 60_000L);
+            assertEquals(1L, analytics.getUnitsSold("Coke"));
+            assertEquals(Money.hryvnias(25), analytics.getRevenue("default"));
+            assertEquals(0L, analytics.getDeposited("default"));
+            // Усе вікно минуло
+            clock.addAndGet(60 * 60_000L);
+            assertEquals(0L, analytics.getTotalRevenue());
+            assertEquals(0, analytics.getTopSellers(3).size());
+        } finally {
+            machine.removeObserver(analytics);
+        }
+    }
+
+    private static void testRestockPlanner() throws VendingMachineException {
+        java.util.concurrent.atomic.AtomicLong clock = new java.util.concurrent.atomic.AtomicLong(1_000_000L);
+        RestockPlanner planner = new RestockPlanner(10, clock::get);
+        VendingMachineFleet fleet = new VendingMachineFleet();
+        VendingMachine fast = fleet.getOrCreate("R-1");
+        fast.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 6));
+        fast.addSlot(new Slot(ProductFactory.createFood("Snickers", Money.hryvnias(18), 50), 10));
+        VendingMachine slow = fleet.getOrCreate("R-2");
+        slow.addSlot(new Slot(ProductFactory.createDrink("Coke", Money.hryvnias(25), 0.5), 0));
+        slow.addSlot(new Slot(ProductFactory.createDrink("Water", Money.hryvnias(15), 0.5), 8));
+        fleet.getOrCreate("R-3").addSlot(new Slot(ProductFactory.createDrink("Water", Money.hryvnias(15), 0.5), 9));
+        fast.addObserver(planner);
+        planner.assignRoute("R-1", "north");
+        planner.assignRoute("R-2", "north");
+
+        // Coke в R-1 продається раз на 10 хвилин: після 4 продажів лишається 2 шт.
+        fast.insertMoney(Money.hryvnias(100));
+        for (int i = 0; i < 4; i++) {
+            if (i > 0) {
+                clock.addAndGet(600_000L);
+            }
+            fast.selectSlot(1);
+        }
+        double perHour = planner.getUnitsPerHour("R-1", 1);
+        assertTrue(Math.abs(perHour - 6.0) < 0.01, "Очікувалось 6 шт./год, отримано " + perHour);
+        assertTrue(planner.getUnitsPerHour("R-1", 2) == 0, "Без продажів швидкість 0");
+
+        RestockPlanner.Plan plan = planner.plan(fleet, 3_600_000L);
+        // R-1 #1: 2 шт. при 6 шт./год - порожній через 20 хв; R-2 #1 вже порожній
+        assertEquals(2, plan.size());
+        RestockPlanner.RefillItem coke = plan.getItems("R-1").get(0);
+        assertEquals(1, coke.getSlotNumber());
+        assertEquals(8, coke.getRefillUnits());
+        assertEquals(20 * 60_000L, coke.getMillisToEmpty());
+        assertEquals(0, plan.getItems("R-3").size());
+        assertTrue(plan.getMachines("north").equals(java.util.Arrays.asList("R-2", "R-1")),
+                "Найтерміновіший автомат - першим: " + plan.getMachines("north"));
+        assertEquals(18, plan.getLoad("north").get("Coke"));
+        assertEquals(1, plan.getRoutes().size());
+
+        // Коротший горизонт - лише вже порожні слоти
+        assertEquals(1, planner.plan(fleet, 60_000L).size());
+
+        // Великий парк обробляється за один виклик
+        VendingMachineFleet big = new VendingMachineFleet();
+        for (int m = 0; m < 1000; m++) {
+            VendingMachine vm = big.getOrCreate("B-" + m);
+            for (int s = 0; s < 100; s++) {
+                vm.addSlot(new Slot(ProductFactory.createDrink("D" + s, Money.hryvnias(20), 0.5), s % 3));
+            }
+        }
+        RestockPlanner.Plan bigPlan = planner.plan(big, 0);
+        assertEquals(1000L * 34, (long) bigPlan.size());
+        assertEquals(1000, bigPlan.getMachines(RestockPlanner.UNASSIGNED_ROUTE).size());
+    }
+
+    private static void testStockAlertWatcher() throws VendingMachineException {
+        // Термін придатності зберігається як номер дня
+        Food bar = ProductFactory.createFoodWithExtras("Bar", Money.hryvnias(20), 40, 200, "2025-12-31");
+        assertEquals((int) java.time.LocalDate.of(2025, 12, 31).toEpochDay(), bar.getExpirationDay());
+        assertTrue(bar.getExpirationDate().equals("2025-12-31"), "Дата відновлюється з номера дня");
+        assertTrue(bar.isExpiredOn(java.time.LocalDate.of(2026, 1, 1).toEpochDay()), "Після 31.12 товар прострочений");
+        assertEquals(Product.NO_EXPIRATION, machine.getSlots().get(0).getProduct().getExpirationDay());
+        assertEquals(Product.NO_EXPIRATION, Product.parseExpirationDay(" N/A "));
+        assertEquals((int) java.time.LocalDate.of(2025, 12, 31).toEpochDay(), Product.parseExpirationDay(" 2025-12-31 "));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProductFactory.createFoodWithExtras("Bad", Money.hryvnias(1), 1, 1, "31.12.2025"));
+
+        java.util.List<StockAlertWatcher.Alert> alerts = new java.util.ArrayList<>();
+        StockAlertWatcher watcher = new StockAlertWatcher(3, 2, alerts::add);
+        machine.addSlot(new Slot(bar, 4));
+        machine.addSlot(new Slot(ProductFactory.createFoodWithExtras("Chips", Money.hryvnias(30), 90, 500, "2026-03-01"), 5));
+        try {
+            watcher.watch(machine);
+            // Snickers (0 шт.) - одразу
+            assertEquals(1, alerts.size());
+            assertTrue(alerts.get(0).getType() == StockAlertWatcher.AlertType.LOW_STOCK && alerts.get(0).getSlotNumber() == 2,
+                    "LOW_STOCK для слота 2");
+            assertEquals(2, watcher.getPendingExpiryChecks());
+
+            machine.insertMoney(Money.hryvnias(100));
+            machine.selectSlot(3); // 3 шт. - ще не менше порогу
+            assertEquals(1, alerts.size());
+            machine.selectSlot(3); // 2 шт.
+            assertEquals(2, alerts.size());
+            assertEquals(2, alerts.get(1).getRemaining());
+            machine.selectSlot(3); // Повторно не сповіщаємо
+            assertEquals(2, alerts.size());
+
+            // Черга термінів: сповіщення лише для тих, чий день настав
+            assertEquals(0, watcher.checkExpiry(java.time.LocalDate.of(2025, 12, 28)));
+            assertEquals(1, watcher.checkExpiry(java.time.LocalDate.of(2025, 12, 29)));
+            assertEquals(2, alerts.get(2).getDaysLeft());
+            assertTrue(alerts.get(2).getType() == StockAlertWatcher.AlertType.NEAR_EXPIRY, "NEAR_EXPIRY для Bar");
+            assertEquals(0, watcher.checkExpiry(java.time.LocalDate.of(2025, 12, 30)));
+            assertEquals(1, watcher.checkExpiry(java.time.LocalDate.of(2026, 6, 1)));
+            assertEquals(0, watcher.getPendingExpiryChecks());
+        } finally {
+            machine.removeObserver(watcher);
+        }
+    }
+
+    private static void testCachedMenu() throws VendingMachineException {
+        Product coke = machine.getSlots().get(0).getProduct();
+        assertTrue(coke.getDescription() == coke.getDescription(), "Опис формується один раз");
+        assertTrue(coke.getDescription().equals("Напій: Coke, Об'єм: " + String.format("%.1f", 0.5) + "л, Ціна: 25.00 грн"),
+                "Текст опису не змінився: " + coke.getDescription());
+
+        String menu = machine.getMenu();
+        assertTrue(menu.contains("1. " + coke.getDescription() + " | Залишилось: 5"), "Меню містить Coke");
+        assertTrue(!menu.contains("Snickers"), "Порожній слот не показується");
+        assertTrue(machine.getMenu() == menu, "Без змін повертається кешоване меню");
+
+        // Зміна залишку перебудовує меню
+        machine.insertMoney(Money.hryvnias(25));
+        assertTrue(machine.getMenu() == menu, "Внесення грошей не змінює меню");
+        machine.selectSlot(1);
+        String afterSale = machine.getMenu();
+        assertTrue(afterSale != menu && afterSale.contains("Залишилось: 4"), "Після продажу меню оновлено");
+        // Продаж через сесію (без зміни балансу автомата) теж оновлює меню
+        PurchaseSession session = new PurchaseSession();
+        session.deposit(Money.hryvnias(25));
+        machine.purchase(session, 1);
+        assertTrue(machine.getMenu().contains("Залишилось: 3"), "Продаж через сесію оновлює меню");
+        assertEquals(3, machine.getCatalog().getStockByName("Coke"));
+
+        machine.addSlot(new Slot(ProductFactory.createDrink("Water", Money.hryvnias(15), 0.5), 2));
+        assertTrue(machine.getMenu().contains("3. Напій: Water"), "Новий слот з'являється в меню");
+
+        // Той самий розмір, інші слоти
+        machine.reset();
+        machine.addSlot(new Slot(ProductFactory.createDrink("Fanta", Money.hryvnias(25), 0.5), 3));
+        machine.addSlot(new Slot(ProductFactory.createFood("Snickers", Money.hryvnias(18), 50), 1));
+        machine.addSlot(new Slot(ProductFactory.createDrink("Water", Money.hryvnias(15), 0.5), 2));
+        assertTrue(machine.getMenu().contains("1. Напій: Fanta") && machine.getMenu().contains("2. Їжа: Snickers"),
+                "Після reset меню зібрано заново");
+    }
+
+    private static void testReentrantObserverEvents() throws VendingMachineException {
+        // Перший спостерігач на видачу товару вносить гроші: вкладена подія не має
+        // перезаписати подію продажу, яку ще не отримав другий спостерігач
+        VendingMachineObserver reentrant = event -> {
+            if (event.getType() == VendingMachineEvent.Type.PRODUCT_DISPENSED) {
+                machine.insertMoney(Money.hryvnias(10));
+            }
+        };
+        java.util.List<String> seen = new java.util.ArrayList<>();
+        VendingMachineObserver recorder = event -> seen.add(event.getType() + ":" + event.getAmount());
+        machine.addObserver(reentrant);
+        machine.addObserver(recorder);
+        try {
+            machine.insertMoney(Money.hryvnias(30));
+            machine.selectSlot(1);
+        } finally {
+            machine.removeObserver(reentrant);
+            machine.removeObserver(recorder);
+        }
+        assertEquals(3, seen.size());
+        assertTrue(seen.get(1).equals("BALANCE_CHANGED:" + Money.hryvnias(10)), "Вкладена подія: " + seen);
+        assertTrue(seen.get(2).equals("PRODUCT_DISPENSED:" + Money.hryvnias(25)), "Подія продажу змінена: " + seen);
+        assertEquals(Money.hryvnias(15), machine.getCurrentBalance());
     }
 
     // --- Допоміжні методи для асертів ---
@@ -106,8 +1490,8 @@ public class VendingMachineTestRunner {
         void run() throws Exception;
     }
 
-    private static void assertEquals(double expected, double actual) {
-        if (Math.abs(expected - actual) > 0.001) {
+    private static void assertEquals(long expected, long actual) {
+        if (expected != actual) {
             throw new AssertionError("Очікувалося " + expected + ", але було " + actual);
         }
     }
@@ -118,6 +1502,12 @@ public class VendingMachineTestRunner {
         }
     }
 
+    private static void assertTrue(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
     private static void assertThrows(Class<? extends Throwable> expected, ThrowableRunnable code) {
         try {
             code.run();